@@ -0,0 +1,44 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.bench;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * The main class of benchmarks.jar, org.openjdk.jmh.Main with one default:
+ * unless the command line chooses the result format or file, the results
+ * are also written as JSON to jmh-result.json, so two runs can be compared
+ * with a JMH result viewer or a diff of the scores.
+ */
+public class CfsBenchmarks {
+    private static final List<String> RESULT_OPTIONS = Arrays.asList("-rf", "-rff");
+    // the options that list or print instead of running
+    private static final List<String> INFO_OPTIONS = Arrays.asList("-h", "-l", "-lp", "-lprof", "-lrf");
+
+    public static void main(String[] args) throws Exception {
+        for (String arg : args) {
+            if (RESULT_OPTIONS.contains(arg) || INFO_OPTIONS.contains(arg)) {
+                org.openjdk.jmh.Main.main(args);
+                return;
+            }
+        }
+        String[] res = Arrays.copyOf(args, args.length + 4);
+        res[args.length] = "-rf";
+        res[args.length + 1] = "json";
+        res[args.length + 2] = "-rff";
+        res[args.length + 3] = "jmh-result.json";
+        org.openjdk.jmh.Main.main(res);
+    }
+}
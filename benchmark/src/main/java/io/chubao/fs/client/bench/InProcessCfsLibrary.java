@@ -0,0 +1,514 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.bench;
+
+import com.sun.jna.Pointer;
+import io.chubao.fs.client.sdk.client.CfsLibrary;
+import io.chubao.fs.client.sdk.exception.StatusCodes;
+import io.chubao.fs.client.sdk.libsdk.CfsExtent;
+import io.chubao.fs.client.sdk.libsdk.FileStorage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * An in-process stand-in for libsdk, so the benchmarks measure the Java side
+ * of the client only. Files keep their size but no content: reads copy from
+ * a fixed pattern and writes copy into a scratch buffer, which stands for the
+ * copies libsdk makes. A directory made by addDirectory lists generated
+ * entries, part-0000000 and on, without keeping them, so listings of a
+ * million entries need no memory of their own. The files and directories
+ * added under a directory are listed after its generated entries.
+ *
+ * A file has no extents unless setExtents gave it some.
+ *
+ * The stat, dirent and extent records are written at the offsets of
+ * cfs_stat_info, cfs_dirent and cfs_extent_info, see CfsLibrary.StatInfo,
+ * CfsLibrary.Dirent and CfsLibrary.ExtentInfo.
+ */
+public class InProcessCfsLibrary implements CfsLibrary {
+    private static final int STAT_SIZE = 80;
+    private static final int STAT_INO = 0;
+    private static final int STAT_SIZE_FIELD = 8;
+    private static final int STAT_BLOCKS = 16;
+    private static final int STAT_ATIME = 24;
+    private static final int STAT_MTIME = 32;
+    private static final int STAT_CTIME = 40;
+    private static final int STAT_MODE = 60;
+    private static final int STAT_NLINK = 64;
+    private static final int STAT_BLK_SIZE = 68;
+    private static final int STAT_UID = 72;
+    private static final int STAT_GID = 76;
+
+    private static final int DIRENT_SIZE = 272;
+    private static final int DIRENT_INO = 0;
+    private static final int DIRENT_TYPE = 8;
+    private static final int DIRENT_NAME_LEN = 12;
+    private static final int DIRENT_NAME = 16;
+
+    private static final int EXTENT_SIZE = 288;
+    private static final int EXTENT_FILE_OFFSET = 0;
+    private static final int EXTENT_SIZE_FIELD = 8;
+    private static final int EXTENT_PARTITION = 16;
+    private static final int EXTENT_HOSTS_LEN = 24;
+    private static final int EXTENT_HOSTS = 28;
+    private static final int EXTENT_HOSTS_MAX = 256;
+
+    private static final int OK = StatusCodes.CFS_STATUS_OK.code();
+    private static final int NOT_FOUND = StatusCodes.CFS_STATUS_FILIE_NOT_FOUND.code();
+    private static final int EXISTS = StatusCodes.CFS_STATUS_FILE_EXISTS.code();
+    private static final int INVALID = StatusCodes.CFS_STATUS_INVALID_ARGUMENT.code();
+
+    // the inodes of the generated entries carry the directory inode in the high bits
+    private static final int ENTRY_SHIFT = 32;
+    private static final long ENTRY_SIZE = 128L << 20;
+    private static final long MTIME = 1601510400L;
+
+    private final ConcurrentMap<String, Node> paths = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Node> inodes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Handle> fds = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CfsExtent[]> extents = new ConcurrentHashMap<>();
+    private final AtomicLong nextIno = new AtomicLong(1L);
+    private final AtomicInteger nextFd = new AtomicInteger(3);
+    private final byte[] pattern = new byte[1 << 20];
+    private final byte[] scratch = new byte[1 << 20];
+
+    private static final class Node {
+        final long ino;
+        final int mode;
+        final AtomicLong size;
+        // the generated entries of a directory
+        final int entries;
+
+        Node(long ino, int mode, long size, int entries) {
+            this.ino = ino;
+            this.mode = mode;
+            this.size = new AtomicLong(size);
+            this.entries = entries;
+        }
+    }
+
+    private static final class Handle {
+        final Node node;
+        // the names and nodes added under a directory when it was opened
+        final List<Map.Entry<String, Node>> children;
+        // the next entry to list, guarded by this
+        int cursor = 0;
+
+        Handle(Node node, List<Map.Entry<String, Node>> children) {
+            this.node = node;
+            this.children = children;
+        }
+    }
+
+    public InProcessCfsLibrary() {
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = (byte) i;
+        }
+        add("/", FileStorage.S_IFDIR | 0755, 0L, 0);
+    }
+
+    /*
+     * Adds a file of the given size, its parent directories must exist.
+     */
+    public void addFile(String path, long size) {
+        add(path, FileStorage.S_IFREG | 0644, size, 0);
+    }
+
+    /*
+     * Adds a directory listing the given number of generated entries.
+     */
+    public void addDirectory(String path, int entries) {
+        add(path, FileStorage.S_IFDIR | 0755, 0L, entries);
+    }
+
+    /*
+     * Sets the extents cfs_get_extents returns for the file.
+     */
+    public void setExtents(String path, CfsExtent[] fileExtents) {
+        extents.put(path, fileExtents.clone());
+    }
+
+    private Node add(String path, int mode, long size, int entries) {
+        Node node = new Node(nextIno.getAndIncrement(), mode, size, entries);
+        paths.put(path, node);
+        inodes.put(node.ino, node);
+        return node;
+    }
+
+    @Override
+    public long cfs_new_client() {
+        return 1L;
+    }
+
+    @Override
+    public int cfs_set_client(long id, String key, String val) {
+        return OK;
+    }
+
+    @Override
+    public int cfs_start_client(long id) {
+        return OK;
+    }
+
+    @Override
+    public int cfs_open(String path, int flags, int mode, int uid, int gid) {
+        return cfs_open(1L, path, flags, mode, uid, gid);
+    }
+
+    @Override
+    public void cfs_close_client(long id) {
+    }
+
+    @Override
+    public int cfs_chdir(long id, String path) {
+        return OK;
+    }
+
+    @Override
+    public String cfs_getcwd(long id) {
+        return "/";
+    }
+
+    @Override
+    public int cfs_getattr(long id, String path, StatInfo stat) {
+        Node node = paths.get(path);
+        if (node == null) {
+            return NOT_FOUND;
+        }
+        stat.ino = node.ino;
+        stat.size = node.size.get();
+        stat.blocks = (stat.size + 511) / 512;
+        stat.atime = MTIME;
+        stat.mtime = MTIME;
+        stat.ctime = MTIME;
+        stat.mode = node.mode;
+        stat.nlink = 1;
+        stat.blkSize = 4096;
+        stat.uid = 0;
+        stat.gid = 0;
+        return OK;
+    }
+
+    @Override
+    public int cfs_getattr(long id, String path, Pointer stat) {
+        Node node = paths.get(path);
+        if (node == null) {
+            return NOT_FOUND;
+        }
+        writeStat(stat, 0L, node.ino, node.mode, node.size.get());
+        return OK;
+    }
+
+    @Override
+    public int cfs_setattr(long id, String path, StatInfo stat, int mask) {
+        return paths.containsKey(path) ? OK : NOT_FOUND;
+    }
+
+    @Override
+    public int cfs_open(long id, String path, int flags, int mode, int uid, int gid) {
+        Node node = paths.get(path);
+        if (node == null) {
+            if ((flags & FileStorage.O_CREAT) == 0) {
+                return NOT_FOUND;
+            }
+            node = add(path, FileStorage.S_IFREG | (mode & 0777), 0L, 0);
+        } else if ((flags & FileStorage.O_TRUNC) != 0) {
+            node.size.set(0L);
+        }
+        return open(node);
+    }
+
+    private int open(Node node) {
+        List<Map.Entry<String, Node>> children = new ArrayList<>();
+        if ((node.mode & FileStorage.S_IFDIR) == FileStorage.S_IFDIR) {
+            String dir = pathOf(node);
+            String prefix = "/".equals(dir) ? dir : dir + "/";
+            for (Map.Entry<String, Node> e : paths.entrySet()) {
+                String path = e.getKey();
+                if (path.length() > prefix.length() && path.startsWith(prefix)
+                        && path.indexOf('/', prefix.length()) < 0) {
+                    children.add(new AbstractMap.SimpleImmutableEntry<>(
+                            path.substring(prefix.length()), e.getValue()));
+                }
+            }
+        }
+        int fd = nextFd.getAndIncrement();
+        fds.put(fd, new Handle(node, children));
+        return fd;
+    }
+
+    private String pathOf(Node node) {
+        for (Map.Entry<String, Node> e : paths.entrySet()) {
+            if (e.getValue() == node) {
+                return e.getKey();
+            }
+        }
+        return "";
+    }
+
+    @Override
+    public int cfs_flush(long id, int fd) {
+        return fds.containsKey(fd) ? OK : INVALID;
+    }
+
+    @Override
+    public void cfs_close(long id, int fd) {
+        fds.remove(fd);
+    }
+
+    @Override
+    public long cfs_write(long id, int fd, byte[] buf, long size, long offset) {
+        Handle h = fds.get(fd);
+        if (h == null) {
+            return INVALID;
+        }
+        for (long done = 0; done < size; ) {
+            int n = (int) Math.min(size - done, scratch.length);
+            System.arraycopy(buf, (int) done, scratch, 0, n);
+            done += n;
+        }
+        long end = offset + size;
+        AtomicLong fileSize = h.node.size;
+        long cur;
+        while ((cur = fileSize.get()) < end && !fileSize.compareAndSet(cur, end)) {
+            // retry
+        }
+        return size;
+    }
+
+    @Override
+    public long cfs_read(long id, int fd, byte[] buf, long size, long offset) {
+        Handle h = fds.get(fd);
+        if (h == null) {
+            return INVALID;
+        }
+        long len = Math.max(0L, Math.min(size, h.node.size.get() - offset));
+        for (long done = 0; done < len; ) {
+            int from = (int) ((offset + done) & (pattern.length - 1));
+            int n = (int) Math.min(len - done, pattern.length - from);
+            System.arraycopy(pattern, from, buf, (int) done, n);
+            done += n;
+        }
+        return len;
+    }
+
+    @Override
+    public int cfs_mkdirs(long cid, String path, int mode, int uid, int gid) {
+        if (paths.containsKey(path)) {
+            return EXISTS;
+        }
+        int idx = 0;
+        while ((idx = path.indexOf('/', idx + 1)) > 0) {
+            String parent = path.substring(0, idx);
+            if (!paths.containsKey(parent)) {
+                add(parent, FileStorage.S_IFDIR | (mode & 0777), 0L, 0);
+            }
+        }
+        add(path, FileStorage.S_IFDIR | (mode & 0777), 0L, 0);
+        return OK;
+    }
+
+    @Override
+    public int cfs_unlink(long cid, String path) {
+        Node node = paths.remove(path);
+        if (node == null) {
+            return NOT_FOUND;
+        }
+        inodes.remove(node.ino);
+        return OK;
+    }
+
+    @Override
+    public int cfs_rename(long cid, String from, String to) {
+        Node node = paths.remove(from);
+        if (node == null) {
+            return NOT_FOUND;
+        }
+        Node replaced = paths.put(to, node);
+        if (replaced != null) {
+            inodes.remove(replaced.ino);
+        }
+        String prefix = from + "/";
+        for (String path : paths.keySet()) {
+            if (path.startsWith(prefix)) {
+                Node child = paths.remove(path);
+                if (child != null) {
+                    paths.put(to + path.substring(from.length()), child);
+                }
+            }
+        }
+        return OK;
+    }
+
+    @Override
+    public int cfs_readdir(long id, int fd, DirentArray.ByValue dents, long count) {
+        Handle h = fds.get(fd);
+        if (h == null) {
+            return NOT_FOUND;
+        }
+        int from;
+        int num;
+        synchronized (h) {
+            from = h.cursor;
+            num = (int) Math.min(count, h.node.entries + h.children.size() - from);
+            h.cursor = from + num;
+        }
+        Pointer data = dents.data;
+        for (int i = 0; i < num; i++) {
+            long base = (long) i * DIRENT_SIZE;
+            int index = from + i;
+            byte[] name;
+            if (index < h.node.entries) {
+                name = entryName(index);
+                data.setLong(base + DIRENT_INO, entryIno(h.node, index));
+                data.setByte(base + DIRENT_TYPE, (byte) 8);
+            } else {
+                Map.Entry<String, Node> child = h.children.get(index - h.node.entries);
+                name = child.getKey().getBytes(StandardCharsets.UTF_8);
+                data.setLong(base + DIRENT_INO, child.getValue().ino);
+                data.setByte(base + DIRENT_TYPE, (byte) ((child.getValue().mode & FileStorage.S_IFDIR) == FileStorage.S_IFDIR ? 4 : 8));
+            }
+            data.setInt(base + DIRENT_NAME_LEN, name.length);
+            data.write(base + DIRENT_NAME, name, 0, name.length);
+        }
+        return num;
+    }
+
+    @Override
+    public int cfs_fchmod(long id, int fd, int mode) {
+        return fds.containsKey(fd) ? OK : INVALID;
+    }
+
+    @Override
+    public int cfs_rmdir(long cid, String path, boolean recursive) {
+        return cfs_unlink(cid, path);
+    }
+
+    @Override
+    public int cfs_batch_get_inodes(long cid, int fd, long[] iids, DirentArray.ByValue stats, int count) {
+        Pointer data = stats.data;
+        int num = 0;
+        for (int i = 0; i < count; i++) {
+            long ino = iids[i];
+            if ((ino >>> ENTRY_SHIFT) != 0) {
+                writeStat(data, (long) num * STAT_SIZE, ino, FileStorage.S_IFREG | 0644, ENTRY_SIZE);
+            } else {
+                Node node = inodes.get(ino);
+                if (node == null) {
+                    continue;
+                }
+                writeStat(data, (long) num * STAT_SIZE, node.ino, node.mode, node.size.get());
+            }
+            num++;
+        }
+        return num;
+    }
+
+    @Override
+    public int cfs_setattr_by_path(long cid, String path, StatInfo info, int valid) {
+        return paths.containsKey(path) ? OK : NOT_FOUND;
+    }
+
+    @Override
+    public long cfs_file_size(long cid, int fd) {
+        Handle h = fds.get(fd);
+        return h == null ? INVALID : h.node.size.get();
+    }
+
+    @Override
+    public int cfs_getattr_by_inode(long cid, long ino, Pointer stat) {
+        Node node = inodes.get(ino);
+        if (node == null) {
+            return NOT_FOUND;
+        }
+        writeStat(stat, 0L, node.ino, node.mode, node.size.get());
+        return OK;
+    }
+
+    @Override
+    public int cfs_setattr_by_inode(long cid, long ino, StatInfo info, int valid) {
+        return inodes.containsKey(ino) ? OK : NOT_FOUND;
+    }
+
+    @Override
+    public int cfs_open_by_inode(long cid, long ino, int flags, int mode, int uid, int gid) {
+        Node node = inodes.get(ino);
+        if (node == null) {
+            return NOT_FOUND;
+        }
+        if ((flags & FileStorage.O_TRUNC) != 0) {
+            node.size.set(0L);
+        }
+        return open(node);
+    }
+
+    @Override
+    public int cfs_get_extents(long cid, String path, DirentArray.ByValue slice, long count) {
+        if (!paths.containsKey(path)) {
+            return NOT_FOUND;
+        }
+        CfsExtent[] res = extents.get(path);
+        if (res == null) {
+            return 0;
+        }
+        // like libsdk, fill what fits and return the number of extents
+        Pointer data = slice.data;
+        for (int i = 0; i < res.length && i < count; i++) {
+            long base = (long) i * EXTENT_SIZE;
+            byte[] hosts = String.join(",", res[i].getHosts()).getBytes(StandardCharsets.UTF_8);
+            data.setLong(base + EXTENT_FILE_OFFSET, res[i].getFileOffset());
+            data.setLong(base + EXTENT_SIZE_FIELD, res[i].getSize());
+            data.setLong(base + EXTENT_PARTITION, res[i].getPartitionId());
+            int len = Math.min(hosts.length, EXTENT_HOSTS_MAX);
+            data.setInt(base + EXTENT_HOSTS_LEN, len);
+            data.write(base + EXTENT_HOSTS, hosts, 0, len);
+        }
+        return res.length;
+    }
+
+    private static long entryIno(Node dir, int index) {
+        return (dir.ino << ENTRY_SHIFT) | (index + 1);
+    }
+
+    private static byte[] entryName(int index) {
+        String digits = Integer.toString(index);
+        StringBuilder sb = new StringBuilder(12).append("part-");
+        for (int i = digits.length(); i < 7; i++) {
+            sb.append('0');
+        }
+        return sb.append(digits).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeStat(Pointer p, long base, long ino, int mode, long size) {
+        p.setLong(base + STAT_INO, ino);
+        p.setLong(base + STAT_SIZE_FIELD, size);
+        p.setLong(base + STAT_BLOCKS, (size + 511) / 512);
+        p.setLong(base + STAT_ATIME, MTIME);
+        p.setLong(base + STAT_MTIME, MTIME);
+        p.setLong(base + STAT_CTIME, MTIME);
+        p.setInt(base + STAT_MODE, mode);
+        p.setInt(base + STAT_NLINK, 1);
+        p.setInt(base + STAT_BLK_SIZE, 4096);
+        p.setInt(base + STAT_UID, 0);
+        p.setInt(base + STAT_GID, 0);
+    }
+}
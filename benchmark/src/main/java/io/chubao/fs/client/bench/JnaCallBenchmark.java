@@ -0,0 +1,97 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.bench;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.Platform;
+import io.chubao.fs.client.sdk.client.CfsPathCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Per-call overhead of the proxy mapping of Native.load against the direct
+ * mapping of Native.register, with and without a String path argument. libc
+ * stands in for libsdk so only the binding cost is measured: getpid has no
+ * arguments and strlen takes one path like most libsdk exports.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JnaCallBenchmark {
+    private static final String PATH = "/user/hive/warehouse/sales.db/orders/dt=2020-10-01/part-00000.orc";
+
+    public interface LibC extends Library {
+        int getpid();
+
+        long strlen(String s);
+    }
+
+    public static final class DirectLibC {
+        static {
+            Native.register(Platform.C_LIBRARY_NAME);
+        }
+
+        public static native int getpid();
+
+        public static native long strlen(byte[] s);
+    }
+
+    private LibC proxy;
+    private CfsPathCache paths;
+
+    @Setup
+    public void setup() {
+        proxy = Native.load(Platform.C_LIBRARY_NAME, LibC.class);
+        paths = new CfsPathCache(1024);
+    }
+
+    @Benchmark
+    public int proxyNoArgs() {
+        return proxy.getpid();
+    }
+
+    @Benchmark
+    public int directNoArgs() {
+        return DirectLibC.getpid();
+    }
+
+    @Benchmark
+    public long proxyPath() {
+        return proxy.strlen(PATH);
+    }
+
+    @Benchmark
+    public long directPathEncoded() {
+        return DirectLibC.strlen(CfsPathCache.toBytes(PATH));
+    }
+
+    @Benchmark
+    public long directPathCached() {
+        return DirectLibC.strlen(paths.encode(PATH));
+    }
+}
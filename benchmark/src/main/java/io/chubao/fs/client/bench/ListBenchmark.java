@@ -0,0 +1,78 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.bench;
+
+import io.chubao.fs.client.config.StorageConfig;
+import io.chubao.fs.client.sdk.libsdk.CfsListing;
+import io.chubao.fs.client.sdk.libsdk.CfsStatInfo;
+import io.chubao.fs.client.sdk.libsdk.FileStorageImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Directory listings of 10^3 to 10^6 entries through the readdir and batch
+ * getattr pipeline of FileStorageImpl, as the compact listing and as the
+ * CfsStatInfo array of the older callers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class ListBenchmark {
+    private static final String DIR = "/bench/table";
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int entries;
+
+    private FileStorageImpl storage;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        InProcessCfsLibrary lib = new InProcessCfsLibrary();
+        lib.addDirectory("/bench", 0);
+        lib.addDirectory(DIR, entries);
+        storage = new FileStorageImpl(lib, lib.cfs_new_client(), new StorageConfig());
+        storage.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        storage.close();
+    }
+
+    @Benchmark
+    public CfsListing listCompact() throws Exception {
+        return storage.listCompact(DIR);
+    }
+
+    @Benchmark
+    public CfsStatInfo[] list() throws Exception {
+        return storage.list(DIR);
+    }
+}
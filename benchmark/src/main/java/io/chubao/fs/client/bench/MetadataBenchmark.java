@@ -0,0 +1,119 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.bench;
+
+import io.chubao.fs.client.config.StorageConfig;
+import io.chubao.fs.client.sdk.libsdk.CfsStatInfo;
+import io.chubao.fs.client.sdk.libsdk.FileStorageImpl;
+import io.chubao.fs.client.util.CfsPathResolver;
+import io.chubao.fs.client.util.FileStatusHelper;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The per-path work of the metadata calls: stat through FileStorageImpl,
+ * hit and miss, the conversion of a stat to a FileStatus, and the parsing
+ * of a Hadoop Path into a CFS path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetadataBenchmark {
+    private static final String DIR = "/user/hive/warehouse/sales.db/orders/dt=2020-10-01";
+    private static final String FILE = DIR + "/part-00000.orc";
+    private static final String URI_PREFIX = "cfs://volume";
+
+    private FileStorageImpl storage;
+    private CfsStatInfo info;
+    private CfsPathResolver resolver;
+    private Path absolute;
+    private Path qualified;
+    private Path relative;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        InProcessCfsLibrary lib = new InProcessCfsLibrary();
+        lib.cfs_mkdirs(1L, DIR, 0755, 0, 0);
+        lib.addFile(FILE, 128L << 20);
+        StorageConfig config = new StorageConfig();
+        config.setInodeCacheSize(100000);
+        storage = new FileStorageImpl(lib, lib.cfs_new_client(), config);
+        storage.init();
+        info = storage.stat(FILE);
+        resolver = new CfsPathResolver("cfs", new URI(URI_PREFIX + "/"));
+        resolver.setWorkingDirectory(new Path(DIR));
+        absolute = new Path(FILE);
+        qualified = new Path(URI_PREFIX + FILE);
+        relative = new Path("part-00000.orc");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        storage.close();
+    }
+
+    @Benchmark
+    public CfsStatInfo stat() throws Exception {
+        return storage.stat(FILE);
+    }
+
+    @Benchmark
+    public CfsStatInfo statMissing() throws Exception {
+        return storage.stat(DIR + "/missing");
+    }
+
+    @Benchmark
+    public FileStatus convert() throws Exception {
+        return FileStatusHelper.convert(storage, URI_PREFIX, FILE, info);
+    }
+
+    @Benchmark
+    public String resolveAbsolute() {
+        return resolver.resolve(absolute);
+    }
+
+    @Benchmark
+    public String resolveQualified() {
+        return resolver.resolve(qualified);
+    }
+
+    @Benchmark
+    public String resolveRelative() {
+        return resolver.resolve(relative);
+    }
+
+    // parsing included, as for the paths built from strings by the callers
+    @Benchmark
+    public String parseAndResolve() {
+        return resolver.resolve(new Path(URI_PREFIX + FILE));
+    }
+}
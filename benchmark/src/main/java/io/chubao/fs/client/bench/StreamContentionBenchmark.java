@@ -0,0 +1,104 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.bench;
+
+import io.chubao.fs.client.config.StorageConfig;
+import io.chubao.fs.client.sdk.libsdk.FileStorage;
+import io.chubao.fs.client.sdk.libsdk.FileStorageImpl;
+import io.chubao.fs.client.statistics.CfsIOStatisticsStore;
+import io.chubao.fs.client.stream.CfsDataInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Threads sharing one input stream, which serializes them on the lock of
+ * CfsFileImpl. The single threaded run is the baseline, the score is the
+ * time of one 4 KB read as seen by each thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamContentionBenchmark {
+    private static final String PATH = "/bench/shared.orc";
+    private static final int READ_SIZE = 4096;
+
+    private FileStorageImpl storage;
+    private CfsDataInputStream in;
+
+    @State(Scope.Thread)
+    public static class Buffer {
+        final byte[] buf = new byte[READ_SIZE];
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        InProcessCfsLibrary lib = new InProcessCfsLibrary();
+        lib.addDirectory("/bench", 0);
+        lib.addFile(PATH, 1L << 30);
+        storage = new FileStorageImpl(lib, lib.cfs_new_client(), new StorageConfig());
+        storage.init();
+        in = new CfsDataInputStream(storage.open(PATH, FileStorage.O_RDONLY, 0, 0, 0), null,
+                new CfsIOStatisticsStore());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        in.close();
+        storage.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int read1Thread(Buffer b) throws IOException {
+        return read(b.buf);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int read4Threads(Buffer b) throws IOException {
+        return read(b.buf);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int read16Threads(Buffer b) throws IOException {
+        return read(b.buf);
+    }
+
+    private int read(byte[] buf) throws IOException {
+        int n = in.read(buf, 0, READ_SIZE);
+        if (n <= 0) {
+            // another thread may seek too, either one wins
+            in.seek(0L);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,99 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.bench;
+
+import io.chubao.fs.client.config.StorageConfig;
+import io.chubao.fs.client.sdk.libsdk.FileStorage;
+import io.chubao.fs.client.sdk.libsdk.FileStorageImpl;
+import io.chubao.fs.client.statistics.CfsIOStatisticsStore;
+import io.chubao.fs.client.stream.CfsDataInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Reads through CfsDataInputStream, CfsFileImpl and FileStorageImpl with the
+ * buffer sizes of the common callers, sequentially and at random offsets.
+ * The score is the time of one read of bufferSize bytes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamReadBenchmark {
+    private static final String PATH = "/bench/data.orc";
+    private static final long FILE_SIZE = 1L << 30;
+
+    @Param({"4096", "65536", "1048576"})
+    public int bufferSize;
+
+    private FileStorageImpl storage;
+    private CfsDataInputStream in;
+    private byte[] buf;
+    private long[] offsets;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        InProcessCfsLibrary lib = new InProcessCfsLibrary();
+        lib.addDirectory("/bench", 0);
+        lib.addFile(PATH, FILE_SIZE);
+        storage = new FileStorageImpl(lib, lib.cfs_new_client(), new StorageConfig());
+        storage.init();
+        in = new CfsDataInputStream(storage.open(PATH, FileStorage.O_RDONLY, 0, 0, 0), null,
+                new CfsIOStatisticsStore());
+        buf = new byte[bufferSize];
+        offsets = new long[4096];
+        Random random = new Random(42);
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = (long) (random.nextDouble() * (FILE_SIZE - bufferSize));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        in.close();
+        storage.close();
+    }
+
+    @Benchmark
+    public int sequentialRead() throws IOException {
+        if (in.getPos() + bufferSize > FILE_SIZE) {
+            in.seek(0L);
+        }
+        return in.read(buf, 0, bufferSize);
+    }
+
+    @Benchmark
+    public int randomRead() throws IOException {
+        in.seek(offsets[next++ & (offsets.length - 1)]);
+        return in.read(buf, 0, bufferSize);
+    }
+}
@@ -0,0 +1,85 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.bench;
+
+import io.chubao.fs.client.config.StorageConfig;
+import io.chubao.fs.client.sdk.libsdk.FileStorage;
+import io.chubao.fs.client.sdk.libsdk.FileStorageImpl;
+import io.chubao.fs.client.statistics.CfsIOStatisticsStore;
+import io.chubao.fs.client.stream.CfsDataOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Small and large writes through CfsDataOutputStream. The small writes are
+ * the record sized writes of unbuffered callers, where the per-call overhead
+ * dominates, the large ones show the cost of the buffer copies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamWriteBenchmark {
+    @Param({"16", "512", "1048576"})
+    public int writeSize;
+
+    private FileStorageImpl storage;
+    private CfsDataOutputStream out;
+    private byte[] buf;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        InProcessCfsLibrary lib = new InProcessCfsLibrary();
+        lib.addDirectory("/bench", 0);
+        storage = new FileStorageImpl(lib, lib.cfs_new_client(), new StorageConfig());
+        storage.init();
+        out = new CfsDataOutputStream(storage.open("/bench/out.data",
+                FileStorage.O_WRONLY | FileStorage.O_CREAT | FileStorage.O_TRUNC, 0644, 0, 0),
+                new CfsIOStatisticsStore());
+        buf = new byte[writeSize];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        out.close();
+        storage.close();
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        out.write(buf, 0, writeSize);
+    }
+
+    // an offset buffer takes the copying path of CfsFileImpl
+    @Benchmark
+    public void writeAtOffset() throws IOException {
+        out.write(buf, 1, writeSize - 1);
+    }
+}
@@ -0,0 +1,174 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.metrics;
+
+import io.chubao.fs.client.bench.InProcessCfsLibrary;
+import io.chubao.fs.client.config.StorageConfig;
+import io.chubao.fs.client.sdk.client.CfsFile;
+import io.chubao.fs.client.sdk.libsdk.FileStorage;
+import io.chubao.fs.client.sdk.libsdk.FileStorageImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Receives the gmetric packets of a report on a local socket and decodes
+ * them, Ganglia 3.1 XDR: a metadata packet per metric, then its value as
+ * a string.
+ */
+public class CfsGangliaReporterTest {
+    private static final int METADATA = 128;
+    private static final int STRING_VALUE = 133;
+    private static final String PREFIX = "cfs.vol.";
+
+    private DatagramSocket socket;
+    private FileStorageImpl storage;
+    private CfsGangliaReporter reporter;
+
+    private static final class Metric {
+        String type;
+        String units;
+        String group;
+        String value;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        socket.setSoTimeout(200);
+        InProcessCfsLibrary lib = new InProcessCfsLibrary();
+        lib.addDirectory("/data", 0);
+        lib.addFile("/data/f", 1L << 20);
+        StorageConfig config = new StorageConfig();
+        config.setInodeCacheSize(1000);
+        storage = new FileStorageImpl(lib, new long[]{1L, 2L}, config);
+        storage.init();
+        reporter = new CfsGangliaReporter("vol", storage.getCallMetrics(), storage,
+                "127.0.0.1:" + socket.getLocalPort(), 10);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reporter.close();
+        storage.close();
+        socket.close();
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        CfsFile file = storage.open("/data/f", FileStorage.O_RDONLY, 0644, 0, 0);
+        byte[] buf = new byte[4096];
+        for (int i = 0; i < 4; i++) {
+            assertEquals(buf.length, file.read(buf, 0, buf.length));
+        }
+        storage.stat("/data/f");
+        storage.stat("/data/f");
+
+        reporter.report();
+        Map<String, Metric> metrics = receive();
+
+        Metric read = metrics.get(PREFIX + "readBytesPerSec");
+        assertEquals("double", read.type);
+        assertEquals("bytes/sec", read.units);
+        assertEquals(CfsGangliaReporter.GROUP, read.group);
+        assertTrue(Double.parseDouble(read.value) > 0.0);
+        assertEquals(0.0, value(metrics, "writeBytesPerSec"), 0.0);
+        assertEquals(0.0, value(metrics, "errorsPerSec"), 0.0);
+        assertTrue(value(metrics, "readCallsPerSec") > 0.0);
+        assertTrue(metrics.containsKey(PREFIX + "readP99Us"));
+        assertFalse("an op never called is skipped", metrics.containsKey(PREFIX + "writeCallsPerSec"));
+        assertEquals(1.0, value(metrics, "openFds"), 0.0);
+        assertTrue(value(metrics, "inodeCacheHitPercent") > 0.0);
+        assertTrue(metrics.containsKey(PREFIX + "client0CallsPerSec"));
+        assertTrue(metrics.containsKey(PREFIX + "client1CallsPerSec"));
+        assertEquals(0.0, value(metrics, "client0Inflight"), 0.0);
+
+        file.close();
+        reporter.report();
+        metrics = receive();
+        assertEquals(0.0, value(metrics, "openFds"), 0.0);
+        assertEquals("no read since the last report", 0.0, value(metrics, "readBytesPerSec"), 0.0);
+    }
+
+    private static double value(Map<String, Metric> metrics, String name) {
+        Metric metric = metrics.get(PREFIX + name);
+        assertTrue("missing " + name, metric != null && metric.value != null);
+        return Double.parseDouble(metric.value);
+    }
+
+    // the packets of one report, until the socket is quiet
+    private Map<String, Metric> receive() throws Exception {
+        Map<String, Metric> res = new HashMap<>();
+        byte[] buf = new byte[1500];
+        while (true) {
+            DatagramPacket packet = new DatagramPacket(buf, buf.length);
+            try {
+                socket.receive(packet);
+            } catch (SocketTimeoutException e) {
+                return res;
+            }
+            ByteBuffer in = ByteBuffer.wrap(packet.getData(), 0, packet.getLength());
+            int id = in.getInt();
+            readString(in); // host
+            String name = readString(in);
+            in.getInt(); // spoof
+            Metric metric = res.get(name);
+            if (metric == null) {
+                metric = new Metric();
+                res.put(name, metric);
+            }
+            if (id == METADATA) {
+                metric.type = readString(in);
+                readString(in); // name again
+                metric.units = readString(in);
+                in.getInt(); // slope
+                in.getInt(); // tmax
+                in.getInt(); // dmax
+                int extras = in.getInt();
+                for (int i = 0; i < extras; i++) {
+                    String key = readString(in);
+                    String val = readString(in);
+                    if ("GROUP".equals(key)) {
+                        metric.group = val;
+                    }
+                }
+            } else if (id == STRING_VALUE) {
+                readString(in); // format
+                metric.value = readString(in);
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int len = in.getInt();
+        byte[] bytes = new byte[len];
+        in.get(bytes);
+        // XDR pads to 4 bytes
+        in.position(in.position() + ((4 - len % 4) % 4));
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
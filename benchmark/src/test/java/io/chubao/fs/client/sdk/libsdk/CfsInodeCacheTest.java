@@ -0,0 +1,73 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.libsdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CfsInodeCacheTest {
+
+    @Test
+    public void testBoundedWithoutClearing() {
+        CfsInodeCache cache = new CfsInodeCache(1000, 60000);
+        for (int i = 1; i <= 10000; i++) {
+            cache.put("/d/f" + i, i);
+            assertTrue(cache.size() <= 1000);
+        }
+        // an eviction drops an eighth, not everything
+        assertTrue(cache.size() > 800);
+        assertEquals(10000L, cache.get("/d/f10000"));
+    }
+
+    @Test
+    public void testExpiredEntriesEvictedFirst() throws Exception {
+        CfsInodeCache cache = new CfsInodeCache(100, 1);
+        for (int i = 1; i <= 100; i++) {
+            cache.put("/old/f" + i, i);
+        }
+        Thread.sleep(5);
+        cache.put("/new", 1000L);
+        assertEquals(1, cache.size());
+        assertEquals(1000L, cache.get("/new"));
+    }
+
+    @Test
+    public void testInvalidateCountsTheSubtree() {
+        CfsInodeCache cache = new CfsInodeCache(100, 60000);
+        cache.put("/a", 1L);
+        cache.put("/a/b", 2L);
+        cache.put("/a/b/c", 3L);
+        cache.put("/a0", 4L);
+        cache.put("/a/b", 5L);
+        assertEquals(4, cache.size());
+        cache.invalidate("/a");
+        assertEquals(1, cache.size());
+        assertEquals(4L, cache.get("/a0"));
+        assertEquals(0L, cache.get("/a/b"));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testExpiredGetIsCounted() throws Exception {
+        CfsInodeCache cache = new CfsInodeCache(100, 1);
+        cache.put("/a", 1L);
+        Thread.sleep(5);
+        assertEquals(0L, cache.get("/a"));
+        assertEquals(0, cache.size());
+        assertEquals(1L, cache.getMisses());
+    }
+}
@@ -0,0 +1,157 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.libsdk;
+
+import io.chubao.fs.client.bench.InProcessCfsLibrary;
+import io.chubao.fs.client.config.StorageConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/*
+ * The namespace changes drop the cached inodes of the paths they change,
+ * including those a stat or a listing racing the change caches again.
+ */
+public class InodeCacheInvalidationTest {
+    private RacingLibrary lib;
+    private FileStorageImpl storage;
+
+    /*
+     * Stats a path on another thread in the middle of the namespace change,
+     * after libsdk resolved it but before it changes the namespace.
+     */
+    private static class RacingLibrary extends InProcessCfsLibrary {
+        volatile FileStorageImpl storage;
+        volatile String racing;
+
+        @Override
+        public int cfs_unlink(long cid, String path) {
+            race();
+            return super.cfs_unlink(cid, path);
+        }
+
+        @Override
+        public int cfs_rename(long cid, String from, String to) {
+            race();
+            return super.cfs_rename(cid, from, to);
+        }
+
+        private void race() {
+            final String path = racing;
+            if (path == null) {
+                return;
+            }
+            racing = null;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        storage.stat(path);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            t.start();
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        lib = new RacingLibrary();
+        lib.cfs_mkdirs(1L, "/a/b", 0755, 0, 0);
+        lib.addFile("/a/b/f", 10L);
+        lib.addFile("/a/g", 20L);
+        StorageConfig config = new StorageConfig();
+        config.setInodeCacheSize(1000);
+        storage = new FileStorageImpl(lib, lib.cfs_new_client(), config);
+        storage.init();
+        lib.storage = storage;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        storage.close();
+    }
+
+    @Test
+    public void testUnlinkDropsRacingStat() throws Exception {
+        assertNotNull(storage.stat("/a/g"));
+        lib.racing = "/a/g";
+        storage.unlink("/a/g");
+        assertNull(statUncached("/a/g"));
+    }
+
+    @Test
+    public void testTryUnlinkDropsRacingStat() throws Exception {
+        lib.racing = "/a/g";
+        assertEquals(0, storage.tryUnlink("/a/g"));
+        assertNull(statUncached("/a/g"));
+    }
+
+    @Test
+    public void testRmdirDropsRacingStatOfChild() throws Exception {
+        assertNotNull(storage.stat("/a/b"));
+        lib.racing = "/a/b/f";
+        storage.unlink("/a/b/f");
+        lib.racing = "/a/b";
+        storage.rmdir("/a/b", false);
+        assertNull(statUncached("/a/b"));
+        assertNull(statUncached("/a/b/f"));
+    }
+
+    @Test
+    public void testRenameDropsRacingStatOfSource() throws Exception {
+        assertEquals(20L, storage.stat("/a/g").getSize());
+        lib.racing = "/a/g";
+        storage.rename("/a/g", "/a/h");
+        // a stale entry would stat the renamed inode through the old path
+        assertNull(storage.stat("/a/g"));
+        assertEquals(20L, storage.stat("/a/h").getSize());
+    }
+
+    @Test
+    public void testRenameDropsSubtreeOfSource() throws Exception {
+        assertEquals(10L, storage.stat("/a/b/f").getSize());
+        lib.racing = "/a/b/f";
+        storage.rename("/a/b", "/a/c");
+        assertNull(storage.stat("/a/b/f"));
+        assertEquals(10L, storage.stat("/a/c/f").getSize());
+    }
+
+    @Test
+    public void testRenameDropsReplacedTarget() throws Exception {
+        lib.addFile("/a/h", 30L);
+        assertEquals(30L, storage.stat("/a/h").getSize());
+        lib.racing = "/a/h";
+        storage.rename("/a/g", "/a/h");
+        assertEquals(20L, statUncached("/a/h").getSize());
+    }
+
+    private CfsStatInfo statUncached(String path) throws Exception {
+        long hits = storage.getInodeCacheHits();
+        CfsStatInfo info = storage.stat(path);
+        assertEquals("stat hit a dropped inode of " + path, hits, storage.getInodeCacheHits());
+        return info;
+    }
+}
@@ -0,0 +1,130 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.bench.InProcessCfsLibrary;
+import io.chubao.fs.client.config.StorageConfig;
+import io.chubao.fs.client.sdk.exception.CfsFileNotFoundException;
+import io.chubao.fs.client.sdk.libsdk.CfsExtent;
+import io.chubao.fs.client.sdk.libsdk.FileStorageImpl;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/*
+ * The block locations built from the extents libsdk returns, through the
+ * native buffers of FileStorageImpl.
+ */
+public class CfsBlockLocatorTest {
+  private static final String FILE = "/data/part-00000";
+  private static final long MB = 1L << 20;
+
+  private InProcessCfsLibrary lib;
+  private FileStorageImpl storage;
+  private CfsBlockLocator locator;
+
+  @Before
+  public void setUp() throws Exception {
+    lib = new InProcessCfsLibrary();
+    lib.cfs_mkdirs(1L, "/data", 0755, 0, 0);
+    lib.addFile(FILE, 300 * MB);
+    lib.setExtents(FILE, new CfsExtent[]{
+        new CfsExtent(0L, 128 * MB, 11L, new String[]{"10.0.0.1:17310", "10.0.0.2:17310", "10.0.0.3:17310"}),
+        new CfsExtent(128 * MB, 128 * MB, 12L, new String[]{"10.0.0.4:17310", "10.0.0.5:17310"}),
+        new CfsExtent(256 * MB, 44 * MB, 13L, new String[]{"datanode-6.example.com:17310"})});
+    storage = new FileStorageImpl(lib, lib.cfs_new_client(), new StorageConfig());
+    storage.init();
+    locator = new CfsBlockLocator(storage, 16);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    storage.close();
+  }
+
+  @Test
+  public void testWholeFile() throws Exception {
+    BlockLocation[] locs = locator.locate(FILE, status(300 * MB, 1L), 0L, 300 * MB);
+    assertEquals(3, locs.length);
+    assertLocation(locs[0], 0L, 128 * MB, new String[]{"10.0.0.1", "10.0.0.2", "10.0.0.3"});
+    assertLocation(locs[1], 128 * MB, 128 * MB, new String[]{"10.0.0.4", "10.0.0.5"});
+    assertLocation(locs[2], 256 * MB, 44 * MB, new String[]{"datanode-6.example.com"});
+    assertArrayEquals(new String[]{"10.0.0.4:17310", "10.0.0.5:17310"}, locs[1].getNames());
+  }
+
+  @Test
+  public void testRange() throws Exception {
+    FileStatus status = status(300 * MB, 1L);
+    BlockLocation[] locs = locator.locate(FILE, status, 200 * MB, 100 * MB);
+    assertEquals(2, locs.length);
+    assertEquals(128 * MB, locs[0].getOffset());
+    assertEquals(256 * MB, locs[1].getOffset());
+
+    locs = locator.locate(FILE, status, 128 * MB, 1L);
+    assertEquals(1, locs.length);
+    assertEquals(128 * MB, locs[0].getOffset());
+
+    assertEquals(0, locator.locate(FILE, status, 300 * MB, 10L).length);
+  }
+
+  @Test
+  public void testMoreExtentsThanOneBatch() throws Exception {
+    CfsExtent[] extents = new CfsExtent[200];
+    for (int i = 0; i < extents.length; i++) {
+      extents[i] = new CfsExtent(i * MB, MB, 100L + i, new String[]{"10.0.1." + i + ":17310"});
+    }
+    lib.setExtents(FILE, extents);
+    BlockLocation[] locs = locator.locate(FILE, status(200 * MB, 1L), 0L, 200 * MB);
+    assertEquals(200, locs.length);
+    for (int i = 0; i < locs.length; i++) {
+      assertLocation(locs[i], i * MB, MB, new String[]{"10.0.1." + i});
+    }
+  }
+
+  @Test
+  public void testCachedUntilTheFileChanges() throws Exception {
+    assertEquals(3, locator.locate(FILE, status(300 * MB, 1L), 0L, 300 * MB).length);
+    lib.setExtents(FILE, new CfsExtent[]{new CfsExtent(0L, 300 * MB, 21L, new String[]{"10.0.0.9:17310"})});
+    assertEquals(3, locator.locate(FILE, status(300 * MB, 1L), 0L, 300 * MB).length);
+
+    BlockLocation[] locs = locator.locate(FILE, status(300 * MB, 2L), 0L, 300 * MB);
+    assertEquals(1, locs.length);
+    assertLocation(locs[0], 0L, 300 * MB, new String[]{"10.0.0.9"});
+
+    lib.setExtents(FILE, new CfsExtent[0]);
+    locator.invalidate(FILE);
+    assertEquals(0, locator.locate(FILE, status(300 * MB, 2L), 0L, 300 * MB).length);
+  }
+
+  @Test(expected = CfsFileNotFoundException.class)
+  public void testMissingFile() throws Exception {
+    locator.locate("/data/missing", status(0L, 1L), 0L, 1L);
+  }
+
+  private static FileStatus status(long len, long mtime) {
+    return new FileStatus(len, false, 3, 128 * MB, mtime, new Path(FILE));
+  }
+
+  private static void assertLocation(BlockLocation loc, long offset, long len, String[] hosts) throws Exception {
+    assertEquals(offset, loc.getOffset());
+    assertEquals(len, loc.getLength());
+    assertArrayEquals(hosts, loc.getHosts());
+  }
+}
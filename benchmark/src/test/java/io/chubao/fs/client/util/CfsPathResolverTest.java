@@ -0,0 +1,54 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * The resolver against the qualified paths FileSystem.makeQualified builds.
+ */
+public class CfsPathResolverTest {
+  private static final URI FS_URI = URI.create("cfs://vol1");
+  private static final String[] PATHS = {
+      ".", "./c", "../b", "a/../b", "a/..", "c", "c/d/", "/", "/x/./y", "/x/../y",
+      "cfs://vol1/x/y", "cfs:/x"};
+
+  @Test
+  public void testAgainstMakeQualified() {
+    for (String wd : new String[]{"/", "/user/a", "/user/a/b"}) {
+      CfsPathResolver resolver = new CfsPathResolver("cfs", FS_URI);
+      resolver.setWorkingDirectory(new Path(wd));
+      for (String p : PATHS) {
+        Path path = new Path(p);
+        String expected = path.makeQualified(FS_URI, new Path(wd)).toUri().getPath();
+        assertEquals(p + " in " + wd, expected, resolver.resolve(path));
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongAuthority() {
+    new CfsPathResolver("cfs", FS_URI).resolve(new Path("cfs://vol2/x"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongScheme() {
+    new CfsPathResolver("cfs", FS_URI).resolve(new Path("hdfs://vol1/x"));
+  }
+}
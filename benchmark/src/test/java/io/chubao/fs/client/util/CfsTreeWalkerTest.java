@@ -0,0 +1,98 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.bench.InProcessCfsLibrary;
+import io.chubao.fs.client.config.StorageConfig;
+import io.chubao.fs.client.sdk.libsdk.FileStorageImpl;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/*
+ * The recursive walks sharing one pool thread, so a walk left blocked on a
+ * full result queue would stall every later one.
+ */
+public class CfsTreeWalkerTest {
+  private static final int DIRS = 200;
+  private static final int FILES = 3;
+
+  private FileStorageImpl storage;
+  private CfsWalkPool pool;
+
+  @Before
+  public void setUp() throws Exception {
+    InProcessCfsLibrary lib = new InProcessCfsLibrary();
+    lib.cfs_mkdirs(1L, "/t", 0755, 0, 0);
+    for (int i = 0; i < DIRS; i++) {
+      lib.cfs_mkdirs(1L, "/t/d" + i, 0755, 0, 0);
+      for (int j = 0; j < FILES; j++) {
+        lib.addFile("/t/d" + i + "/f" + j, 1L);
+      }
+    }
+    storage = new FileStorageImpl(lib, lib.cfs_new_client(), new StorageConfig());
+    storage.init();
+    pool = new CfsWalkPool(1);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    pool.close();
+    storage.close();
+  }
+
+  @Test(timeout = 10000)
+  public void testWalk() throws Exception {
+    assertEquals(DIRS * FILES, count(walker()));
+  }
+
+  @Test(timeout = 10000)
+  public void testClosedWalk() throws Exception {
+    CfsTreeWalker walker = walker();
+    walker.next();
+    walker.close();
+    assertFalse(walker.hasNext());
+    assertEquals(DIRS * FILES, count(walker()));
+  }
+
+  @Test(timeout = 10000)
+  public void testAbandonedWalk() throws Exception {
+    walker().next();
+    System.gc();
+    assertEquals(DIRS * FILES, count(walker()));
+  }
+
+  private CfsTreeWalker walker() {
+    return new CfsTreeWalker(storage, pool, null, new CfsTreeWalker.Locator() {
+      @Override
+      public LocatedFileStatus locate(FileStatus status) {
+        return new LocatedFileStatus(status, null);
+      }
+    }).start("/t");
+  }
+
+  private static int count(CfsTreeWalker walker) throws Exception {
+    int n = 0;
+    while (walker.hasNext()) {
+      walker.next();
+      n++;
+    }
+    return n;
+  }
+}
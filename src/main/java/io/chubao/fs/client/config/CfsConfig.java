@@ -1,8 +1,11 @@
 package io.chubao.fs.client.config;
 
+import org.apache.hadoop.conf.Configuration;
+
 import java.io.Serializable;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.*;
 
 import javax.xml.stream.XMLInputFactory;
@@ -27,8 +30,112 @@ public class CfsConfig implements Serializable {
     private final String CFS_USER_HOME_DIR_PREFIX_KEY = "dfs.user.home.dir.prefix";
     private final String CFS_USER_HOME_DIR_PREFIX_DEFAULT = "/user";
     private final String CFS_CURRENT_USE_KEY = "cfs.current.user.name";
+    private final String CFS_LIST_BATCH_SIZE_KEY = "cfs.list.batch.size";
+    private final int CFS_LIST_BATCH_SIZE_DEFAULT = 100;
+    private final String CFS_LIST_BATCH_MAX_KEY = "cfs.list.batch.max";
+    private final int CFS_LIST_BATCH_MAX_DEFAULT = 1024;
+    private final String CFS_LIST_BATCH_TARGET_MS_KEY = "cfs.list.batch.target.ms";
+    private final int CFS_LIST_BATCH_TARGET_MS_DEFAULT = 20;
+    private final String CFS_LIST_INODE_BATCH_SIZE_KEY = "cfs.list.inode.batch.size";
+    private final int CFS_LIST_INODE_BATCH_SIZE_DEFAULT = 128;
+    private final String CFS_LIST_THREADS_KEY = "cfs.list.threads";
+    private final int CFS_LIST_THREADS_DEFAULT = 4;
+    private final String CFS_LIST_RECURSIVE_THREADS_KEY = "cfs.list.recursive.threads";
+    private final int CFS_LIST_RECURSIVE_THREADS_DEFAULT = 8;
+    private final String CFS_DELETE_THREADS_KEY = "cfs.delete.threads";
+    private final int CFS_DELETE_THREADS_DEFAULT = 16;
+    private final String CFS_DELETE_PAGE_SIZE_KEY = "cfs.delete.page.size";
+    private final int CFS_DELETE_PAGE_SIZE_DEFAULT = 1000;
+    private final String CFS_OWNER_REFRESH_SECONDS_KEY = "cfs.owner.refresh.seconds";
+    private final int CFS_OWNER_REFRESH_SECONDS_DEFAULT = 300;
+    private final String CFS_OWNER_MISS_CACHE_SIZE_KEY = "cfs.owner.miss.cache.size";
+    private final int CFS_OWNER_MISS_CACHE_SIZE_DEFAULT = 1024;
+    private final String CFS_OWNER_MAPPING_CLASS_KEY = "cfs.owner.mapping.class";
+    private final String CFS_BLOCK_LOCATION_CACHE_SIZE_KEY = "cfs.block.location.cache.size";
+    private final int CFS_BLOCK_LOCATION_CACHE_SIZE_DEFAULT = 1024;
+    private final String CFS_INODE_CACHE_SIZE_KEY = "cfs.inode.cache.size";
+    // off: a path renamed by another client reaches the old inode until the ttl passes
+    private final int CFS_INODE_CACHE_SIZE_DEFAULT = 0;
+    private final String CFS_INODE_CACHE_TTL_MS_KEY = "cfs.inode.cache.ttl.ms";
+    private final int CFS_INODE_CACHE_TTL_MS_DEFAULT = 5000;
+    private final String CFS_NATIVE_OFFLOAD_THREADS_KEY = "cfs.native.offload.threads";
+    private final int CFS_NATIVE_OFFLOAD_THREADS_DEFAULT = 0;
+    private final String CFS_NATIVE_OFFLOAD_QUEUE_KEY = "cfs.native.offload.queue";
+    private final int CFS_NATIVE_OFFLOAD_QUEUE_DEFAULT = 1024;
+    private final String CFS_CLIENT_POOL_SIZE_KEY = "cfs.client.pool.size";
+    private final int CFS_CLIENT_POOL_SIZE_DEFAULT = 1;
+    private final String CFS_CLIENT_ROUTE_KEY = "cfs.client.route";
+    private final String CFS_CLIENT_ROUTE_DEFAULT = "hash";
+    private final String CFS_JNA_DIRECT_KEY = "cfs.jna.direct";
+    private final boolean CFS_JNA_DIRECT_DEFAULT = true;
+    private final String CFS_JNA_PATH_CACHE_SIZE_KEY = "cfs.jna.path.cache.size";
+    private final int CFS_JNA_PATH_CACHE_SIZE_DEFAULT = 1024;
+    private final String CFS_ASYNC_THREADS_KEY = "cfs.async.threads";
+    private final int CFS_ASYNC_THREADS_DEFAULT = 16;
+    private final String CFS_ASYNC_VIRTUAL_KEY = "cfs.async.virtual";
+    private final boolean CFS_ASYNC_VIRTUAL_DEFAULT = false;
+    private final String CFS_LOCATE_AHEAD_KEY = "cfs.list.locate.ahead";
+    private final int CFS_LOCATE_AHEAD_DEFAULT = 16;
+    private final String CFS_SCHED_ENABLED_KEY = "cfs.sched.enabled";
+    private final boolean CFS_SCHED_ENABLED_DEFAULT = false;
+    private final String CFS_SCHED_TOTAL_LIMIT_KEY = "cfs.sched.total.limit";
+    private final int CFS_SCHED_TOTAL_LIMIT_DEFAULT = 96;
+    private final String CFS_SCHED_METADATA_LIMIT_KEY = "cfs.sched.metadata.limit";
+    private final int CFS_SCHED_METADATA_LIMIT_DEFAULT = 64;
+    private final String CFS_SCHED_DATA_LIMIT_KEY = "cfs.sched.data.limit";
+    private final int CFS_SCHED_DATA_LIMIT_DEFAULT = 32;
+    private final String CFS_SCHED_BACKGROUND_LIMIT_KEY = "cfs.sched.background.limit";
+    private final int CFS_SCHED_BACKGROUND_LIMIT_DEFAULT = 8;
+    private final String CFS_SCHED_METADATA_QUEUE_KEY = "cfs.sched.metadata.queue";
+    private final int CFS_SCHED_METADATA_QUEUE_DEFAULT = 4096;
+    private final String CFS_SCHED_DATA_QUEUE_KEY = "cfs.sched.data.queue";
+    private final int CFS_SCHED_DATA_QUEUE_DEFAULT = 1024;
+    private final String CFS_SCHED_BACKGROUND_QUEUE_KEY = "cfs.sched.background.queue";
+    private final int CFS_SCHED_BACKGROUND_QUEUE_DEFAULT = 256;
+    // 0 means no deadline
+    private final String CFS_DEADLINE_METADATA_MS_KEY = "cfs.deadline.metadata.ms";
+    private final int CFS_DEADLINE_METADATA_MS_DEFAULT = 0;
+    private final String CFS_DEADLINE_DATA_MS_KEY = "cfs.deadline.data.ms";
+    private final int CFS_DEADLINE_DATA_MS_DEFAULT = 0;
+    private final String CFS_DEADLINE_BACKGROUND_MS_KEY = "cfs.deadline.background.ms";
+    private final int CFS_DEADLINE_BACKGROUND_MS_DEFAULT = 0;
+    private final String CFS_CALL_INTERRUPTIBLE_KEY = "cfs.call.interruptible";
+    private final boolean CFS_CALL_INTERRUPTIBLE_DEFAULT = false;
+    private final String CFS_METRICS_ENABLED_KEY = "cfs.metrics.enabled";
+    private final boolean CFS_METRICS_ENABLED_DEFAULT = true;
+    // comma separated host:port of the gmond receivers, unset disables the reporter
+    private final String CFS_METRICS_GANGLIA_SERVERS_KEY = "cfs.metrics.ganglia.servers";
+    private final String CFS_METRICS_GANGLIA_PERIOD_SECONDS_KEY = "cfs.metrics.ganglia.period.seconds";
+    private final int CFS_METRICS_GANGLIA_PERIOD_SECONDS_DEFAULT = 10;
+    private final String CFS_TRACE_ENABLED_KEY = "cfs.trace.enabled";
+    private final boolean CFS_TRACE_ENABLED_DEFAULT = true;
+    private final String CFS_TRACE_STREAMS_KEY = "cfs.trace.streams";
+    private final boolean CFS_TRACE_STREAMS_DEFAULT = false;
+    private final String CFS_TRACE_RING_SIZE_KEY = "cfs.trace.ring.size";
+    private final int CFS_TRACE_RING_SIZE_DEFAULT = 4096;
+    private final String CFS_TRACE_SLOW_MS_KEY = "cfs.trace.slow.threshold.ms";
+    private final int CFS_TRACE_SLOW_MS_DEFAULT = 1000;
+    private final String CFS_TRACE_SLOW_SAMPLE_PERCENT_KEY = "cfs.trace.slow.sample.percent";
+    private final int CFS_TRACE_SLOW_SAMPLE_PERCENT_DEFAULT = 100;
+    // comma separated CfsSpanHook class names
+    private final String CFS_TRACE_HOOKS_KEY = "cfs.trace.hooks";
+    private final static String CFS_KEY_PREFIX = "cfs.";
+    // parsed cfs-site.xml files, reparsed only when the file changes
+    private final static Map<String, SiteFile> siteFiles = new ConcurrentHashMap<>();
     private Map<String, String> configs = new HashMap<>();
 
+    private static final class SiteFile {
+        final long modified;
+        final long length;
+        final Map<String, String> configs;
+
+        SiteFile(long modified, long length, Map<String, String> configs) {
+            this.modified = modified;
+            this.length = length;
+            this.configs = configs;
+        }
+    }
+
 
     public CfsConfig() {}
 
@@ -80,6 +187,217 @@ public class CfsConfig implements Serializable {
         return CFS_DEFAULT_DIR_PERMISSION;
     }
 
+    public int getListBatchSize() {
+        return getInt(CFS_LIST_BATCH_SIZE_KEY, CFS_LIST_BATCH_SIZE_DEFAULT);
+    }
+
+    public int getListBatchMax() {
+        return getInt(CFS_LIST_BATCH_MAX_KEY, CFS_LIST_BATCH_MAX_DEFAULT);
+    }
+
+    public int getListBatchTargetMs() {
+        return getInt(CFS_LIST_BATCH_TARGET_MS_KEY, CFS_LIST_BATCH_TARGET_MS_DEFAULT);
+    }
+
+    public int getListInodeBatchSize() {
+        return getInt(CFS_LIST_INODE_BATCH_SIZE_KEY, CFS_LIST_INODE_BATCH_SIZE_DEFAULT);
+    }
+
+    public int getListThreads() {
+        return getInt(CFS_LIST_THREADS_KEY, CFS_LIST_THREADS_DEFAULT);
+    }
+
+    public int getListRecursiveThreads() {
+        return getInt(CFS_LIST_RECURSIVE_THREADS_KEY, CFS_LIST_RECURSIVE_THREADS_DEFAULT);
+    }
+
+    public int getDeleteThreads() {
+        return getInt(CFS_DELETE_THREADS_KEY, CFS_DELETE_THREADS_DEFAULT);
+    }
+
+    public int getDeletePageSize() {
+        return getInt(CFS_DELETE_PAGE_SIZE_KEY, CFS_DELETE_PAGE_SIZE_DEFAULT);
+    }
+
+    public int getOwnerRefreshSeconds() {
+        return getInt(CFS_OWNER_REFRESH_SECONDS_KEY, CFS_OWNER_REFRESH_SECONDS_DEFAULT);
+    }
+
+    public int getOwnerMissCacheSize() {
+        return getInt(CFS_OWNER_MISS_CACHE_SIZE_KEY, CFS_OWNER_MISS_CACHE_SIZE_DEFAULT);
+    }
+
+    public String getOwnerMappingClass() {
+        return configs.get(CFS_OWNER_MAPPING_CLASS_KEY);
+    }
+
+    public int getBlockLocationCacheSize() {
+        return getInt(CFS_BLOCK_LOCATION_CACHE_SIZE_KEY, CFS_BLOCK_LOCATION_CACHE_SIZE_DEFAULT);
+    }
+
+    public int getInodeCacheSize() {
+        return getInt(CFS_INODE_CACHE_SIZE_KEY, CFS_INODE_CACHE_SIZE_DEFAULT);
+    }
+
+    public int getInodeCacheTtlMs() {
+        return getInt(CFS_INODE_CACHE_TTL_MS_KEY, CFS_INODE_CACHE_TTL_MS_DEFAULT);
+    }
+
+    /*
+     * The async calls on virtual threads always offload, a virtual thread
+     * blocked in libsdk would pin its carrier.
+     */
+    public int getNativeOffloadThreads() {
+        int threads = getInt(CFS_NATIVE_OFFLOAD_THREADS_KEY, CFS_NATIVE_OFFLOAD_THREADS_DEFAULT);
+        if (threads <= 0 && getAsyncVirtual()) {
+            return Math.max(1, getAsyncThreads());
+        }
+        return threads;
+    }
+
+    public int getNativeOffloadQueue() {
+        return getInt(CFS_NATIVE_OFFLOAD_QUEUE_KEY, CFS_NATIVE_OFFLOAD_QUEUE_DEFAULT);
+    }
+
+    public int getClientPoolSize() {
+        return getInt(CFS_CLIENT_POOL_SIZE_KEY, CFS_CLIENT_POOL_SIZE_DEFAULT);
+    }
+
+    /*
+     * hash or least-loaded.
+     */
+    public String getClientRoute() {
+        String res = configs.get(CFS_CLIENT_ROUTE_KEY);
+        if (res == null || res.trim().isEmpty()) {
+            return CFS_CLIENT_ROUTE_DEFAULT;
+        }
+        return res.trim();
+    }
+
+    public boolean getDirectMapping() {
+        return getBoolean(CFS_JNA_DIRECT_KEY, CFS_JNA_DIRECT_DEFAULT);
+    }
+
+    public int getPathCacheSize() {
+        return getInt(CFS_JNA_PATH_CACHE_SIZE_KEY, CFS_JNA_PATH_CACHE_SIZE_DEFAULT);
+    }
+
+    public int getAsyncThreads() {
+        return getInt(CFS_ASYNC_THREADS_KEY, CFS_ASYNC_THREADS_DEFAULT);
+    }
+
+    public boolean getAsyncVirtual() {
+        return getBoolean(CFS_ASYNC_VIRTUAL_KEY, CFS_ASYNC_VIRTUAL_DEFAULT);
+    }
+
+    public int getLocateAhead() {
+        return getInt(CFS_LOCATE_AHEAD_KEY, CFS_LOCATE_AHEAD_DEFAULT);
+    }
+
+    public boolean getSchedulerEnabled() {
+        return getBoolean(CFS_SCHED_ENABLED_KEY, CFS_SCHED_ENABLED_DEFAULT);
+    }
+
+    public int getSchedulerTotalLimit() {
+        return getInt(CFS_SCHED_TOTAL_LIMIT_KEY, CFS_SCHED_TOTAL_LIMIT_DEFAULT);
+    }
+
+    public int getSchedulerMetadataLimit() {
+        return getInt(CFS_SCHED_METADATA_LIMIT_KEY, CFS_SCHED_METADATA_LIMIT_DEFAULT);
+    }
+
+    public int getSchedulerDataLimit() {
+        return getInt(CFS_SCHED_DATA_LIMIT_KEY, CFS_SCHED_DATA_LIMIT_DEFAULT);
+    }
+
+    public int getSchedulerBackgroundLimit() {
+        return getInt(CFS_SCHED_BACKGROUND_LIMIT_KEY, CFS_SCHED_BACKGROUND_LIMIT_DEFAULT);
+    }
+
+    public int getSchedulerMetadataQueue() {
+        return getInt(CFS_SCHED_METADATA_QUEUE_KEY, CFS_SCHED_METADATA_QUEUE_DEFAULT);
+    }
+
+    public int getSchedulerDataQueue() {
+        return getInt(CFS_SCHED_DATA_QUEUE_KEY, CFS_SCHED_DATA_QUEUE_DEFAULT);
+    }
+
+    public int getSchedulerBackgroundQueue() {
+        return getInt(CFS_SCHED_BACKGROUND_QUEUE_KEY, CFS_SCHED_BACKGROUND_QUEUE_DEFAULT);
+    }
+
+    public int getMetadataDeadlineMs() {
+        return getInt(CFS_DEADLINE_METADATA_MS_KEY, CFS_DEADLINE_METADATA_MS_DEFAULT);
+    }
+
+    public int getDataDeadlineMs() {
+        return getInt(CFS_DEADLINE_DATA_MS_KEY, CFS_DEADLINE_DATA_MS_DEFAULT);
+    }
+
+    public int getBackgroundDeadlineMs() {
+        return getInt(CFS_DEADLINE_BACKGROUND_MS_KEY, CFS_DEADLINE_BACKGROUND_MS_DEFAULT);
+    }
+
+    public boolean getCallInterruptible() {
+        return getBoolean(CFS_CALL_INTERRUPTIBLE_KEY, CFS_CALL_INTERRUPTIBLE_DEFAULT);
+    }
+
+    public boolean getMetricsEnabled() {
+        return getBoolean(CFS_METRICS_ENABLED_KEY, CFS_METRICS_ENABLED_DEFAULT);
+    }
+
+    public String getGangliaServers() {
+        return configs.get(CFS_METRICS_GANGLIA_SERVERS_KEY);
+    }
+
+    public int getGangliaPeriodSeconds() {
+        return getInt(CFS_METRICS_GANGLIA_PERIOD_SECONDS_KEY, CFS_METRICS_GANGLIA_PERIOD_SECONDS_DEFAULT);
+    }
+
+    public boolean getTraceEnabled() {
+        return getBoolean(CFS_TRACE_ENABLED_KEY, CFS_TRACE_ENABLED_DEFAULT);
+    }
+
+    public boolean getTraceStreams() {
+        return getBoolean(CFS_TRACE_STREAMS_KEY, CFS_TRACE_STREAMS_DEFAULT);
+    }
+
+    public int getTraceRingSize() {
+        return getInt(CFS_TRACE_RING_SIZE_KEY, CFS_TRACE_RING_SIZE_DEFAULT);
+    }
+
+    public int getTraceSlowThresholdMs() {
+        return getInt(CFS_TRACE_SLOW_MS_KEY, CFS_TRACE_SLOW_MS_DEFAULT);
+    }
+
+    public int getTraceSlowSamplePercent() {
+        return getInt(CFS_TRACE_SLOW_SAMPLE_PERCENT_KEY, CFS_TRACE_SLOW_SAMPLE_PERCENT_DEFAULT);
+    }
+
+    public String getTraceHooks() {
+        return configs.get(CFS_TRACE_HOOKS_KEY);
+    }
+
+    private boolean getBoolean(String key, boolean def) {
+        String res = configs.get(key);
+        if (res == null || res.trim().isEmpty()) {
+            return def;
+        }
+        return Boolean.parseBoolean(res.trim());
+    }
+
+    private int getInt(String key, int def) {
+        String res = configs.get(key);
+        if (res == null || res.trim().isEmpty()) {
+            return def;
+        }
+        try {
+            return Integer.parseInt(res.trim());
+        } catch (NumberFormatException ex) {
+            return def;
+        }
+    }
+
     public String getCurrentUser() {
         return configs.get(CFS_CURRENT_USE_KEY);
     }
@@ -101,6 +419,50 @@ public class CfsConfig implements Serializable {
         }
     }
 
+    /*
+     * Loads the cfs.* keys and dfs.user.home.dir.prefix of the Hadoop
+     * configuration on top of the optional cfs-site.xml, so the keys can be
+     * set in core-site.xml or per job without the site file.
+     */
+    public void load(Configuration conf, String configFile) throws Exception {
+        Map<String, String> map = new HashMap<>();
+        if (configFile != null && new File(configFile).exists()) {
+            try {
+                map.putAll(parseCached(configFile));
+            } catch (Exception ex) {
+                throw new Exception("Failed to parse the config, " + configFile, ex);
+            }
+        }
+        if (conf != null) {
+            for (Map.Entry<String, String> e : conf.getPropsWithPrefix(CFS_KEY_PREFIX).entrySet()) {
+                map.put(CFS_KEY_PREFIX + e.getKey(), e.getValue());
+            }
+            String homePrefix = conf.get(CFS_USER_HOME_DIR_PREFIX_KEY);
+            if (homePrefix != null) {
+                map.put(CFS_USER_HOME_DIR_PREFIX_KEY, homePrefix);
+            }
+        }
+        this.configs = map;
+
+        boolean checkRes = check();
+        if (checkRes == false) {
+            throw new Exception("There is may be less some config.");
+        }
+    }
+
+    private Map<String, String> parseCached(String configFile) throws FileNotFoundException, XMLStreamException {
+        File file = new File(configFile);
+        long modified = file.lastModified();
+        long length = file.length();
+        SiteFile site = siteFiles.get(configFile);
+        if (site == null || site.modified != modified || site.length != length) {
+            parse(configFile);
+            site = new SiteFile(modified, length, new HashMap<>(configs));
+            siteFiles.put(configFile, site);
+        }
+        return site.configs;
+    }
+
     private void parse(String configFile) throws FileNotFoundException, XMLStreamException {
         XMLInputFactory factory = XMLInputFactory.newInstance();
         Reader fileReader = new FileReader(new File(configFile));
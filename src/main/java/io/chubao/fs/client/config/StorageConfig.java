@@ -31,6 +31,35 @@ public class StorageConfig {
     private String logDir = "/var/log/cfs/";
     private String logLevel = "info";
     private boolean followerRread = false;
+    private int listBatchSize = 100;
+    private int listBatchMax = 1024;
+    private int listBatchTargetMs = 20;
+    private int listInodeBatchSize = 128;
+    private int listThreads = 4;
+    private int ownerRefreshSeconds = 300;
+    private int ownerMissCacheSize = 1024;
+    private String ownerMappingClass;
+    // off, see CfsInodeCache for the staleness across clients
+    private int inodeCacheSize = 0;
+    private int inodeCacheTtlMs = 5000;
+    private int nativeOffloadThreads = 0;
+    private int nativeOffloadQueue = 1024;
+    private int clientPoolSize = 1;
+    private String clientRoute = "hash";
+    private boolean directMapping = true;
+    private int pathCacheSize = 1024;
+    private boolean schedulerEnabled = false;
+    private int schedulerTotalLimit = 96;
+    // metadata, data and background lanes
+    private int[] schedulerLimits = new int[]{64, 32, 8};
+    private int[] schedulerQueues = new int[]{4096, 1024, 256};
+    // per lane, 0 means no deadline
+    private int[] callDeadlinesMs = new int[]{0, 0, 0};
+    private boolean callInterruptible = false;
+    private boolean metricsEnabled = true;
+    // null when the metrics are not sent to Ganglia
+    private String gangliaServers;
+    private int gangliaPeriodSeconds = 10;
 
     public StorageConfig() {
     }
@@ -81,6 +110,206 @@ public class StorageConfig {
         return this.followerRread;
     }
 
+    public int getListBatchSize() {
+        return this.listBatchSize;
+    }
+
+    public void setListBatchSize(int size) {
+        this.listBatchSize = size;
+    }
+
+    public int getListBatchMax() {
+        return this.listBatchMax;
+    }
+
+    public void setListBatchMax(int size) {
+        this.listBatchMax = size;
+    }
+
+    public int getListBatchTargetMs() {
+        return this.listBatchTargetMs;
+    }
+
+    public void setListBatchTargetMs(int ms) {
+        this.listBatchTargetMs = ms;
+    }
+
+    public int getListInodeBatchSize() {
+        return this.listInodeBatchSize;
+    }
+
+    public void setListInodeBatchSize(int size) {
+        this.listInodeBatchSize = size;
+    }
+
+    public int getListThreads() {
+        return this.listThreads;
+    }
+
+    public void setListThreads(int threads) {
+        this.listThreads = threads;
+    }
+
+    public int getOwnerRefreshSeconds() {
+        return this.ownerRefreshSeconds;
+    }
+
+    public void setOwnerRefreshSeconds(int seconds) {
+        this.ownerRefreshSeconds = seconds;
+    }
+
+    public int getOwnerMissCacheSize() {
+        return this.ownerMissCacheSize;
+    }
+
+    public void setOwnerMissCacheSize(int size) {
+        this.ownerMissCacheSize = size;
+    }
+
+    public String getOwnerMappingClass() {
+        return this.ownerMappingClass;
+    }
+
+    public void setOwnerMappingClass(String className) {
+        this.ownerMappingClass = className;
+    }
+
+    public int getInodeCacheSize() {
+        return this.inodeCacheSize;
+    }
+
+    public void setInodeCacheSize(int size) {
+        this.inodeCacheSize = size;
+    }
+
+    public int getInodeCacheTtlMs() {
+        return this.inodeCacheTtlMs;
+    }
+
+    public void setInodeCacheTtlMs(int ms) {
+        this.inodeCacheTtlMs = ms;
+    }
+
+    public int getNativeOffloadThreads() {
+        return this.nativeOffloadThreads;
+    }
+
+    public void setNativeOffloadThreads(int threads) {
+        this.nativeOffloadThreads = threads;
+    }
+
+    public int getNativeOffloadQueue() {
+        return this.nativeOffloadQueue;
+    }
+
+    public void setNativeOffloadQueue(int size) {
+        this.nativeOffloadQueue = size;
+    }
+
+    public int getClientPoolSize() {
+        return this.clientPoolSize;
+    }
+
+    public void setClientPoolSize(int size) {
+        this.clientPoolSize = size;
+    }
+
+    public String getClientRoute() {
+        return this.clientRoute;
+    }
+
+    public void setClientRoute(String route) {
+        this.clientRoute = route;
+    }
+
+    public boolean getDirectMapping() {
+        return this.directMapping;
+    }
+
+    public void setDirectMapping(boolean direct) {
+        this.directMapping = direct;
+    }
+
+    public int getPathCacheSize() {
+        return this.pathCacheSize;
+    }
+
+    public void setPathCacheSize(int size) {
+        this.pathCacheSize = size;
+    }
+
+    public boolean getSchedulerEnabled() {
+        return this.schedulerEnabled;
+    }
+
+    public void setSchedulerEnabled(boolean enabled) {
+        this.schedulerEnabled = enabled;
+    }
+
+    public int getSchedulerTotalLimit() {
+        return this.schedulerTotalLimit;
+    }
+
+    public void setSchedulerTotalLimit(int limit) {
+        this.schedulerTotalLimit = limit;
+    }
+
+    public int[] getSchedulerLimits() {
+        return this.schedulerLimits.clone();
+    }
+
+    public void setSchedulerLimits(int metadata, int data, int background) {
+        this.schedulerLimits = new int[]{metadata, data, background};
+    }
+
+    public int[] getSchedulerQueues() {
+        return this.schedulerQueues.clone();
+    }
+
+    public void setSchedulerQueues(int metadata, int data, int background) {
+        this.schedulerQueues = new int[]{metadata, data, background};
+    }
+
+    public int[] getCallDeadlinesMs() {
+        return this.callDeadlinesMs.clone();
+    }
+
+    public void setCallDeadlinesMs(int metadata, int data, int background) {
+        this.callDeadlinesMs = new int[]{metadata, data, background};
+    }
+
+    public boolean getCallInterruptible() {
+        return this.callInterruptible;
+    }
+
+    public void setCallInterruptible(boolean interruptible) {
+        this.callInterruptible = interruptible;
+    }
+
+    public boolean getMetricsEnabled() {
+        return this.metricsEnabled;
+    }
+
+    public void setMetricsEnabled(boolean enabled) {
+        this.metricsEnabled = enabled;
+    }
+
+    public String getGangliaServers() {
+        return this.gangliaServers;
+    }
+
+    public void setGangliaServers(String servers) {
+        this.gangliaServers = servers;
+    }
+
+    public int getGangliaPeriodSeconds() {
+        return this.gangliaPeriodSeconds;
+    }
+
+    public void setGangliaPeriodSeconds(int seconds) {
+        this.gangliaPeriodSeconds = seconds;
+    }
+
     public String getOwner() {
         return this.owner;
     }
@@ -0,0 +1,249 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.metrics;
+
+import info.ganglia.gmetric4j.gmetric.GMetric;
+import info.ganglia.gmetric4j.gmetric.GMetricSlope;
+import info.ganglia.gmetric4j.gmetric.GMetricType;
+import info.ganglia.gmetric4j.gmetric.GangliaException;
+import io.chubao.fs.client.sdk.client.CfsCallMetrics;
+import io.chubao.fs.client.sdk.client.CfsClientPool;
+import io.chubao.fs.client.sdk.client.CfsLatencyHistogram;
+import io.chubao.fs.client.sdk.libsdk.FileStorageImpl;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Sends the metrics of a mount to Ganglia as gmetric UDP packets once per
+ * period: the read and write throughput, the rates and the latency of the
+ * libsdk calls, the inode cache hit rate, the open fds, and the calls in
+ * flight and the call rate of each libsdk client, all named
+ * cfs.<volume>.<metric> in the cfs group. The rates, the latencies and the
+ * hit rate cover the last period.
+ *
+ * The overhead is bounded: one daemon thread per reporter, at most a fixed
+ * number of metrics per period as the ops never called are skipped, and the
+ * packets are sent without waiting for any answer, so a gmond that is down
+ * costs a warning per outage.
+ */
+public class CfsGangliaReporter implements Closeable {
+    private static final Log log = LogFactory.getLog(CfsGangliaReporter.class);
+    public static final String GROUP = "cfs";
+    private static final CfsCallMetrics.Op[] OPS = CfsCallMetrics.Op.values();
+    // the multicast ttl, the receivers are on the local network
+    private static final int TTL = 1;
+
+    private final String prefix;
+    private final CfsCallMetrics metrics;
+    private final FileStorageImpl storage;
+    private final List<GMetric> gmetrics;
+    private final int periodSeconds;
+    private final ScheduledThreadPoolExecutor timer;
+
+    // guarded by this
+    private final CfsLatencyHistogram.Snapshot[] base = new CfsLatencyHistogram.Snapshot[OPS.length];
+    private long reportedAt = System.nanoTime();
+    private long readBytes;
+    private long writeBytes;
+    private long errors;
+    private long cacheHits;
+    private long cacheMisses;
+    private long[] clientCalls = new long[0];
+    // a failure is logged once until a round goes through
+    private boolean failing = false;
+    private boolean roundFailed;
+
+    /*
+     * servers is a comma separated list of host:port, a multicast host is
+     * sent to as a multicast group. storage is null when there is no inode
+     * cache and no libsdk client to report.
+     */
+    public CfsGangliaReporter(String volume, CfsCallMetrics metrics, FileStorageImpl storage, String servers,
+                              int periodSeconds) throws IOException {
+        this.prefix = GROUP + "." + volume + ".";
+        this.metrics = metrics;
+        this.storage = storage;
+        this.periodSeconds = Math.max(1, periodSeconds);
+        this.gmetrics = new ArrayList<>();
+        try {
+            for (String server : servers.split(",")) {
+                server = server.trim();
+                if (server.isEmpty()) {
+                    continue;
+                }
+                int idx = server.lastIndexOf(':');
+                if (idx <= 0 || idx == server.length() - 1) {
+                    throw new IOException("Invalid Ganglia server, expected host:port: " + server);
+                }
+                String host = server.substring(0, idx);
+                int port;
+                try {
+                    port = Integer.parseInt(server.substring(idx + 1));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid Ganglia server port: " + server);
+                }
+                gmetrics.add(new GMetric(host, port, GMetric.UDPAddressingMode.getModeForAddress(host), TTL, true));
+            }
+        } catch (IOException e) {
+            closeGMetrics();
+            throw e;
+        }
+        if (gmetrics.isEmpty()) {
+            throw new IOException("No Ganglia server in: " + servers);
+        }
+        this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "cfs-ganglia-" + volume);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        for (CfsCallMetrics.Op op : OPS) {
+            base[op.ordinal()] = metrics.get(op).getLatency().snapshot();
+        }
+        readBytes = metrics.get(CfsCallMetrics.Op.READ).getBytes();
+        writeBytes = metrics.get(CfsCallMetrics.Op.WRITE).getBytes();
+        errors = totalErrors();
+        if (storage != null) {
+            cacheHits = storage.getInodeCacheHits();
+            cacheMisses = storage.getInodeCacheMisses();
+            CfsClientPool clients = storage.getClientPool();
+            clientCalls = new long[clients.size()];
+            for (int i = 0; i < clientCalls.length; i++) {
+                clientCalls[i] = clients.get(i).getCalls();
+            }
+        }
+    }
+
+    public void start() {
+        timer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    report();
+                } catch (Throwable e) {
+                    // keep the schedule alive
+                    log.warn("Failed to report the metrics to Ganglia.", e);
+                }
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /*
+     * Sends one round of the metrics, covering the time since the last one.
+     */
+    public synchronized void report() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1L, now - reportedAt) / 1e9;
+        reportedAt = now;
+        roundFailed = false;
+
+        long read = metrics.get(CfsCallMetrics.Op.READ).getBytes();
+        long written = metrics.get(CfsCallMetrics.Op.WRITE).getBytes();
+        long errs = totalErrors();
+        send("readBytesPerSec", (read - readBytes) / seconds, "bytes/sec");
+        send("writeBytesPerSec", (written - writeBytes) / seconds, "bytes/sec");
+        send("errorsPerSec", (errs - errors) / seconds, "errors/sec");
+        readBytes = read;
+        writeBytes = written;
+        errors = errs;
+
+        long calls = 0L;
+        for (CfsCallMetrics.Op op : OPS) {
+            CfsLatencyHistogram.Snapshot snap = metrics.get(op).getLatency().snapshot();
+            CfsLatencyHistogram.Snapshot win = snap.minus(base[op.ordinal()]);
+            base[op.ordinal()] = snap;
+            if (snap.getCount() == 0L) {
+                continue;
+            }
+            calls += win.getCount();
+            String name = CfsMetricsSource.camelCase(op.name(), false);
+            send(name + "CallsPerSec", win.getCount() / seconds, "calls/sec");
+            send(name + "MeanUs", win.getMeanUs(), "us");
+            send(name + "P50Us", win.getPercentileUs(0.5), "us");
+            send(name + "P99Us", win.getPercentileUs(0.99), "us");
+        }
+        send("callsPerSec", calls / seconds, "calls/sec");
+
+        if (storage != null) {
+            long hits = storage.getInodeCacheHits();
+            long misses = storage.getInodeCacheMisses();
+            long lookups = (hits - cacheHits) + (misses - cacheMisses);
+            send("inodeCacheHitPercent", lookups == 0L ? 0.0 : 100.0 * (hits - cacheHits) / lookups, "%");
+            cacheHits = hits;
+            cacheMisses = misses;
+            CfsClientPool clients = storage.getClientPool();
+            for (int i = 0; i < clientCalls.length; i++) {
+                CfsClientPool.Client client = clients.get(i);
+                long made = client.getCalls();
+                send("client" + i + "CallsPerSec", (made - clientCalls[i]) / seconds, "calls/sec");
+                send("client" + i + "Inflight", client.getInflight(), "calls");
+                clientCalls[i] = made;
+            }
+        }
+        send("openFds", metrics.getOpenFds(), "fds");
+        if (failing && !roundFailed) {
+            failing = false;
+            log.info("Sending the metrics to Ganglia again.");
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        closeGMetrics();
+    }
+
+    private void send(String name, double value, String units) {
+        for (GMetric gmetric : gmetrics) {
+            try {
+                gmetric.announce(prefix + name, String.valueOf(value), GMetricType.DOUBLE, units,
+                        GMetricSlope.BOTH, periodSeconds, 0, GROUP);
+            } catch (GangliaException e) {
+                roundFailed = true;
+                if (!failing) {
+                    failing = true;
+                    log.warn("Failed to send the metrics to Ganglia: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private long totalErrors() {
+        long res = 0L;
+        for (CfsCallMetrics.Op op : OPS) {
+            res += metrics.get(op).getErrors();
+        }
+        return res;
+    }
+
+    private void closeGMetrics() {
+        for (GMetric gmetric : gmetrics) {
+            try {
+                gmetric.close();
+            } catch (IOException e) {
+                log.debug("Failed to close the gmetric socket.", e);
+            }
+        }
+    }
+}
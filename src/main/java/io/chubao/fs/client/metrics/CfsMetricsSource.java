@@ -0,0 +1,210 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.metrics;
+
+import io.chubao.fs.client.sdk.client.CfsCallMetrics;
+import io.chubao.fs.client.sdk.client.CfsCallScheduler;
+import io.chubao.fs.client.sdk.client.CfsClientPool;
+import io.chubao.fs.client.sdk.client.CfsLatencyHistogram;
+import io.chubao.fs.client.sdk.exception.StatusCodes;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsInfo;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.MetricsSystem;
+import org.apache.hadoop.metrics2.impl.MetricsSystemImpl;
+import org.apache.hadoop.metrics2.lib.Interns;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Publishes the CfsCallMetrics of a mount, the calls in flight and made on
+ * each of its libsdk clients, and the queues of its CfsCallScheduler lanes
+ * through Hadoop metrics2. The
+ * counters are totals since the mount started, the latency percentiles and
+ * the mean cover the last complete window of ROLL_INTERVAL_MS, so the sinks
+ * and the JMX reads, which snapshot the source at their own pace, all see
+ * the same window. The sources share a metrics system named
+ * cfs-file-system, configured by hadoop-metrics2-cfs-file-system.properties,
+ * which is started with the first source and stopped with the last one.
+ */
+public class CfsMetricsSource implements MetricsSource {
+    private static final Log log = LogFactory.getLog(CfsMetricsSource.class);
+    public static final String METRICS_SYSTEM_NAME = "cfs-file-system";
+    private static final String RECORD_NAME = "CfsNativeCalls";
+    private static final String CONTEXT = "cfs";
+    private static final MetricsInfo VOLUME = Interns.info("Volume", "The CFS volume.");
+    private static final CfsCallMetrics.Op[] OPS = CfsCallMetrics.Op.values();
+    private static final StatusCodes[] CODES = StatusCodes.values();
+    private static final CfsCallScheduler.Lane[] LANES = CfsCallScheduler.Lane.values();
+    private static final AtomicInteger seq = new AtomicInteger(0);
+    // the default period of the metrics2 sinks
+    private static final long ROLL_INTERVAL_MS = 10000L;
+    private static final CfsLatencyHistogram.Snapshot EMPTY = new CfsLatencyHistogram().snapshot();
+
+    // guarded by CfsMetricsSource.class
+    private static MetricsSystem metricsSystem;
+    private static int sources = 0;
+
+    private final String name;
+    private final String volume;
+    private final CfsCallMetrics metrics;
+    private final CfsClientPool clients;
+    private final CfsCallScheduler scheduler;
+    // guarded by this
+    private final CfsLatencyHistogram.Snapshot[] base = new CfsLatencyHistogram.Snapshot[OPS.length];
+    private final CfsLatencyHistogram.Snapshot[] window = new CfsLatencyHistogram.Snapshot[OPS.length];
+    private long rolledAt = System.currentTimeMillis();
+
+    private CfsMetricsSource(String name, String volume, CfsCallMetrics metrics, CfsClientPool clients,
+                             CfsCallScheduler scheduler) {
+        this.name = name;
+        this.volume = volume;
+        this.metrics = metrics;
+        this.clients = clients;
+        this.scheduler = scheduler;
+    }
+
+    /*
+     * clients is null when there are no libsdk clients to report, scheduler
+     * when the native calls are not scheduled.
+     */
+    public static synchronized CfsMetricsSource register(String volume, CfsCallMetrics metrics,
+                                                         CfsClientPool clients, CfsCallScheduler scheduler) {
+        if (metricsSystem == null) {
+            metricsSystem = new MetricsSystemImpl();
+            metricsSystem.init(METRICS_SYSTEM_NAME);
+        }
+        String name = "CfsMetrics-" + volume + "-" + seq.incrementAndGet();
+        CfsMetricsSource source = new CfsMetricsSource(name, volume, metrics, clients, scheduler);
+        metricsSystem.register(name, "Native calls of the CFS volume " + volume, source);
+        sources++;
+        return source;
+    }
+
+    public static synchronized void unregister(CfsMetricsSource source) {
+        if (metricsSystem == null) {
+            return;
+        }
+        metricsSystem.unregisterSource(source.name);
+        if (--sources == 0) {
+            metricsSystem.shutdown();
+            metricsSystem = null;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized void getMetrics(MetricsCollector collector, boolean all) {
+        long now = System.currentTimeMillis();
+        if (now - rolledAt >= ROLL_INTERVAL_MS) {
+            for (CfsCallMetrics.Op op : OPS) {
+                CfsLatencyHistogram.Snapshot snap = metrics.get(op).getLatency().snapshot();
+                window[op.ordinal()] = snap.minus(base[op.ordinal()]);
+                base[op.ordinal()] = snap;
+            }
+            rolledAt = now;
+        }
+        MetricsRecordBuilder rb = collector.addRecord(RECORD_NAME).setContext(CONTEXT).tag(VOLUME, volume);
+        for (CfsCallMetrics.Op op : OPS) {
+            CfsCallMetrics.OpStats stats = metrics.get(op);
+            long calls = stats.getCalls();
+            if (calls == 0L && !all) {
+                continue;
+            }
+            CfsLatencyHistogram.Snapshot win = window[op.ordinal()];
+            if (win == null) {
+                win = EMPTY;
+            }
+
+            String prefix = camelCase(op.name(), false);
+            rb.addCounter(info(prefix + "Calls", "Calls of " + op), calls)
+                    .addGauge(info(prefix + "WindowCalls", "Calls of " + op + " in the window"), win.getCount())
+                    .addGauge(info(prefix + "MeanUs", "Mean latency of " + op + " in the window"),
+                            win.getMeanUs())
+                    .addGauge(info(prefix + "P50Us", "Median latency of " + op + " in the window"),
+                            win.getPercentileUs(0.5))
+                    .addGauge(info(prefix + "P99Us", "99th percentile latency of " + op + " in the window"),
+                            win.getPercentileUs(0.99))
+                    .addGauge(info(prefix + "P999Us", "99.9th percentile latency of " + op + " in the window"),
+                            win.getPercentileUs(0.999))
+                    .addGauge(info(prefix + "MaxUs", "Max latency of " + op), stats.getLatency().getMaxUs());
+            if (op == CfsCallMetrics.Op.READ || op == CfsCallMetrics.Op.WRITE) {
+                rb.addCounter(info(prefix + "Bytes", "Bytes of " + op), stats.getBytes());
+            }
+            for (StatusCodes code : CODES) {
+                if (code == StatusCodes.CFS_STATUS_OK) {
+                    continue;
+                }
+                long errors = stats.getErrors(code);
+                if (errors == 0L && !all) {
+                    continue;
+                }
+                String status = camelCase(code.name().substring("CFS_STATUS_".length()), true);
+                rb.addCounter(info(prefix + "Errors" + status, op + " calls failed with " + code), errors);
+            }
+        }
+        rb.addGauge(info("OpenFds", "Files and directories open on the volume"), metrics.getOpenFds());
+        for (int i = 0; clients != null && i < clients.size(); i++) {
+            CfsClientPool.Client client = clients.get(i);
+            rb.addGauge(info("Client" + i + "Inflight", "Calls in flight on the libsdk client " + i),
+                    client.getInflight())
+                    .addCounter(info("Client" + i + "Calls", "Calls made on the libsdk client " + i),
+                            client.getCalls());
+        }
+        for (int i = 0; scheduler != null && i < LANES.length; i++) {
+            CfsCallScheduler.Lane lane = LANES[i];
+            String prefix = "Sched" + camelCase(lane.name(), true);
+            rb.addGauge(info(prefix + "Running", "Running " + lane + " calls"), scheduler.getRunning(lane))
+                    .addGauge(info(prefix + "Queued", "Queued " + lane + " calls"), scheduler.getQueued(lane))
+                    .addCounter(info(prefix + "Calls", "Admitted " + lane + " calls"), scheduler.getCalls(lane))
+                    .addCounter(info(prefix + "Rejected", "Rejected " + lane + " calls, their queue was full"),
+                            scheduler.getRejected(lane))
+                    .addCounter(info(prefix + "Waits", "Admitted " + lane + " calls that had to queue"),
+                            scheduler.getWaits(lane))
+                    .addCounter(info(prefix + "WaitUs", "Time queued by the " + lane + " calls"),
+                            scheduler.getWaitNanos(lane) / 1000L)
+                    .addGauge(info(prefix + "MaxWaitUs", "Max time queued by a " + lane + " call"),
+                            scheduler.getMaxWaitNanos(lane) / 1000L);
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Snapshot of " + name + ": " + metrics);
+        }
+    }
+
+    private static MetricsInfo info(String name, String description) {
+        return Interns.info(name, description);
+    }
+
+    // BATCH_GET_INODES to batchGetInodes, or BatchGetInodes when upper is set
+    static String camelCase(String name, boolean upper) {
+        StringBuilder sb = new StringBuilder(name.length());
+        boolean up = upper;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '_') {
+                up = true;
+                continue;
+            }
+            sb.append(up ? Character.toUpperCase(c) : Character.toLowerCase(c));
+            up = false;
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,169 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.client;
+
+import io.chubao.fs.client.sdk.exception.CfsException;
+import io.chubao.fs.client.sdk.exception.CfsInterruptedException;
+import io.chubao.fs.client.sdk.exception.CfsTimeoutException;
+import io.chubao.fs.client.sdk.exception.StatusCodes;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Latency, byte and error counters of the libsdk calls, one set per Op. A
+ * negative result of a call counts as an error of its StatusCodes, as does
+ * a CfsException thrown instead of the call, like a timeout or a rejection.
+ * All the counters are lock free so recording stays off the hot path locks.
+ */
+public class CfsCallMetrics {
+    public enum Op {
+        GETATTR,
+        SETATTR,
+        OPEN,
+        CLOSE,
+        FLUSH,
+        READ,
+        WRITE,
+        FILE_SIZE,
+        MKDIRS,
+        RMDIR,
+        UNLINK,
+        RENAME,
+        READDIR,
+        BATCH_GET_INODES,
+        GET_EXTENTS
+    }
+
+    private static final Op[] OPS = Op.values();
+    private static final StatusCodes[] CODES = StatusCodes.values();
+    // calls of all the mounts of the process
+    private static final LongAdder[] TOTAL_CALLS = new LongAdder[OPS.length];
+
+    static {
+        for (int i = 0; i < TOTAL_CALLS.length; i++) {
+            TOTAL_CALLS[i] = new LongAdder();
+        }
+    }
+
+    private final OpStats[] stats = new OpStats[OPS.length];
+    // fds of files and directories opened and not yet closed
+    private final LongAdder openFds = new LongAdder();
+
+    public static final class OpStats {
+        private final CfsLatencyHistogram latency = new CfsLatencyHistogram();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder[] errors = new LongAdder[CODES.length];
+
+        private OpStats() {
+            for (int i = 0; i < errors.length; i++) {
+                errors[i] = new LongAdder();
+            }
+        }
+
+        public CfsLatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        public long getErrors(StatusCodes code) {
+            return errors[code.ordinal()].sum();
+        }
+
+        public long getErrors() {
+            long res = 0L;
+            for (LongAdder e : errors) {
+                res += e.sum();
+            }
+            return res;
+        }
+    }
+
+    public CfsCallMetrics() {
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new OpStats();
+        }
+    }
+
+    public OpStats get(Op op) {
+        return stats[op.ordinal()];
+    }
+
+    public long getOpenFds() {
+        return openFds.sum();
+    }
+
+    public static long getTotalCalls(Op op) {
+        return TOTAL_CALLS[op.ordinal()].sum();
+    }
+
+    public void record(Op op, long nanos, long result) {
+        OpStats s = stats[op.ordinal()];
+        s.calls.increment();
+        TOTAL_CALLS[op.ordinal()].increment();
+        s.latency.record(nanos);
+        if (result < 0) {
+            s.errors[StatusCodes.get((int) result).ordinal()].increment();
+        } else if (op == Op.READ || op == Op.WRITE) {
+            s.bytes.add(result);
+        } else if (op == Op.OPEN) {
+            openFds.increment();
+        } else if (op == Op.CLOSE) {
+            openFds.decrement();
+        }
+    }
+
+    public void recordError(Op op, long nanos, CfsException e) {
+        OpStats s = stats[op.ordinal()];
+        s.calls.increment();
+        TOTAL_CALLS[op.ordinal()].increment();
+        s.latency.record(nanos);
+        int code = e.getErrorCode();
+        StatusCodes status = code == 0 ? StatusCodes.CFS_STATUS_ERROR : StatusCodes.get(code);
+        s.errors[status.ordinal()].increment();
+        // an abandoned close still closes the fd in the background
+        if (op == Op.CLOSE && (e instanceof CfsTimeoutException || e instanceof CfsInterruptedException)) {
+            openFds.decrement();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Op op : OPS) {
+            OpStats s = stats[op.ordinal()];
+            long calls = s.getCalls();
+            if (calls == 0L) {
+                continue;
+            }
+            CfsLatencyHistogram.Snapshot snap = s.latency.snapshot();
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(op).append(" calls:").append(calls)
+                    .append(" errors:").append(s.getErrors())
+                    .append(" p50Us:").append(snap.getPercentileUs(0.5))
+                    .append(" p99Us:").append(snap.getPercentileUs(0.99))
+                    .append(" maxUs:").append(s.latency.getMaxUs());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,209 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.client;
+
+import io.chubao.fs.client.sdk.exception.CfsException;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Admission control of the native calls. Every lane has its own limit of
+ * running calls and of queued callers, and all lanes share a total limit.
+ * A freed slot goes to the highest priority lane that may run, and a lane
+ * does not take a slot while a higher one is waiting for it, so the small
+ * metadata calls keep moving while reads, writes and listings fill their
+ * own lanes. A caller that finds its queue full is rejected at once.
+ */
+public class CfsCallScheduler {
+    public enum Lane {
+        // getattr, open, mkdirs, unlink, rename, setattr and the like
+        METADATA,
+        // foreground bulk calls: read, write and the listing batches
+        DATA,
+        // flush and close
+        BACKGROUND
+    }
+
+    private static final Lane[] LANES = Lane.values();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition[] ready = new Condition[LANES.length];
+    private final int totalLimit;
+    private final int[] limits;
+    private final int[] queueLimits;
+    // guarded by lock
+    private int total = 0;
+    private final int[] running = new int[LANES.length];
+    private final int[] waiting = new int[LANES.length];
+
+    private final LongAdder[] calls = new LongAdder[LANES.length];
+    private final LongAdder[] rejected = new LongAdder[LANES.length];
+    private final LongAdder[] waits = new LongAdder[LANES.length];
+    private final LongAdder[] waitNanos = new LongAdder[LANES.length];
+    private final long[] maxWaitNanos = new long[LANES.length];
+
+    /*
+     * The limits and the queue sizes are indexed by Lane.ordinal().
+     */
+    public CfsCallScheduler(int totalLimit, int[] limits, int[] queueLimits) {
+        this.totalLimit = Math.max(1, totalLimit);
+        this.limits = new int[LANES.length];
+        this.queueLimits = new int[LANES.length];
+        for (int i = 0; i < LANES.length; i++) {
+            this.limits[i] = Math.max(1, limits[i]);
+            this.queueLimits[i] = Math.max(0, queueLimits[i]);
+            this.ready[i] = lock.newCondition();
+            this.calls[i] = new LongAdder();
+            this.rejected[i] = new LongAdder();
+            this.waits[i] = new LongAdder();
+            this.waitNanos[i] = new LongAdder();
+        }
+    }
+
+    public void acquire(Lane lane) throws CfsException {
+        int l = lane.ordinal();
+        long start = 0L;
+        lock.lock();
+        try {
+            if (!mayRun(l)) {
+                if (waiting[l] >= queueLimits[l]) {
+                    rejected[l].increment();
+                    throw new CfsException("Too many queued " + lane + " calls: " + waiting[l]);
+                }
+                start = System.nanoTime();
+                waiting[l]++;
+                try {
+                    while (!mayRun(l)) {
+                        ready[l].await();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CfsException("Interrupted while queued for a " + lane + " call.", e);
+                } finally {
+                    waiting[l]--;
+                    // leaving the queue may unblock a lower lane
+                    signalNext();
+                }
+            }
+            running[l]++;
+            total++;
+        } finally {
+            lock.unlock();
+        }
+        calls[l].increment();
+        if (start != 0L) {
+            long waited = System.nanoTime() - start;
+            waits[l].increment();
+            waitNanos[l].add(waited);
+            if (waited > maxWaitNanos[l]) {
+                maxWaitNanos[l] = waited;
+            }
+        }
+    }
+
+    public void release(Lane lane) {
+        int l = lane.ordinal();
+        lock.lock();
+        try {
+            running[l]--;
+            total--;
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getRunning(Lane lane) {
+        lock.lock();
+        try {
+            return running[lane.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued(Lane lane) {
+        lock.lock();
+        try {
+            return waiting[lane.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCalls(Lane lane) {
+        return calls[lane.ordinal()].sum();
+    }
+
+    public long getRejected(Lane lane) {
+        return rejected[lane.ordinal()].sum();
+    }
+
+    // the number of calls that had to queue
+    public long getWaits(Lane lane) {
+        return waits[lane.ordinal()].sum();
+    }
+
+    public long getWaitNanos(Lane lane) {
+        return waitNanos[lane.ordinal()].sum();
+    }
+
+    // racy maximum, good enough for monitoring
+    public long getMaxWaitNanos(Lane lane) {
+        return maxWaitNanos[lane.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Lane lane : LANES) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(lane).append(" running:").append(getRunning(lane))
+                    .append(" queued:").append(getQueued(lane))
+                    .append(" calls:").append(getCalls(lane))
+                    .append(" rejected:").append(getRejected(lane))
+                    .append(" maxWaitUs:").append(getMaxWaitNanos(lane) / 1000L);
+        }
+        return sb.toString();
+    }
+
+    private boolean eligible(int l) {
+        return running[l] < limits[l] && total < totalLimit;
+    }
+
+    private boolean mayRun(int l) {
+        if (!eligible(l)) {
+            return false;
+        }
+        for (int h = 0; h < l; h++) {
+            if (waiting[h] > 0 && running[h] < limits[h]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void signalNext() {
+        for (int l = 0; l < LANES.length; l++) {
+            if (waiting[l] > 0 && eligible(l)) {
+                ready[l].signal();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * A set of started libsdk clients of one volume. Every client serializes on
+ * its own internal locks, so the metadata operations are spread over the
+ * clients, either by the hash of the path, which keeps a path on one client
+ * and its caches, or to the client with the fewest calls in flight. An open
+ * file stays on the client that opened it, its fd is only valid there.
+ */
+public class CfsClientPool {
+    public static final String ROUTE_HASH = "hash";
+    public static final String ROUTE_LEAST_LOADED = "least-loaded";
+
+    private final Client[] clients;
+    private final boolean leastLoaded;
+    private final AtomicInteger cursor = new AtomicInteger(0);
+
+    public static final class Client {
+        private final int index;
+        private final long id;
+        private final AtomicInteger inflight = new AtomicInteger(0);
+        private final LongAdder calls = new LongAdder();
+
+        Client(int index, long id) {
+            this.index = index;
+            this.id = id;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public int getInflight() {
+            return inflight.get();
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public void begin() {
+            inflight.incrementAndGet();
+            calls.increment();
+        }
+
+        public void end() {
+            inflight.decrementAndGet();
+        }
+
+        @Override
+        public String toString() {
+            return "client " + id + " inflight:" + getInflight() + " calls:" + getCalls();
+        }
+    }
+
+    public CfsClientPool(long[] ids, String route) {
+        if (ids == null || ids.length == 0) {
+            throw new IllegalArgumentException("No libsdk client.");
+        }
+        this.clients = new Client[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            clients[i] = new Client(i, ids[i]);
+        }
+        this.leastLoaded = ROUTE_LEAST_LOADED.equalsIgnoreCase(route);
+    }
+
+    public int size() {
+        return clients.length;
+    }
+
+    public Client get(int index) {
+        return clients[index];
+    }
+
+    public Client primary() {
+        return clients[0];
+    }
+
+    /*
+     * The int fds of the legacy calls have no room for their client, so the
+     * index of the client is folded into the fd handed out. With one client
+     * the fd is unchanged.
+     */
+    public int toHandle(Client client, int fd) {
+        int n = clients.length;
+        if (n == 1) {
+            return fd;
+        }
+        if (fd > (Integer.MAX_VALUE - client.index) / n) {
+            throw new IllegalArgumentException("The fd " + fd + " does not fit a handle of " + n + " clients.");
+        }
+        return fd * n + client.index;
+    }
+
+    public Client clientOf(int handle) {
+        return clients[(handle & 0x7fffffff) % clients.length];
+    }
+
+    public int fdOf(int handle) {
+        return handle < 0 ? handle : handle / clients.length;
+    }
+
+    /*
+     * Picks the client for a metadata operation on the path.
+     */
+    public Client pick(String path) {
+        int n = clients.length;
+        if (n == 1) {
+            return clients[0];
+        }
+        if (!leastLoaded) {
+            return clients[(path.hashCode() & 0x7fffffff) % n];
+        }
+        // start from a rotating slot so that ties are spread round robin
+        int start = (cursor.getAndIncrement() & 0x7fffffff) % n;
+        Client best = clients[start];
+        int min = best.getInflight();
+        for (int i = 1; i < n && min > 0; i++) {
+            Client c = clients[(start + i) % n];
+            int load = c.getInflight();
+            if (load < min) {
+                best = c;
+                min = load;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Client c : clients) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
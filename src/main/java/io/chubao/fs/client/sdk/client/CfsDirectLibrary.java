@@ -0,0 +1,182 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.client;
+
+import com.sun.jna.Pointer;
+
+/*
+ * CfsLibrary on top of the direct mapped CfsNative for the per-operation
+ * exports. The client setup calls and the optional exports, which may be
+ * missing from an older libsdk, still go through the proxy.
+ */
+public class CfsDirectLibrary implements CfsLibrary {
+    private final CfsLibrary proxy;
+    private final CfsPathCache paths;
+
+    CfsDirectLibrary(CfsLibrary proxy, int pathCacheSize) {
+        this.proxy = proxy;
+        this.paths = new CfsPathCache(pathCacheSize);
+    }
+
+    /*
+     * Returns the proxy itself when the direct mapping can not be bound.
+     */
+    public static CfsLibrary wrap(CfsLibrary proxy, String libPath, int pathCacheSize) {
+        if (!CfsNative.register(libPath)) {
+            return proxy;
+        }
+        return new CfsDirectLibrary(proxy, pathCacheSize);
+    }
+
+    @Override
+    public long cfs_new_client() {
+        return proxy.cfs_new_client();
+    }
+
+    @Override
+    public int cfs_set_client(long id, String key, String val) {
+        return proxy.cfs_set_client(id, key, val);
+    }
+
+    @Override
+    public int cfs_start_client(long id) {
+        return proxy.cfs_start_client(id);
+    }
+
+    @Override
+    public int cfs_open(String path, int flags, int mode, int uid, int gid) {
+        return proxy.cfs_open(path, flags, mode, uid, gid);
+    }
+
+    @Override
+    public void cfs_close_client(long id) {
+        proxy.cfs_close_client(id);
+    }
+
+    @Override
+    public int cfs_chdir(long id, String path) {
+        return proxy.cfs_chdir(id, path);
+    }
+
+    @Override
+    public String cfs_getcwd(long id) {
+        return proxy.cfs_getcwd(id);
+    }
+
+    @Override
+    public int cfs_getattr(long id, String path, StatInfo stat) {
+        return proxy.cfs_getattr(id, path, stat);
+    }
+
+    @Override
+    public int cfs_getattr(long id, String path, Pointer stat) {
+        return CfsNative.cfs_getattr(id, paths.encode(path), stat);
+    }
+
+    @Override
+    public int cfs_setattr(long id, String path, StatInfo stat, int mask) {
+        return proxy.cfs_setattr(id, path, stat, mask);
+    }
+
+    @Override
+    public int cfs_open(long id, String path, int flags, int mode, int uid, int gid) {
+        return CfsNative.cfs_open(id, paths.encode(path), flags, mode, uid, gid);
+    }
+
+    @Override
+    public int cfs_flush(long id, int fd) {
+        return CfsNative.cfs_flush(id, fd);
+    }
+
+    @Override
+    public void cfs_close(long id, int fd) {
+        CfsNative.cfs_close(id, fd);
+    }
+
+    @Override
+    public long cfs_write(long id, int fd, byte[] buf, long size, long offset) {
+        return CfsNative.cfs_write(id, fd, buf, size, offset);
+    }
+
+    @Override
+    public long cfs_read(long id, int fd, byte[] buf, long size, long offset) {
+        return CfsNative.cfs_read(id, fd, buf, size, offset);
+    }
+
+    @Override
+    public int cfs_mkdirs(long cid, String path, int mode, int uid, int gid) {
+        return CfsNative.cfs_mkdirs(cid, paths.encode(path), mode, uid, gid);
+    }
+
+    @Override
+    public int cfs_unlink(long cid, String path) {
+        return CfsNative.cfs_unlink(cid, paths.encode(path));
+    }
+
+    @Override
+    public int cfs_rename(long cid, String from, String to) {
+        // renamed paths are unlikely to come again
+        return CfsNative.cfs_rename(cid, CfsPathCache.toBytes(from), CfsPathCache.toBytes(to));
+    }
+
+    @Override
+    public int cfs_readdir(long id, int fd, DirentArray.ByValue dents, long count) {
+        return CfsNative.cfs_readdir(id, fd, dents, count);
+    }
+
+    @Override
+    public int cfs_fchmod(long id, int fd, int mode) {
+        return proxy.cfs_fchmod(id, fd, mode);
+    }
+
+    @Override
+    public int cfs_rmdir(long cid, String path, boolean recursive) {
+        return CfsNative.cfs_rmdir(cid, paths.encode(path), recursive);
+    }
+
+    @Override
+    public int cfs_batch_get_inodes(long cid, int fd, long[] iids, DirentArray.ByValue stats, int count) {
+        return CfsNative.cfs_batch_get_inodes(cid, fd, iids, stats, count);
+    }
+
+    @Override
+    public int cfs_setattr_by_path(long cid, String path, StatInfo info, int valid) {
+        return CfsNative.cfs_setattr_by_path(cid, paths.encode(path), info, valid);
+    }
+
+    @Override
+    public long cfs_file_size(long cid, int fd) {
+        return CfsNative.cfs_file_size(cid, fd);
+    }
+
+    @Override
+    public int cfs_getattr_by_inode(long cid, long ino, Pointer stat) {
+        return proxy.cfs_getattr_by_inode(cid, ino, stat);
+    }
+
+    @Override
+    public int cfs_setattr_by_inode(long cid, long ino, StatInfo info, int valid) {
+        return proxy.cfs_setattr_by_inode(cid, ino, info, valid);
+    }
+
+    @Override
+    public int cfs_open_by_inode(long cid, long ino, int flags, int mode, int uid, int gid) {
+        return proxy.cfs_open_by_inode(cid, ino, flags, mode, uid, gid);
+    }
+
+    @Override
+    public int cfs_get_extents(long cid, String path, DirentArray.ByValue extents, long count) {
+        return proxy.cfs_get_extents(cid, path, extents, count);
+    }
+}
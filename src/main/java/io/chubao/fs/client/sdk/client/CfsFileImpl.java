@@ -1,24 +1,71 @@
 package io.chubao.fs.client.sdk.client;
 
 import io.chubao.fs.client.sdk.exception.CfsException;
+import io.chubao.fs.client.sdk.exception.CfsInterruptedException;
+import io.chubao.fs.client.sdk.exception.CfsTimeoutException;
+import io.chubao.fs.client.trace.CfsFlightEvents;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * The position and size are guarded by a ReentrantLock rather than the object
+ * monitor, a virtual thread blocked in libsdk while holding a monitor would
+ * pin its carrier thread. The native calls go through a CfsNativeExecutor.
+ */
 public class CfsFileImpl implements CfsFile {
     private static final Log log = LogFactory.getLog(CfsFileImpl.class);
     private CfsLibrary cfsLib;
     private long clientID;
     private long position = 0L;
     private long fileSize;
-    private boolean isClosed = false;
+    private volatile boolean isClosed = false;
+    // set when a write was abandoned, the file content past position is unknown
+    private volatile boolean writeAbandoned = false;
     private int fd;
+    private final CfsNativeExecutor executor;
+    private final CfsClientPool.Client client;
+    private final CfsCallScheduler scheduler;
+    private final CfsCallMetrics metrics;
+    // for the flight recorder events, may be null
+    private final String path;
+    private final ReentrantLock lock = new ReentrantLock();
 
     public CfsFileImpl(CfsLibrary cfsLib, int fd, long fileSize, long position,long cid) {
+        this(cfsLib, fd, fileSize, position, cid, CfsNativeExecutor.DIRECT);
+    }
+
+    public CfsFileImpl(CfsLibrary cfsLib, int fd, long fileSize, long position, long cid,
+                       CfsNativeExecutor executor) {
         this.cfsLib = cfsLib;
         this.fd = fd;
         this.fileSize = fileSize;
         this.position = position;
         this.clientID=cid;
+        this.executor = executor;
+        this.client = null;
+        this.scheduler = null;
+        this.metrics = null;
+        this.path = null;
+    }
+
+    /*
+     * The file stays on the pooled client that opened it.
+     */
+    public CfsFileImpl(CfsLibrary cfsLib, int fd, long fileSize, long position,
+                       CfsClientPool.Client client, CfsNativeExecutor executor, CfsCallScheduler scheduler,
+                       CfsCallMetrics metrics, String path) {
+        this.cfsLib = cfsLib;
+        this.fd = fd;
+        this.fileSize = fileSize;
+        this.position = position;
+        this.clientID = client.getId();
+        this.executor = executor;
+        this.client = client;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.path = path;
     }
 
     public boolean isClosed() {
@@ -26,31 +73,67 @@ public class CfsFileImpl implements CfsFile {
     }
 
     public long getFileSize() {
-        return this.fileSize;
+        lock.lock();
+        try {
+            return this.fileSize;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public long getPosition() {
-        return this.position;
+        lock.lock();
+        try {
+            return this.position;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void seek(long position) throws CfsException {
-
-
-        this.position = position;
+        lock.lock();
+        try {
+            this.position = position;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void close() throws CfsException {
-        if (isClosed) {
-            return;
+        lock.lock();
+        try {
+            if (isClosed) {
+                return;
+            }
+            // a rejected call leaves the file open so that close can be retried,
+            // an abandoned one still closes the fd in the background.
+            try {
+                call(CfsCallScheduler.Lane.BACKGROUND, CfsCallMetrics.Op.CLOSE, new CfsNativeExecutor.NativeCall() {
+                    @Override
+                    public long call() {
+                        cfsLib.cfs_flush(clientID, fd);
+                        cfsLib.cfs_close(clientID, fd);
+                        return 0L;
+                    }
+                });
+            } catch (CfsTimeoutException | CfsInterruptedException e) {
+                isClosed = true;
+                throw e;
+            }
+            isClosed = true;
+        } finally {
+            lock.unlock();
         }
-        isClosed = true;
-        cfsLib.cfs_flush(this.clientID,fd);
-        cfsLib.cfs_close(this.clientID,fd);
     }
 
     @Override
     public void flush() throws CfsException {
-        cfsLib.cfs_flush(this.clientID,fd);
+        call(CfsCallScheduler.Lane.BACKGROUND, CfsCallMetrics.Op.FLUSH, new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                return cfsLib.cfs_flush(clientID, fd);
+            }
+        });
     }
 
     private byte[] buffCopy(byte[] buff, int off, int len) {
@@ -59,47 +142,126 @@ public class CfsFileImpl implements CfsFile {
         return dest;
     }
 
-    public synchronized void write(byte[] buff, int off, int len) throws CfsException {
+    public void write(byte[] buff, int off, int len) throws CfsException {
         if (off < 0 || len < 0) {
             throw new CfsException("Invalid arguments.");
         }
 
-        long wsize = 0;
-        if (off == 0) {
-            wsize = write(position, buff, len);
-        } else {
-            byte[] newbuff = buffCopy(buff, off, len);
-            wsize = write(position, newbuff, len);
+        lock.lock();
+        try {
+            if (writeAbandoned) {
+                throw new CfsException("A previous write of the file did not complete, fd:" + fd);
+            }
+            long wsize = 0;
+            // an abandoned write may still read the buffer after the caller reuses it
+            if (off == 0 && !executor.isAbandoning(CfsCallScheduler.Lane.DATA)) {
+                wsize = write(position, buff, len);
+            } else {
+                byte[] newbuff = buffCopy(buff, off, len);
+                try {
+                    wsize = write(position, newbuff, len);
+                } catch (CfsTimeoutException | CfsInterruptedException e) {
+                    writeAbandoned = true;
+                    throw e;
+                }
+            }
+
+            position += wsize;
+            if (position > fileSize) {
+                fileSize = position;
+            }
+        } finally {
+            lock.unlock();
         }
+    }
 
-        position += wsize;
-        if (position > fileSize) {
-            fileSize = position;
+    private long call(CfsCallScheduler.Lane lane, CfsCallMetrics.Op op, CfsNativeExecutor.NativeCall call)
+            throws CfsException {
+        Object event = CfsFlightEvents.beginNativeCall();
+        CfsNativeExecutor.TimedCall timed = null;
+        if (event != null) {
+            timed = new CfsNativeExecutor.TimedCall(call);
+            call = timed;
+        }
+        if (scheduler != null) {
+            scheduler.acquire(lane);
+        }
+        if (client != null) {
+            client.begin();
+        }
+        long start = metrics == null ? 0L : System.nanoTime();
+        try {
+            long res = executor.run(lane, call);
+            if (metrics != null) {
+                metrics.record(op, System.nanoTime() - start, res);
+            }
+            if (event != null) {
+                long bytes = (op == CfsCallMetrics.Op.READ || op == CfsCallMetrics.Op.WRITE) && res > 0 ? res : 0L;
+                CfsFlightEvents.commitNativeCall(event, op.name(), path, fd, bytes, res < 0,
+                        CfsNativeExecutor.TimedCall.nanos(timed));
+            }
+            return res;
+        } catch (CfsException e) {
+            if (metrics != null) {
+                metrics.recordError(op, System.nanoTime() - start, e);
+            }
+            CfsFlightEvents.commitNativeCall(event, op.name(), path, fd, 0L, true,
+                    CfsNativeExecutor.TimedCall.nanos(timed));
+            throw e;
+        } finally {
+            if (client != null) {
+                client.end();
+            }
+            if (scheduler != null) {
+                scheduler.release(lane);
+            }
         }
     }
 
-    private long write(long offset, byte[] data, int len) throws CfsException {
-        return cfsLib.cfs_write(this.clientID,fd, data, len, offset);
+    private long write(final long offset, final byte[] data, final int len) throws CfsException {
+        return call(CfsCallScheduler.Lane.DATA, CfsCallMetrics.Op.WRITE, new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                return cfsLib.cfs_write(clientID, fd, data, len, offset);
+            }
+        });
     }
 
-    public synchronized long read(byte[] buff, int off, int len) throws CfsException {
+    private long read(final long offset, final byte[] data, final int len) throws CfsException {
+        return call(CfsCallScheduler.Lane.DATA, CfsCallMetrics.Op.READ, new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                return cfsLib.cfs_read(clientID, fd, data, len, offset);
+            }
+        });
+    }
+
+    public long read(byte[] buff, int off, int len) throws CfsException {
         if (off < 0 || len < 0) {
             throw new CfsException("Invalid arguments.");
         }
 
-        long rsize = 0;
-        if (off == 0) {
-            rsize = cfsLib.cfs_read(this.clientID,fd,  buff, len,position);
-        } else {
-            byte[] newbuff = new byte[len];
-            rsize = cfsLib.cfs_read(this.clientID,fd, newbuff, len, position);
-            System.arraycopy(newbuff, 0, buff, off, len);
-        }
+        lock.lock();
+        try {
+            long rsize = 0;
+            // an abandoned read may still fill the buffer after the caller reuses it
+            if (off == 0 && !executor.isAbandoning(CfsCallScheduler.Lane.DATA)) {
+                rsize = read(position, buff, len);
+            } else {
+                byte[] newbuff = new byte[len];
+                rsize = read(position, newbuff, len);
+                if (rsize > 0) {
+                    System.arraycopy(newbuff, 0, buff, off, (int) rsize);
+                }
+            }
 
-        if (rsize > 0) {
-            position += rsize;
+            if (rsize > 0) {
+                position += rsize;
+            }
+            return rsize;
+        } finally {
+            lock.unlock();
         }
-        return rsize;
     }
 
     @Override
@@ -0,0 +1,140 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Lock free log-linear histogram of latencies in microseconds. Values below
+ * 16 have a bucket each, larger ones are split into 16 buckets per power of
+ * two, so a percentile is off by at most 1/16 of its value. Recording is one
+ * atomic increment of a bucket and never blocks. The counts only grow, the
+ * percentiles of an interval come from the difference of two snapshots.
+ */
+public class CfsLatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    // about 12 days, larger values go to the last bucket
+    private static final int MAX_EXP = 40;
+    private static final int BUCKETS = SUB_COUNT + (MAX_EXP - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong(0L);
+
+    public void record(long nanos) {
+        long us = Math.max(0L, nanos / 1000L);
+        counts.incrementAndGet(indexOf(us));
+        long m = max.get();
+        while (us > m && !max.compareAndSet(m, us)) {
+            m = max.get();
+        }
+    }
+
+    public long getMaxUs() {
+        return max.get();
+    }
+
+    public Snapshot snapshot() {
+        long[] res = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            res[i] = counts.get(i);
+        }
+        return new Snapshot(res);
+    }
+
+    static int indexOf(long us) {
+        if (us < SUB_COUNT) {
+            return (int) us;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(us);
+        if (exp > MAX_EXP) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (us >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return SUB_COUNT + (exp - SUB_BITS) * SUB_COUNT + sub;
+    }
+
+    // the largest value that falls into the bucket
+    static long upperBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_COUNT) / SUB_COUNT;
+        int sub = (index - SUB_COUNT) % SUB_COUNT;
+        return ((long) (SUB_COUNT + sub + 1) << shift) - 1;
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long total;
+        private final double sum;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long t = 0L;
+            double s = 0.0;
+            for (int i = 0; i < counts.length; i++) {
+                t += counts[i];
+                s += (double) counts[i] * upperBound(i);
+            }
+            this.total = t;
+            this.sum = s;
+        }
+
+        /*
+         * The counts recorded after prev was taken.
+         */
+        public Snapshot minus(Snapshot prev) {
+            long[] res = counts.clone();
+            if (prev != null) {
+                for (int i = 0; i < res.length; i++) {
+                    res[i] = Math.max(0L, res[i] - prev.counts[i]);
+                }
+            }
+            return new Snapshot(res);
+        }
+
+        public long getCount() {
+            return total;
+        }
+
+        // approximated by the bucket bounds
+        public double getMeanUs() {
+            return total == 0L ? 0.0 : sum / total;
+        }
+
+        /*
+         * Returns the upper bound of the bucket holding the q quantile, 0 when
+         * nothing was recorded.
+         */
+        public long getPercentileUs(double q) {
+            if (total == 0L) {
+                return 0L;
+            }
+            long rank = (long) Math.ceil(q * total);
+            if (rank < 1L) {
+                rank = 1L;
+            }
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(counts.length - 1);
+        }
+    }
+}
@@ -102,6 +102,25 @@ public interface CfsLibrary extends Library {
 
     }
 
+    class ExtentInfo extends Structure {
+        // note that the field layout should be aligned with cfs_extent_info
+        public long fileOffset;
+        public long size;
+        public long partitionId;
+        public int hostsLen;
+        // comma separated addresses of the data partition replicas, leader first
+        public byte[] hosts = new byte[256];
+
+        public ExtentInfo() {
+            super();
+        }
+
+        @Override
+        protected List<String> getFieldOrder() {
+            return Arrays.asList(new String[]{"fileOffset", "size", "partitionId", "hostsLen", "hosts"});
+        }
+    }
+
     class DirentArray extends Structure {
         public static class ByValue extends DirentArray implements Structure.ByValue {
         }
@@ -140,6 +159,9 @@ public interface CfsLibrary extends Library {
 
     int cfs_getattr(long id, String path, StatInfo stat);
 
+    // same as above, fills a flat cfs_stat_info buffer without Structure marshalling
+    int cfs_getattr(long id, String path, Pointer stat);
+
     int cfs_setattr(long id, String path, StatInfo stat, int mask);
 
     int cfs_open(long id, String path, int flags, int mode, int uid, int gid);
@@ -170,5 +192,15 @@ public interface CfsLibrary extends Library {
 
     long cfs_file_size(long cid, int fd);
 
+    // inode addressed variants of getattr, setattr and open, they skip the server side path walk
+    int cfs_getattr_by_inode(long cid, long ino, Pointer stat);
+
+    int cfs_setattr_by_inode(long cid, long ino, StatInfo info, int valid);
+
+    int cfs_open_by_inode(long cid, long ino, int flags, int mode, int uid, int gid);
+
+    // fills up to count cfs_extent_info, returns the total number of extents of the file
+    int cfs_get_extents(long cid, String path, DirentArray.ByValue extents, long count);
+
 
 }
@@ -24,15 +24,35 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CfsMount {
     private static final Log log = LogFactory.getLog(CfsMount.class);
+    private static ExecutorService startPool;
     //private static AtomicLong clientID = new AtomicLong(0L);
     private CfsLibrary libCfs;
     private String sdkLibPath;
     private long cid;
 
     public CfsMount(String libpath) throws CfsException{
+        this(libpath, false, 0);
+    }
+
+    public CfsMount(String libpath, StorageConfig config) throws CfsException {
+        this(libpath, config.getDirectMapping(), config.getPathCacheSize());
+    }
+
+    private CfsMount(String libpath, boolean directMapping, int pathCacheSize) throws CfsException {
         this.sdkLibPath = libpath;
         if (sdkLibPath == null) {
             throw new CfsNullArgumentException("Please specify the libsdk.so path.");
@@ -42,6 +62,9 @@ public class CfsMount {
             throw new CfsNullArgumentException("Not found the libsdk.so: " + sdkLibPath);
         }
         libCfs = Native.load(sdkLibPath, CfsLibrary.class);
+        if (directMapping) {
+            libCfs = CfsDirectLibrary.wrap(libCfs, sdkLibPath, pathCacheSize);
+        }
         this.cid = libCfs.cfs_new_client();
         if (cid < 0) {
             throw new CfsException("Failed to new a client.");
@@ -49,32 +72,104 @@ public class CfsMount {
 
     }
 
-    public FileStorage openFileStorage(StorageConfig config,CfsMount mnt) throws CfsException {
-        libCfs.cfs_set_client(mnt.cid, StorageConfig.CONFIG_KEY_MATSER, config.getMasters());
-        libCfs.cfs_set_client(mnt.cid, StorageConfig.CONFIG_KEY_VOLUME, config.getVolumeName());
-        libCfs.cfs_set_client(mnt.cid, StorageConfig.CONFIG_KEY_LOG_DIR, config.getLogDir());
-        libCfs.cfs_set_client(mnt.cid, StorageConfig.CONFIG_KEY_LOG_LEVEL, config.getLogLevel());
-
-        int st = libCfs.cfs_start_client(mnt.cid);
-
-        if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK) {
-            throw new CfsException("Failed to start the client: " + mnt.cid + " status code: " + st);
+    public FileStorage openFileStorage(final StorageConfig config, CfsMount mnt) throws CfsException {
+        int poolSize = Math.max(1, config.getClientPoolSize());
+        long[] cids = new long[poolSize];
+        cids[0] = mnt.cid;
+        for (int i = 1; i < poolSize; i++) {
+            long id = libCfs.cfs_new_client();
+            if (id < 0) {
+                closeClients(cids, i);
+                throw new CfsException("Failed to new a client.");
+            }
+            cids[i] = id;
         }
 
-        st = libCfs.cfs_chdir(cid, "/");
-        if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK) {
-            throw new CfsException("Failed to chdir for client: " + mnt.cid + " status code: " + st);
+        // the pooled clients start in the background while this thread starts
+        // the first one and loads the owner mapping
+        List<Future<Void>> starts = new ArrayList<>(poolSize - 1);
+        for (int i = 1; i < poolSize; i++) {
+            final long id = cids[i];
+            starts.add(getStartPool().submit(new Callable<Void>() {
+                @Override
+                public Void call() throws CfsException {
+                    startClient(id, config);
+                    return null;
+                }
+            }));
         }
 
+        FileStorageImpl storage = null;
         try {
+            startClient(mnt.cid, config);
             //CfsDriverIns ins = new CfsDriverIns(driver, cid);
-            FileStorageImpl storage = new FileStorageImpl(libCfs,mnt.cid);
+            storage = new FileStorageImpl(libCfs, cids, config);
             storage.init();
-            log.info("Success to open FileStorage, client id:" + mnt.cid);
+            for (Future<Void> f : starts) {
+                f.get();
+            }
+            log.info("Success to open FileStorage, client id:" + mnt.cid + " clients:" + poolSize);
             return storage;
         } catch (Exception ex) {
-            log.error(ex.getMessage(), ex);
-            throw new RuntimeException(ex);
+            for (Future<Void> f : starts) {
+                try {
+                    f.get();
+                } catch (Exception e) {
+                    // reported below
+                }
+            }
+            if (storage != null) {
+                storage.close();
+            } else {
+                closeClients(cids, poolSize);
+            }
+            Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+            log.error(cause.getMessage(), cause);
+            if (cause instanceof CfsException) {
+                throw (CfsException) cause;
+            }
+            throw new CfsException("Failed to open FileStorage.", cause);
+        }
+    }
+
+    private void startClient(long id, StorageConfig config) throws CfsException {
+        libCfs.cfs_set_client(id, StorageConfig.CONFIG_KEY_MATSER, config.getMasters());
+        libCfs.cfs_set_client(id, StorageConfig.CONFIG_KEY_VOLUME, config.getVolumeName());
+        libCfs.cfs_set_client(id, StorageConfig.CONFIG_KEY_LOG_DIR, config.getLogDir());
+        libCfs.cfs_set_client(id, StorageConfig.CONFIG_KEY_LOG_LEVEL, config.getLogLevel());
+
+        int st = libCfs.cfs_start_client(id);
+
+        if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK) {
+            throw new CfsException("Failed to start the client: " + id + " status code: " + st);
+        }
+
+        st = libCfs.cfs_chdir(id, "/");
+        if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK) {
+            throw new CfsException("Failed to chdir for client: " + id + " status code: " + st);
+        }
+    }
+
+    private void closeClients(long[] cids, int count) {
+        for (int i = 0; i < count; i++) {
+            libCfs.cfs_close_client(cids[i]);
+        }
+    }
+
+    private static synchronized ExecutorService getStartPool() {
+        if (startPool == null) {
+            startPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30L, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger seq = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "cfs-mount-start-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
         }
+        return startPool;
     }
 }
@@ -0,0 +1,228 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.client;
+
+import io.chubao.fs.client.config.StorageConfig;
+import io.chubao.fs.client.metrics.CfsGangliaReporter;
+import io.chubao.fs.client.metrics.CfsMetricsSource;
+import io.chubao.fs.client.sdk.exception.CfsException;
+import io.chubao.fs.client.sdk.libsdk.FileStorage;
+import io.chubao.fs.client.sdk.libsdk.FileStorageImpl;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.util.ShutdownHookManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Process wide registry of the started FileStorages, keyed by the master
+ * addresses and the volume. The first lease of a key starts the clients, the
+ * later ones share them, and the storage is closed when the last lease is
+ * released. Different keys start in parallel, callers of one key wait for its
+ * single start. A shutdown hook closes whatever is still leased at exit.
+ *
+ * The settings of the first lease of a key win, later leases only log when
+ * they ask for a different libsdk.
+ */
+public class CfsMountRegistry {
+    private static final Log log = LogFactory.getLog(CfsMountRegistry.class);
+    // run after the FileSystem cache has closed its file systems
+    private static final int SHUTDOWN_HOOK_PRIORITY = FileSystem.SHUTDOWN_HOOK_PRIORITY - 1;
+    private static final ConcurrentMap<String, Mount> mounts = new ConcurrentHashMap<>();
+    private static final AtomicBoolean hookAdded = new AtomicBoolean(false);
+
+    private CfsMountRegistry() {
+    }
+
+    private static final class Mount {
+        final String key;
+        final String libPath;
+        final FutureTask<FileStorage> start;
+        // guarded by this
+        int refs = 0;
+        boolean closed = false;
+        // set by the start when the metrics are enabled
+        volatile CfsMetricsSource metrics;
+        // set by the start when Ganglia servers are configured
+        volatile CfsGangliaReporter ganglia;
+
+        Mount(String key, final String libPath, final StorageConfig config) {
+            this.key = key;
+            this.libPath = libPath;
+            this.start = new FutureTask<>(new Callable<FileStorage>() {
+                @Override
+                public FileStorage call() throws Exception {
+                    CfsMount mnt = new CfsMount(libPath, config);
+                    FileStorage storage = mnt.openFileStorage(config, mnt);
+                    if (config.getMetricsEnabled() && storage instanceof FileStorageImpl) {
+                        FileStorageImpl impl = (FileStorageImpl) storage;
+                        metrics = CfsMetricsSource.register(config.getVolumeName(), impl.getCallMetrics(),
+                                impl.getClientPool(), impl.getScheduler());
+                    }
+                    String servers = config.getGangliaServers();
+                    if (servers != null && !servers.trim().isEmpty() && storage instanceof FileStorageImpl) {
+                        FileStorageImpl impl = (FileStorageImpl) storage;
+                        try {
+                            ganglia = new CfsGangliaReporter(config.getVolumeName(), impl.getCallMetrics(), impl,
+                                    servers, config.getGangliaPeriodSeconds());
+                            ganglia.start();
+                        } catch (IOException e) {
+                            log.warn("Failed to start the Ganglia reporter of " + config.getVolumeName(), e);
+                        }
+                    }
+                    return storage;
+                }
+            });
+        }
+    }
+
+    /*
+     * A reference to a shared FileStorage. Closing it more than once is a no-op.
+     */
+    public static final class Lease implements Closeable {
+        private final Mount mount;
+        private final FileStorage storage;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Lease(Mount mount, FileStorage storage) {
+            this.mount = mount;
+            this.storage = storage;
+        }
+
+        public FileStorage getStorage() {
+            return storage;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(mount);
+            }
+        }
+    }
+
+    public static Lease acquire(String libPath, StorageConfig config) throws CfsException {
+        String key = key(config);
+        addShutdownHook();
+        while (true) {
+            Mount mount = mounts.get(key);
+            if (mount == null) {
+                Mount created = new Mount(key, libPath, config);
+                mount = mounts.putIfAbsent(key, created);
+                if (mount == null) {
+                    mount = created;
+                }
+            }
+            synchronized (mount) {
+                if (mount.closed) {
+                    // lost the race with the last release, it removes the mount
+                    mounts.remove(key, mount);
+                    continue;
+                }
+                mount.refs++;
+            }
+            if (libPath != null && !libPath.equals(mount.libPath) && log.isDebugEnabled()) {
+                log.debug("Share the mount of " + key + " started with " + mount.libPath + " instead of " + libPath);
+            }
+
+            // only the first caller runs the start, the others wait for it
+            mount.start.run();
+            try {
+                return new Lease(mount, mount.start.get());
+            } catch (InterruptedException e) {
+                release(mount);
+                Thread.currentThread().interrupt();
+                throw new CfsException("Interrupted while starting the mount: " + key, e);
+            } catch (ExecutionException e) {
+                // drop the failed mount so that the next acquire starts again
+                mounts.remove(key, mount);
+                release(mount);
+                Throwable cause = e.getCause();
+                if (cause instanceof CfsException) {
+                    throw (CfsException) cause;
+                }
+                throw new CfsException("Failed to start the mount: " + key, cause);
+            }
+        }
+    }
+
+    public static int size() {
+        return mounts.size();
+    }
+
+    private static void release(Mount mount) {
+        synchronized (mount) {
+            if (--mount.refs > 0) {
+                return;
+            }
+            mount.closed = true;
+        }
+        mounts.remove(mount.key, mount);
+        close(mount);
+    }
+
+    private static void close(Mount mount) {
+        if (!mount.start.isDone()) {
+            return;
+        }
+        try {
+            FileStorage storage = mount.start.get();
+            log.info("Close the mount: " + mount.key);
+            if (mount.metrics != null) {
+                CfsMetricsSource.unregister(mount.metrics);
+            }
+            if (mount.ganglia != null) {
+                mount.ganglia.close();
+            }
+            storage.close();
+        } catch (ExecutionException e) {
+            // never started
+        } catch (Exception e) {
+            log.warn("Failed to close the mount: " + mount.key, e);
+        }
+    }
+
+    private static String key(StorageConfig config) throws CfsException {
+        return config.getMasters() + "/" + config.getVolumeName();
+    }
+
+    private static void addShutdownHook() {
+        if (!hookAdded.compareAndSet(false, true)) {
+            return;
+        }
+        ShutdownHookManager.get().addShutdownHook(new Runnable() {
+            @Override
+            public void run() {
+                for (Mount mount : mounts.values()) {
+                    synchronized (mount) {
+                        if (mount.closed) {
+                            continue;
+                        }
+                        mount.closed = true;
+                    }
+                    mounts.remove(mount.key, mount);
+                    close(mount);
+                }
+            }
+        }, SHUTDOWN_HOOK_PRIORITY);
+    }
+}
@@ -0,0 +1,80 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.client;
+
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/*
+ * Direct mapped bindings of the hot libsdk exports. The calls skip the proxy
+ * and its reflective dispatch of Native.load, and the paths are passed as
+ * NUL terminated UTF-8 bytes, see CfsPathCache. A class can be registered
+ * against one library only, so the first libsdk path wins for the process.
+ */
+final class CfsNative {
+    private static final Log log = LogFactory.getLog(CfsNative.class);
+    private static String registered;
+
+    private CfsNative() {
+    }
+
+    /*
+     * Returns false if the class is bound to another library or fails to bind.
+     */
+    static synchronized boolean register(String libPath) {
+        if (registered != null) {
+            return registered.equals(libPath);
+        }
+        try {
+            Native.register(CfsNative.class, NativeLibrary.getInstance(libPath));
+            registered = libPath;
+            return true;
+        } catch (Throwable e) {
+            log.warn("Failed to direct map the libsdk: " + libPath + ", use the proxy mapping.", e);
+            return false;
+        }
+    }
+
+    static native int cfs_getattr(long id, byte[] path, Pointer stat);
+
+    static native int cfs_setattr_by_path(long cid, byte[] path, CfsLibrary.StatInfo info, int valid);
+
+    static native int cfs_open(long id, byte[] path, int flags, int mode, int uid, int gid);
+
+    static native int cfs_flush(long id, int fd);
+
+    static native void cfs_close(long id, int fd);
+
+    static native long cfs_write(long id, int fd, byte[] buf, long size, long offset);
+
+    static native long cfs_read(long id, int fd, byte[] buf, long size, long offset);
+
+    static native int cfs_mkdirs(long cid, byte[] path, int mode, int uid, int gid);
+
+    static native int cfs_unlink(long cid, byte[] path);
+
+    static native int cfs_rename(long cid, byte[] from, byte[] to);
+
+    static native int cfs_readdir(long id, int fd, CfsLibrary.DirentArray.ByValue dents, long count);
+
+    static native int cfs_rmdir(long cid, byte[] path, boolean recursive);
+
+    static native int cfs_batch_get_inodes(long cid, int fd, long[] iids, CfsLibrary.DirentArray.ByValue stats,
+                                           int count);
+
+    static native long cfs_file_size(long cid, int fd);
+}
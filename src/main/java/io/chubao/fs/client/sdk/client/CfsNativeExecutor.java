@@ -0,0 +1,287 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.client;
+
+import io.chubao.fs.client.sdk.exception.CfsException;
+import io.chubao.fs.client.sdk.exception.CfsInterruptedException;
+import io.chubao.fs.client.sdk.exception.CfsTimeoutException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Runs the blocking libsdk calls. A virtual thread that blocks in a JNA call
+ * pins its carrier thread, so when the offload pool is enabled the calls made
+ * from virtual threads are handed to a bounded pool of platform threads and
+ * the virtual thread parks until the call returns. Platform threads, and every
+ * thread when the pool is disabled, call libsdk directly.
+ *
+ * When a lane has a deadline, or the calls are interruptible, every call of
+ * that lane runs in the pool and the caller waits for it no longer than the
+ * deadline, or until it is interrupted. A native call can not be stopped, so
+ * an abandoned call keeps its worker until libsdk returns, and its result is
+ * dropped. A call that has not started yet is cancelled.
+ *
+ * Thread.isVirtual() is looked up once as a method handle, so the class runs
+ * on Java 8 where no thread is ever virtual, and the check costs no
+ * reflective call on the path of every native call.
+ */
+public class CfsNativeExecutor {
+    private static final Log log = LogFactory.getLog(CfsNativeExecutor.class);
+    private static final MethodHandle IS_VIRTUAL = lookupIsVirtual();
+    // the pool size when the calls are guarded but no offload size is given
+    private static final int DEFAULT_GUARD_THREADS = 64;
+
+    public static final CfsNativeExecutor DIRECT = new CfsNativeExecutor(null, null, false);
+
+    private final ThreadPoolExecutor pool;
+    // indexed by Lane.ordinal(), 0 means no deadline
+    private final long[] deadlineNanos;
+    private final boolean interruptible;
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder interrupts = new LongAdder();
+
+    public interface NativeCall {
+        long call();
+    }
+
+    /*
+     * Measures the time spent inside the wrapped call, on whichever thread
+     * runs it. An abandoned call reports 0 until it returns.
+     */
+    public static final class TimedCall implements NativeCall {
+        private final NativeCall call;
+        private volatile long nanos = 0L;
+
+        public TimedCall(NativeCall call) {
+            this.call = call;
+        }
+
+        @Override
+        public long call() {
+            long start = System.nanoTime();
+            try {
+                return call.call();
+            } finally {
+                nanos = System.nanoTime() - start;
+            }
+        }
+
+        // 0 for a null call
+        public static long nanos(TimedCall call) {
+            return call == null ? 0L : call.nanos;
+        }
+    }
+
+    private CfsNativeExecutor(ThreadPoolExecutor pool, long[] deadlineNanos, boolean interruptible) {
+        this.pool = pool;
+        this.deadlineNanos = deadlineNanos == null ? new long[CfsCallScheduler.Lane.values().length] : deadlineNanos;
+        this.interruptible = interruptible;
+    }
+
+    /*
+     * Returns DIRECT when threads <= 0 or the runtime has no virtual threads.
+     */
+    public static CfsNativeExecutor create(int threads, int queueSize) {
+        return create(threads, queueSize, null, false);
+    }
+
+    /*
+     * The deadlines are in milliseconds and indexed by Lane.ordinal(), 0 means
+     * none. Returns DIRECT when nothing is guarded and the calls are not
+     * offloaded.
+     */
+    public static CfsNativeExecutor create(int threads, int queueSize, int[] deadlinesMs, boolean interruptible) {
+        long[] deadlines = new long[CfsCallScheduler.Lane.values().length];
+        boolean guarded = interruptible;
+        for (int i = 0; deadlinesMs != null && i < deadlines.length; i++) {
+            if (deadlinesMs[i] > 0) {
+                deadlines[i] = TimeUnit.MILLISECONDS.toNanos(deadlinesMs[i]);
+                guarded = true;
+            }
+        }
+        if (!guarded) {
+            if (threads <= 0) {
+                return DIRECT;
+            }
+            if (IS_VIRTUAL == null) {
+                log.info("The runtime has no virtual threads, the native offload pool is disabled.");
+                return DIRECT;
+            }
+            // only virtual threads offload here, running a call in one would pin its carrier,
+            // so a full queue parks the caller instead
+            return new CfsNativeExecutor(newPool(threads, queueSize, new BlockingPolicy()), deadlines, false);
+        }
+        // running a guarded call in the caller would escape its deadline, reject it instead.
+        return new CfsNativeExecutor(newPool(threads > 0 ? threads : DEFAULT_GUARD_THREADS, queueSize,
+                new ThreadPoolExecutor.AbortPolicy()), deadlines, interruptible);
+    }
+
+    /*
+     * Waits for room in the queue of the pool, which parks a virtual thread.
+     */
+    private static final class BlockingPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor pool) {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("The native offload pool is shut down.");
+            }
+            try {
+                pool.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for the native offload pool.", e);
+            }
+            // a shutdown while waiting would leave the task to no worker
+            if (pool.isShutdown() && pool.remove(r)) {
+                throw new RejectedExecutionException("The native offload pool is shut down.");
+            }
+            // the workers may all have timed out meanwhile
+            if (pool.getPoolSize() == 0) {
+                pool.prestartCoreThread();
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor newPool(int threads, int queueSize, RejectedExecutionHandler handler) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), new ThreadFactory() {
+            private final AtomicInteger seq = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "cfs-native-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        }, handler);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public long run(final NativeCall call) throws CfsException {
+        return run(null, call);
+    }
+
+    /*
+     * Throws CfsTimeoutException when the deadline of the lane passes and
+     * CfsInterruptedException, with the interrupt status kept, when the caller
+     * is interrupted. The call may still complete after either of them, so it
+     * must not write into memory that the caller reuses.
+     */
+    public long run(CfsCallScheduler.Lane lane, final NativeCall call) throws CfsException {
+        long deadline = lane == null ? 0L : deadlineNanos[lane.ordinal()];
+        boolean guarded = deadline > 0L || interruptible;
+        if (pool == null || (!guarded && !isVirtual(Thread.currentThread()))) {
+            return call.call();
+        }
+        if (interruptible && Thread.currentThread().isInterrupted()) {
+            interrupts.increment();
+            throw new CfsInterruptedException("Interrupted before the " + lane + " call.");
+        }
+        FutureTask<Long> task = new FutureTask<>(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return call.call();
+            }
+        });
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            throw new CfsException("Too many pending native calls: " + pool.getQueue().size(), e);
+        }
+        try {
+            return deadline > 0L ? task.get(deadline, TimeUnit.NANOSECONDS) : task.get();
+        } catch (TimeoutException e) {
+            task.cancel(false);
+            timeouts.increment();
+            throw new CfsTimeoutException("The " + lane + " call did not return in "
+                    + TimeUnit.NANOSECONDS.toMillis(deadline) + " ms.");
+        } catch (InterruptedException e) {
+            task.cancel(false);
+            interrupts.increment();
+            Thread.currentThread().interrupt();
+            throw new CfsInterruptedException("Interrupted while waiting for the " + lane + " call.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CfsException(cause);
+        }
+    }
+
+    public boolean isOffloading() {
+        return pool != null;
+    }
+
+    /*
+     * Whether a call of the lane may return to the caller before libsdk does.
+     */
+    public boolean isAbandoning(CfsCallScheduler.Lane lane) {
+        return pool != null && (interruptible || deadlineNanos[lane.ordinal()] > 0L);
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getInterrupts() {
+        return interrupts.sum();
+    }
+
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(thread);
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static MethodHandle lookupIsVirtual() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual",
+                    MethodType.methodType(boolean.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.client;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+ * A small direct mapped cache of NUL terminated UTF-8 encoded paths, so the
+ * paths that are hit repeatedly, like the ones stat'ed before every open, are
+ * encoded once. A slot holds one immutable entry and a colliding path simply
+ * replaces it, so lookups and updates need no locking.
+ */
+public class CfsPathCache {
+    // longer paths are rarely repeated, encode them every time
+    private static final int MAX_CACHED_LENGTH = 512;
+
+    private final Entry[] slots;
+    private final int mask;
+
+    private static final class Entry {
+        final String path;
+        final byte[] bytes;
+
+        Entry(String path, byte[] bytes) {
+            this.path = path;
+            this.bytes = bytes;
+        }
+    }
+
+    public CfsPathCache(int size) {
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        this.slots = new Entry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public byte[] encode(String path) {
+        if (path == null) {
+            return null;
+        }
+        if (path.length() > MAX_CACHED_LENGTH || slots.length == 1) {
+            return toBytes(path);
+        }
+        int h = path.hashCode();
+        int idx = (h ^ (h >>> 16)) & mask;
+        Entry e = slots[idx];
+        if (e != null && (e.path == path || e.path.equals(path))) {
+            return e.bytes;
+        }
+        byte[] bytes = toBytes(path);
+        slots[idx] = new Entry(path, bytes);
+        return bytes;
+    }
+
+    public static byte[] toBytes(String path) {
+        byte[] utf8 = path.getBytes(StandardCharsets.UTF_8);
+        byte[] res = new byte[utf8.length + 1];
+        System.arraycopy(utf8, 0, res, 0, utf8.length);
+        return res;
+    }
+}
@@ -19,8 +19,11 @@ public enum StatusCodes {
     CFS_STATUS_INVALID_ARGUMENT(-100, "Invalid argument."),
     CFS_STATUS_FILE_EXISTS(-17, "File exists"),
     CFS_STATUS_FILIE_NOT_FOUND(-2, "no such file or directory."),
+    CFS_STATUS_IS_DIRECTORY(-21, "Is a directory."),
     CFS_STATUS_NULL_ARGUMENT(-3, "Null argument."),
-    CFS_STATUS_EOF(-5, "End-of-file reached");
+    CFS_STATUS_EOF(-5, "End-of-file reached"),
+    CFS_STATUS_INTERRUPTED(-4, "Interrupted call."),
+    CFS_STATUS_TIMEOUT(-110, "Call timed out.");
 
     public static StatusCodes get(int code) {
         switch (code) {
@@ -32,8 +35,14 @@ public enum StatusCodes {
                 return CFS_STATUS_FILE_EXISTS;
             case -2:
                 return CFS_STATUS_FILIE_NOT_FOUND;
+            case -21:
+                return CFS_STATUS_IS_DIRECTORY;
             case -3:
                 return CFS_STATUS_NULL_ARGUMENT;
+            case -4:
+                return CFS_STATUS_INTERRUPTED;
+            case -110:
+                return CFS_STATUS_TIMEOUT;
             default:
                 return CFS_STATUS_ERROR;
         }
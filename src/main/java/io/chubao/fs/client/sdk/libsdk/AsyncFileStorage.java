@@ -0,0 +1,64 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.libsdk;
+
+import io.chubao.fs.client.sdk.client.CfsFile;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/*
+ * Non-blocking view of a FileStorage. Every call returns at once and the
+ * blocking libsdk call runs on the storage executor; a failed call completes
+ * its future exceptionally with the CfsException. Cancelling a future skips
+ * the call if it has not started yet, a call already in libsdk runs to the
+ * end and its result is dropped.
+ *
+ * A CfsFile keeps one position, so chain its reads and writes one after the
+ * other rather than issuing them together.
+ */
+public interface AsyncFileStorage {
+    FileStorage getStorage();
+
+    Executor getExecutor();
+
+    // runs any blocking task on the storage executor
+    <T> CompletableFuture<T> submit(Callable<T> task);
+
+    CompletableFuture<CfsStatInfo> stat(String path);
+
+    CompletableFuture<CfsListing> listCompact(String path);
+
+    CompletableFuture<CfsExtent[]> getExtents(String path);
+
+    CompletableFuture<Boolean> mkdirs(String path, int mode, int uid, int gid);
+
+    CompletableFuture<CfsFile> open(String path, int flags, int mode, int uid, int gid);
+
+    CompletableFuture<Void> rename(String src, String dst);
+
+    CompletableFuture<Void> unlink(String path);
+
+    CompletableFuture<Integer> tryUnlink(String path);
+
+    CompletableFuture<Void> rmdir(String path, boolean recursive);
+
+    CompletableFuture<Long> read(CfsFile file, byte[] buff, int off, int len);
+
+    CompletableFuture<Void> write(CfsFile file, byte[] buff, int off, int len);
+
+    // stops the executor if it was created by this storage, the FileStorage stays open
+    void close();
+}
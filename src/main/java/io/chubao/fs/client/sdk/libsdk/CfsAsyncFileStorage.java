@@ -0,0 +1,234 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.libsdk;
+
+import io.chubao.fs.client.sdk.client.CfsFile;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CfsAsyncFileStorage implements AsyncFileStorage {
+    private static final Log log = LogFactory.getLog(CfsAsyncFileStorage.class);
+    private final FileStorage storage;
+    private final Executor executor;
+    private final boolean ownExecutor;
+
+    public CfsAsyncFileStorage(FileStorage storage, Executor executor) {
+        this(storage, executor, false);
+    }
+
+    private CfsAsyncFileStorage(FileStorage storage, Executor executor, boolean ownExecutor) {
+        this.storage = storage;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+    }
+
+    /*
+     * Runs the calls on a virtual thread each when asked for and the runtime
+     * has them, otherwise on a pool of platform threads.
+     */
+    public static CfsAsyncFileStorage create(FileStorage storage, int threads, boolean virtual) {
+        ExecutorService executor = virtual ? newVirtualExecutor() : null;
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+                private final AtomicInteger seq = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "cfs-async-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return new CfsAsyncFileStorage(storage, executor, true);
+    }
+
+    @Override
+    public FileStorage getStorage() {
+        return storage;
+    }
+
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> submit(final Callable<T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // cancelled before it started
+                    if (future.isDone()) {
+                        return;
+                    }
+                    try {
+                        future.complete(task.call());
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<CfsStatInfo> stat(final String path) {
+        return submit(new Callable<CfsStatInfo>() {
+            @Override
+            public CfsStatInfo call() throws Exception {
+                return storage.stat(path);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<CfsListing> listCompact(final String path) {
+        return submit(new Callable<CfsListing>() {
+            @Override
+            public CfsListing call() throws Exception {
+                return storage.listCompact(path);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<CfsExtent[]> getExtents(final String path) {
+        return submit(new Callable<CfsExtent[]>() {
+            @Override
+            public CfsExtent[] call() throws Exception {
+                return storage.getExtents(path);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> mkdirs(final String path, final int mode, final int uid, final int gid) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return storage.mkdirs(path, mode, uid, gid);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<CfsFile> open(final String path, final int flags, final int mode,
+                                           final int uid, final int gid) {
+        return submit(new Callable<CfsFile>() {
+            @Override
+            public CfsFile call() throws Exception {
+                return storage.open(path, flags, mode, uid, gid);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> rename(final String src, final String dst) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                storage.rename(src, dst);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> unlink(final String path) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                storage.unlink(path);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> tryUnlink(final String path) {
+        return submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return storage.tryUnlink(path);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> rmdir(final String path, final boolean recursive) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                storage.rmdir(path, recursive);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> read(final CfsFile file, final byte[] buff, final int off, final int len) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return file.read(buff, off, len);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> write(final CfsFile file, final byte[] buff, final int off, final int len) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                file.write(buff, off, len);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        if (ownExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private static ExecutorService newVirtualExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (Exception e) {
+            log.warn("Failed to create the virtual thread executor, use platform threads.", e);
+            return null;
+        }
+    }
+}
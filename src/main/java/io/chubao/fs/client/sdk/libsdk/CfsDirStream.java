@@ -0,0 +1,111 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.libsdk;
+
+import io.chubao.fs.client.sdk.client.CfsClientPool;
+import io.chubao.fs.client.sdk.exception.CfsException;
+
+import java.util.NoSuchElementException;
+
+/*
+ * Iterates a directory one listing batch at a time. The directory fd is
+ * opened on the first call to hasNext() and closed as soon as the last batch
+ * has been read, on error, or by close(), which may come from another thread.
+ */
+public class CfsDirStream {
+    private final FileStorageImpl storage;
+    private final String path;
+    private CfsListing batch = null;
+    private int index = 0;
+    private CfsClientPool.Client client;
+    private int fd = 0;
+    private CfsListPipeline pipeline;
+    private boolean eof = false;
+
+    CfsDirStream(FileStorageImpl storage, String path) {
+        this.storage = storage;
+        this.path = path;
+    }
+
+    public String getPath() {
+        return this.path;
+    }
+
+    public synchronized boolean hasNext() throws CfsException {
+        while (batch == null || index >= batch.size()) {
+            if (eof) {
+                return false;
+            }
+            fill();
+        }
+        return true;
+    }
+
+    public synchronized CfsStatInfo next() throws CfsException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more entries in " + path);
+        }
+        return batch.get(index++);
+    }
+
+    // whether the fd is closed and will not be opened again
+    public synchronized boolean isReleased() {
+        return eof;
+    }
+
+    public synchronized void close() throws CfsException {
+        batch = null;
+        index = 0;
+        release();
+    }
+
+    private void release() throws CfsException {
+        eof = true;
+        if (pipeline != null) {
+            pipeline.close();
+            pipeline = null;
+        }
+        if (fd > 0) {
+            int tmp = fd;
+            fd = 0;
+            storage.close(client, tmp);
+        }
+    }
+
+    private void fill() throws CfsException {
+        batch = null;
+        index = 0;
+        CfsListing next;
+        try {
+            if (fd == 0) {
+                client = storage.pickClient(path);
+                fd = storage.open1(client, path, FileStorage.O_RDONLY, 0, 0, 0);
+                pipeline = storage.newListPipeline(client, fd);
+            }
+            next = pipeline.next();
+        } catch (CfsException e) {
+            close();
+            throw e;
+        }
+        if (next == null) {
+            close();
+            return;
+        }
+        batch = next;
+        if (pipeline.isExhausted()) {
+            // the caller may never ask past the last batch
+            release();
+        }
+    }
+}
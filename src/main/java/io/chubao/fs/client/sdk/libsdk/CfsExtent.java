@@ -0,0 +1,48 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.libsdk;
+
+/*
+ * One extent of a file and the data partition replicas holding it.
+ */
+public class CfsExtent {
+    private final long fileOffset;
+    private final long size;
+    private final long partitionId;
+    private final String[] hosts;
+
+    public CfsExtent(long fileOffset, long size, long partitionId, String[] hosts) {
+        this.fileOffset = fileOffset;
+        this.size = size;
+        this.partitionId = partitionId;
+        this.hosts = hosts;
+    }
+
+    public long getFileOffset() {
+        return this.fileOffset;
+    }
+
+    public long getSize() {
+        return this.size;
+    }
+
+    public long getPartitionId() {
+        return this.partitionId;
+    }
+
+    // host:port of each replica, leader first
+    public String[] getHosts() {
+        return this.hosts;
+    }
+}
@@ -0,0 +1,169 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.libsdk;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Maps absolute paths to inode numbers so repeated metadata operations can
+ * address the inode directly instead of having libsdk walk the path again.
+ * A path is dropped together with everything under it whenever this client
+ * changes the namespace there, and the map is kept sorted so the subtree of
+ * a path is one range.
+ *
+ * Other clients are not seen: after another client renames a path, a lookup
+ * through the cached inode reaches the file that was there, until the entry
+ * expires after the ttl. A removed inode is noticed by libsdk and the path is
+ * resolved again. This is why the cache is off unless cfs.inode.cache.size
+ * is set.
+ *
+ * The size is counted apart, ConcurrentSkipListMap.size() walks the map.
+ * When the map reaches its bound, one put sweeps the expired entries and, if
+ * that is not enough, drops an eighth of the entries from a rotating point.
+ */
+class CfsInodeCache {
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<String, Entry>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // where the next eviction starts, guarded by evicting
+    private String evictFrom = "";
+
+    private static final class Entry {
+        final long ino;
+        final long expireAt;
+
+        Entry(long ino, long expireAt) {
+            this.ino = ino;
+            this.expireAt = expireAt;
+        }
+    }
+
+    CfsInodeCache(int maxEntries, long ttlMs) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    }
+
+    int capacity() {
+        return maxEntries;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /*
+     * Returns the cached inode of path, or 0 when unknown or expired.
+     */
+    long get(String path) {
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            misses.increment();
+            return 0L;
+        }
+        if (System.nanoTime() - entry.expireAt > 0) {
+            if (entries.remove(path, entry)) {
+                size.decrementAndGet();
+            }
+            misses.increment();
+            return 0L;
+        }
+        hits.increment();
+        return entry.ino;
+    }
+
+    void put(String path, long ino) {
+        if (ino <= 0) {
+            return;
+        }
+        if (size.get() >= maxEntries) {
+            evict();
+        }
+        if (entries.put(path, new Entry(ino, System.nanoTime() + ttlNanos)) == null) {
+            size.incrementAndGet();
+        }
+    }
+
+    void invalidate(String path) {
+        remove(path);
+        String prefix = path.endsWith("/") ? path : path + "/";
+        // '0' sorts right after '/', so this is exactly the subtree
+        Iterator<String> it = entries.subMap(prefix, prefix.substring(0, prefix.length() - 1) + "0")
+                .keySet().iterator();
+        while (it.hasNext()) {
+            remove(it.next());
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    void clear() {
+        Iterator<String> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            remove(it.next());
+        }
+    }
+
+    private void remove(String path) {
+        if (entries.remove(path) != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    // the other putters go on while one thread evicts
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.nanoTime();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (now - e.getValue().expireAt > 0 && entries.remove(e.getKey(), e.getValue())) {
+                    size.decrementAndGet();
+                }
+            }
+            int target = maxEntries - Math.max(1, maxEntries / 8);
+            String key = evictFrom;
+            while (size.get() > target) {
+                key = entries.higherKey(key);
+                if (key == null) {
+                    Map.Entry<String, Entry> first = entries.firstEntry();
+                    if (first == null) {
+                        break;
+                    }
+                    key = first.getKey();
+                }
+                remove(key);
+            }
+            evictFrom = key == null ? "" : key;
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
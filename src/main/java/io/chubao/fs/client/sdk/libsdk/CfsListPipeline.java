@@ -0,0 +1,202 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.libsdk;
+
+import io.chubao.fs.client.sdk.client.CfsClientPool;
+import io.chubao.fs.client.sdk.exception.CfsException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+ * Lists one open directory fd. The next cfs_readdir runs on the calling thread
+ * while the inode fetch of the previous batch runs on the listing executor, and
+ * large inode fetches are split into concurrent sub-batches. While batches come
+ * back full within the latency target the readdir batch grows, at least
+ * doubling, towards the size the last call could have listed within the
+ * target, but to no more than four times what the directory has listed so
+ * far: a small directory never asks for a large batch, and a large one
+ * reaches the target size in a few calls. The batch halves when a call takes
+ * more than twice the target. An inode fetch the executor has no room for
+ * runs on the calling thread.
+ */
+class CfsListPipeline {
+    private static final Log log = LogFactory.getLog(CfsListPipeline.class);
+    private static final int DEPTH = 2;
+
+    private final FileStorageImpl storage;
+    private final ExecutorService executor;
+    private final CfsClientPool.Client client;
+    private final int fd;
+    private final int minBatch;
+    private final int maxBatch;
+    private final int inodeBatch;
+    private final long targetNanos;
+    private final ArrayDeque<List<Future<CfsListing>>> inflight =
+            new ArrayDeque<List<Future<CfsListing>>>();
+    private int batchSize;
+    // the entries readdir returned so far
+    private long listed = 0L;
+    private boolean eof = false;
+
+    CfsListPipeline(FileStorageImpl storage, ExecutorService executor,
+                    CfsClientPool.Client client, int fd, int batchSize, int maxBatch, int inodeBatch, long targetMs) {
+        this.storage = storage;
+        this.executor = executor;
+        this.client = client;
+        this.fd = fd;
+        this.minBatch = Math.max(1, batchSize);
+        this.maxBatch = Math.max(this.minBatch, maxBatch);
+        this.inodeBatch = Math.max(1, inodeBatch);
+        this.targetNanos = targetMs * 1000L * 1000L;
+        this.batchSize = this.minBatch;
+    }
+
+    /*
+     * Returns the entries of the next readdir batch in directory order, or null
+     * once the directory is exhausted.
+     */
+    CfsListing next() throws CfsException {
+        while (!eof && inflight.size() < DEPTH) {
+            issue();
+        }
+        List<Future<CfsListing>> head = inflight.poll();
+        if (head == null) {
+            return null;
+        }
+        CfsListing res = null;
+        CfsException error = null;
+        for (Future<CfsListing> f : head) {
+            try {
+                CfsListing part = f.get();
+                if (res == null) {
+                    res = part;
+                } else {
+                    res.addAll(part);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = new CfsException("Interrupted while listing fd:" + fd, e);
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = unwrap(e);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return res;
+    }
+
+    // whether next() has returned the last batch, the fd is no longer needed
+    boolean isExhausted() {
+        return eof && inflight.isEmpty();
+    }
+
+    /*
+     * Waits for the in-flight inode fetches so the fd can be closed safely.
+     */
+    void close() {
+        eof = true;
+        List<Future<CfsListing>> batch;
+        while ((batch = inflight.poll()) != null) {
+            for (Future<CfsListing> f : batch) {
+                try {
+                    f.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Ignore the listing error on close, fd:" + fd, e.getCause());
+                    }
+                }
+            }
+        }
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    private void issue() throws CfsException {
+        int requested = batchSize;
+        long start = System.nanoTime();
+        final DirentBatch dents = storage.readdir(client, fd, requested);
+        long cost = System.nanoTime() - start;
+        if (dents.count <= 0) {
+            eof = true;
+            return;
+        }
+        adapt(requested, dents.count, cost);
+
+        List<Future<CfsListing>> futures = new ArrayList<Future<CfsListing>>();
+        for (int from = 0; from < dents.count; from += inodeBatch) {
+            final int begin = from;
+            final int end = Math.min(dents.count, from + inodeBatch);
+            futures.add(submit(new Callable<CfsListing>() {
+                @Override
+                public CfsListing call() throws Exception {
+                    return storage.getInodes(client, fd, dents, begin, end);
+                }
+            }));
+        }
+        inflight.add(futures);
+    }
+
+    private void adapt(int requested, int count, long cost) {
+        listed += count;
+        if (count >= requested && cost < targetNanos && batchSize < maxBatch) {
+            long fit = cost > 0L ? count * targetNanos / cost : maxBatch;
+            long next = Math.max(batchSize * 2L, Math.min(fit, listed * 4L));
+            batchSize = (int) Math.min(maxBatch, next);
+        } else if (cost > targetNanos * 2 && batchSize > minBatch) {
+            batchSize = Math.max(minBatch, batchSize / 2);
+        }
+    }
+
+    private Future<CfsListing> submit(Callable<CfsListing> task) {
+        if (executor == null) {
+            FutureTask<CfsListing> f = new FutureTask<CfsListing>(task);
+            f.run();
+            return f;
+        }
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            // the queue is full, or the storage is closing
+            FutureTask<CfsListing> f = new FutureTask<CfsListing>(task);
+            f.run();
+            return f;
+        }
+    }
+
+    private CfsException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof CfsException) {
+            return (CfsException) cause;
+        }
+        return new CfsException("Failed to list fd:" + fd, cause);
+    }
+}
@@ -0,0 +1,191 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.libsdk;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * A directory listing kept in primitive columns. Entry names are stored as
+ * UTF-8 in one shared byte array and only decoded on request, so a listing
+ * costs a few arrays instead of several objects per entry.
+ */
+public class CfsListing {
+    private int size = 0;
+    private long[] inos;
+    private long[] sizes;
+    private long[] ctimes;
+    private long[] mtimes;
+    private long[] atimes;
+    private int[] modes;
+    private int[] uids;
+    private int[] gids;
+    private int[] nameOffsets;
+    private int[] nameLens;
+    private byte[] names;
+    private int namesLen = 0;
+
+    public CfsListing(int capacity) {
+        capacity = Math.max(1, capacity);
+        inos = new long[capacity];
+        sizes = new long[capacity];
+        ctimes = new long[capacity];
+        mtimes = new long[capacity];
+        atimes = new long[capacity];
+        modes = new int[capacity];
+        uids = new int[capacity];
+        gids = new int[capacity];
+        nameOffsets = new int[capacity];
+        nameLens = new int[capacity];
+        names = new byte[capacity * 16];
+    }
+
+    void add(long ino, int mode, int uid, int gid, long fileSize, long ctime, long mtime, long atime,
+             byte[] nameSrc, int nameOff, int nameLen) {
+        ensure(size + 1, namesLen + nameLen);
+        inos[size] = ino;
+        modes[size] = mode;
+        uids[size] = uid;
+        gids[size] = gid;
+        sizes[size] = fileSize;
+        ctimes[size] = ctime;
+        mtimes[size] = mtime;
+        atimes[size] = atime;
+        nameOffsets[size] = namesLen;
+        nameLens[size] = nameLen;
+        if (nameLen > 0) {
+            System.arraycopy(nameSrc, nameOff, names, namesLen, nameLen);
+        }
+        namesLen += nameLen;
+        size++;
+    }
+
+    void addAll(CfsListing other) {
+        ensure(size + other.size, namesLen + other.namesLen);
+        System.arraycopy(other.inos, 0, inos, size, other.size);
+        System.arraycopy(other.modes, 0, modes, size, other.size);
+        System.arraycopy(other.uids, 0, uids, size, other.size);
+        System.arraycopy(other.gids, 0, gids, size, other.size);
+        System.arraycopy(other.sizes, 0, sizes, size, other.size);
+        System.arraycopy(other.ctimes, 0, ctimes, size, other.size);
+        System.arraycopy(other.mtimes, 0, mtimes, size, other.size);
+        System.arraycopy(other.atimes, 0, atimes, size, other.size);
+        System.arraycopy(other.nameLens, 0, nameLens, size, other.size);
+        for (int i = 0; i < other.size; i++) {
+            nameOffsets[size + i] = other.nameOffsets[i] + namesLen;
+        }
+        System.arraycopy(other.names, 0, names, namesLen, other.namesLen);
+        namesLen += other.namesLen;
+        size += other.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getIno(int i) {
+        return inos[i];
+    }
+
+    public int getMode(int i) {
+        return modes[i] & 0777;
+    }
+
+    public CfsStatInfo.Type getType(int i) {
+        return CfsStatInfo.typeOf(modes[i]);
+    }
+
+    public int getUid(int i) {
+        return uids[i];
+    }
+
+    public int getGid(int i) {
+        return gids[i];
+    }
+
+    public long getSize(int i) {
+        return sizes[i];
+    }
+
+    public long getCtime(int i) {
+        return ctimes[i];
+    }
+
+    public long getMtime(int i) {
+        return mtimes[i];
+    }
+
+    public long getAtime(int i) {
+        return atimes[i];
+    }
+
+    public String getName(int i) {
+        return new String(names, nameOffsets[i], nameLens[i], StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Materializes one entry. The returned stat shares the name bytes.
+     */
+    public CfsStatInfo get(int i) {
+        return new CfsStatInfo(modes[i], uids[i], gids[i], sizes[i], ctimes[i], mtimes[i], atimes[i],
+                inos[i], names, nameOffsets[i], nameLens[i]);
+    }
+
+    public CfsStatInfo[] toArray() {
+        CfsStatInfo[] res = new CfsStatInfo[size];
+        for (int i = 0; i < size; i++) {
+            res[i] = get(i);
+        }
+        return res;
+    }
+
+    /*
+     * Drops the spare capacity once the listing is complete.
+     */
+    public void trim() {
+        if (inos.length == size && names.length == namesLen) {
+            return;
+        }
+        inos = Arrays.copyOf(inos, size);
+        modes = Arrays.copyOf(modes, size);
+        uids = Arrays.copyOf(uids, size);
+        gids = Arrays.copyOf(gids, size);
+        sizes = Arrays.copyOf(sizes, size);
+        ctimes = Arrays.copyOf(ctimes, size);
+        mtimes = Arrays.copyOf(mtimes, size);
+        atimes = Arrays.copyOf(atimes, size);
+        nameOffsets = Arrays.copyOf(nameOffsets, size);
+        nameLens = Arrays.copyOf(nameLens, size);
+        names = Arrays.copyOf(names, namesLen);
+    }
+
+    private void ensure(int entries, int nameBytes) {
+        if (entries > inos.length) {
+            int cap = Math.max(entries, inos.length * 2);
+            inos = Arrays.copyOf(inos, cap);
+            modes = Arrays.copyOf(modes, cap);
+            uids = Arrays.copyOf(uids, cap);
+            gids = Arrays.copyOf(gids, cap);
+            sizes = Arrays.copyOf(sizes, cap);
+            ctimes = Arrays.copyOf(ctimes, cap);
+            mtimes = Arrays.copyOf(mtimes, cap);
+            atimes = Arrays.copyOf(atimes, cap);
+            nameOffsets = Arrays.copyOf(nameOffsets, cap);
+            nameLens = Arrays.copyOf(nameLens, cap);
+        }
+        if (nameBytes > names.length) {
+            names = Arrays.copyOf(names, Math.max(nameBytes, names.length * 2));
+        }
+    }
+}
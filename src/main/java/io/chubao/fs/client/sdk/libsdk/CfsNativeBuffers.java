@@ -0,0 +1,184 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.libsdk;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import io.chubao.fs.client.sdk.client.CfsLibrary;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Per-thread native buffers for stat and readdir results. The records are
+ * decoded by fixed offsets instead of through JNA Structure reflection, so
+ * the offsets below must stay aligned with cfs_stat_info and cfs_dirent.
+ */
+final class CfsNativeBuffers {
+    static final int STAT_SIZE = 80;
+    static final int STAT_INO = 0;
+    static final int STAT_SIZE_FIELD = 8;
+    static final int STAT_ATIME = 24;
+    static final int STAT_MTIME = 32;
+    static final int STAT_CTIME = 40;
+    static final int STAT_MODE = 60;
+    static final int STAT_UID = 72;
+    static final int STAT_GID = 76;
+
+    static final int DIRENT_SIZE = 272;
+    static final int DIRENT_INO = 0;
+    static final int DIRENT_NAME_LEN = 12;
+    static final int DIRENT_NAME = 16;
+    static final int DIRENT_NAME_MAX = 256;
+
+    static final int EXTENT_SIZE = 288;
+    static final int EXTENT_FILE_OFFSET = 0;
+    static final int EXTENT_SIZE_FIELD = 8;
+    static final int EXTENT_PARTITION = 16;
+    static final int EXTENT_HOSTS_LEN = 24;
+    static final int EXTENT_HOSTS = 28;
+    static final int EXTENT_HOSTS_MAX = 256;
+
+    private static final ThreadLocal<CfsNativeBuffers> LOCAL = new ThreadLocal<CfsNativeBuffers>() {
+        @Override
+        protected CfsNativeBuffers initialValue() {
+            return new CfsNativeBuffers();
+        }
+    };
+
+    static {
+        int statSize = new CfsLibrary.StatInfo().size();
+        int direntSize = new CfsLibrary.Dirent().size();
+        int extentSize = new CfsLibrary.ExtentInfo().size();
+        if (statSize != STAT_SIZE || direntSize != DIRENT_SIZE || extentSize != EXTENT_SIZE) {
+            throw new IllegalStateException("Unexpected native layout, cfs_stat_info:" + statSize
+                    + " cfs_dirent:" + direntSize + " cfs_extent_info:" + extentSize);
+        }
+    }
+
+    private Memory dirents;
+    private Memory stats;
+    private Memory extents;
+    private final CfsLibrary.DirentArray.ByValue direntSlice = new CfsLibrary.DirentArray.ByValue();
+    private final CfsLibrary.DirentArray.ByValue statSlice = new CfsLibrary.DirentArray.ByValue();
+    private final CfsLibrary.DirentArray.ByValue extentSlice = new CfsLibrary.DirentArray.ByValue();
+
+    private CfsNativeBuffers() {
+    }
+
+    static CfsNativeBuffers get() {
+        return LOCAL.get();
+    }
+
+    /*
+     * Drops the buffers of this thread, called when a native call that writes
+     * into them is abandoned and may still complete.
+     */
+    static void discard() {
+        LOCAL.remove();
+    }
+
+    CfsLibrary.DirentArray.ByValue direntSlice(int count) {
+        if (dirents == null || dirents.size() < (long) count * DIRENT_SIZE) {
+            dirents = new Memory((long) count * DIRENT_SIZE);
+        }
+        direntSlice.data = dirents;
+        direntSlice.len = count;
+        direntSlice.cap = count;
+        return direntSlice;
+    }
+
+    CfsLibrary.DirentArray.ByValue statSlice(int count) {
+        statSlice.data = stats(count);
+        statSlice.len = count;
+        statSlice.cap = count;
+        return statSlice;
+    }
+
+    CfsLibrary.DirentArray.ByValue extentSlice(int count) {
+        if (extents == null || extents.size() < (long) count * EXTENT_SIZE) {
+            extents = new Memory((long) count * EXTENT_SIZE);
+        }
+        extentSlice.data = extents;
+        extentSlice.len = count;
+        extentSlice.cap = count;
+        return extentSlice;
+    }
+
+    CfsExtent decodeExtent(int index) {
+        long base = (long) index * EXTENT_SIZE;
+        int len = extents.getInt(base + EXTENT_HOSTS_LEN);
+        if (len < 0 || len > EXTENT_HOSTS_MAX) {
+            len = EXTENT_HOSTS_MAX;
+        }
+        byte[] hosts = extents.getByteArray(base + EXTENT_HOSTS, len);
+        return new CfsExtent(extents.getLong(base + EXTENT_FILE_OFFSET), extents.getLong(base + EXTENT_SIZE_FIELD),
+                extents.getLong(base + EXTENT_PARTITION), new String(hosts, StandardCharsets.UTF_8).split(","));
+    }
+
+    Pointer stats(int count) {
+        if (stats == null || stats.size() < (long) count * STAT_SIZE) {
+            stats = new Memory((long) count * STAT_SIZE);
+        }
+        return stats;
+    }
+
+    /*
+     * Copies the first count dirents out of the native buffer. Names are kept
+     * as raw UTF-8 bytes in one shared array and decoded on demand.
+     */
+    DirentBatch decodeDirents(int count) {
+        long[] inos = new long[count];
+        int[] offsets = new int[count];
+        int[] lens = new int[count];
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            long base = (long) i * DIRENT_SIZE;
+            inos[i] = dirents.getLong(base + DIRENT_INO);
+            int len = dirents.getInt(base + DIRENT_NAME_LEN);
+            if (len < 0 || len > DIRENT_NAME_MAX) {
+                len = DIRENT_NAME_MAX;
+            }
+            offsets[i] = total;
+            lens[i] = len;
+            total += len;
+        }
+        byte[] names = new byte[total];
+        for (int i = 0; i < count; i++) {
+            dirents.read((long) i * DIRENT_SIZE + DIRENT_NAME, names, offsets[i], lens[i]);
+        }
+        return new DirentBatch(inos, names, offsets, lens, count);
+    }
+
+    CfsStatInfo decodeStat(int index, byte[] names, int nameOffset, int nameLength) {
+        long base = (long) index * STAT_SIZE;
+        return new CfsStatInfo(
+                stats.getInt(base + STAT_MODE), stats.getInt(base + STAT_UID), stats.getInt(base + STAT_GID),
+                stats.getLong(base + STAT_SIZE_FIELD), stats.getLong(base + STAT_CTIME),
+                stats.getLong(base + STAT_MTIME), stats.getLong(base + STAT_ATIME),
+                stats.getLong(base + STAT_INO), names, nameOffset, nameLength);
+    }
+
+    void decodeStat(int index, CfsListing listing, byte[] names, int nameOffset, int nameLength) {
+        long base = (long) index * STAT_SIZE;
+        listing.add(stats.getLong(base + STAT_INO),
+                stats.getInt(base + STAT_MODE), stats.getInt(base + STAT_UID), stats.getInt(base + STAT_GID),
+                stats.getLong(base + STAT_SIZE_FIELD), stats.getLong(base + STAT_CTIME),
+                stats.getLong(base + STAT_MTIME), stats.getLong(base + STAT_ATIME),
+                names, nameOffset, nameLength);
+    }
+
+    long statIno(int index) {
+        return stats.getLong((long) index * STAT_SIZE + STAT_INO);
+    }
+}
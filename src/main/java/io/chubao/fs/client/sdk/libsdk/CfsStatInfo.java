@@ -13,6 +13,8 @@
 // permissions and limitations under the License.
 package io.chubao.fs.client.sdk.libsdk;
 
+import java.nio.charset.StandardCharsets;
+
 public class CfsStatInfo {
     private int mode = 0;
     private int uid = 0;
@@ -21,7 +23,11 @@ public class CfsStatInfo {
     private long ctime = 0L;
     private long mtime = 0L;
     private long atime = 0L;
+    private long ino = 0L;
     private String name;
+    private byte[] nameBytes;
+    private int nameOffset;
+    private int nameLength;
 
     public enum Type {
         REG,
@@ -51,6 +57,19 @@ public class CfsStatInfo {
         this.name = name;
     }
 
+    CfsStatInfo(int mode, int uid, int gid, long size, long ctime, long mtime, long atime,
+                long ino, byte[] nameBytes, int nameOffset, int nameLength) {
+        this(mode, uid, gid, size, ctime, mtime, atime);
+        this.ino = ino;
+        this.nameBytes = nameBytes;
+        this.nameOffset = nameOffset;
+        this.nameLength = nameLength;
+    }
+
+    public long getIno() {
+        return this.ino;
+    }
+
     public int getMode() {
         return this.mode & 0777;
     }
@@ -68,6 +87,10 @@ public class CfsStatInfo {
     }
 
     public Type getType() {
+        return typeOf(mode);
+    }
+
+    static Type typeOf(int mode) {
         if ((mode & FileStorage.S_IFDIR) == FileStorage.S_IFDIR) {
             return Type.DIR;
         }
@@ -96,6 +119,10 @@ public class CfsStatInfo {
     }
 
     public String getName() {
+        if (this.name == null && this.nameBytes != null) {
+            this.name = new String(nameBytes, nameOffset, nameLength, StandardCharsets.UTF_8);
+            this.nameBytes = null;
+        }
         return this.name;
     }
 
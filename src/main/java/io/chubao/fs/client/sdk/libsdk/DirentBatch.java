@@ -0,0 +1,59 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.sdk.libsdk;
+
+/*
+ * The entries returned by one cfs_readdir call. Entry names share one UTF-8
+ * byte array and are only decoded when a CfsStatInfo name is requested.
+ */
+class DirentBatch {
+    private static final DirentBatch EMPTY = new DirentBatch(new long[0], new byte[0], new int[0], new int[0], 0);
+
+    final long[] inos;
+    final byte[] names;
+    final int[] nameOffsets;
+    final int[] nameLens;
+    final int count;
+
+    DirentBatch(long[] inos, byte[] names, int[] nameOffsets, int[] nameLens, int count) {
+        this.inos = inos;
+        this.names = names;
+        this.nameOffsets = nameOffsets;
+        this.nameLens = nameLens;
+        this.count = count;
+    }
+
+    static DirentBatch empty() {
+        return EMPTY;
+    }
+
+    /*
+     * Finds the entry of ino in [from, to), starting at hint. The inodes come
+     * back in request order with missing entries skipped, so the hint almost
+     * always matches on the first or second probe.
+     */
+    int indexOf(long ino, int hint, int from, int to) {
+        for (int i = Math.max(hint, from); i < to; i++) {
+            if (inos[i] == ino) {
+                return i;
+            }
+        }
+        for (int i = from; i < Math.min(hint, to); i++) {
+            if (inos[i] == ino) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
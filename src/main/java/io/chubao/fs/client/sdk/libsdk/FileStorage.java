@@ -43,12 +43,21 @@ public interface FileStorage {
 
     void unlink(String path) throws CfsException;
 
+    // unlink without a preceding stat, returns the raw status code
+    int tryUnlink(String path) throws CfsException;
+
     void rename(String src, String dst) throws CfsException;
 
     CfsStatInfo[] list(String path) throws CfsException;
 
+    CfsListing listCompact(String path) throws CfsException;
+
+    CfsDirStream openDir(String path) throws CfsException;
+
     CfsStatInfo stat(String path) throws CfsException;
 
+    CfsExtent[] getExtents(String path) throws CfsException;
+
     void setXAttr(String path, String name, byte[] value) throws CfsException;
 
     byte[] getXAttr(String path, String name) throws CfsException;
@@ -14,25 +14,45 @@
 package io.chubao.fs.client.sdk.libsdk;
 
 import com.sun.jna.Pointer;
+import io.chubao.fs.client.sdk.client.CfsCallMetrics;
+import io.chubao.fs.client.sdk.client.CfsCallScheduler;
+import io.chubao.fs.client.sdk.client.CfsClientPool;
 import io.chubao.fs.client.sdk.client.CfsFile;
 import io.chubao.fs.client.sdk.client.CfsFileImpl;
+import io.chubao.fs.client.sdk.client.CfsNativeExecutor;
 import io.chubao.fs.client.sdk.client.CfsLibrary;
+import io.chubao.fs.client.config.StorageConfig;
+import io.chubao.fs.client.trace.CfsFlightEvents;
 import io.chubao.fs.client.sdk.exception.*;
 import io.chubao.fs.client.util.CfsOwnerHelper;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FileStorageImpl implements FileStorage {
     private static final Log log = LogFactory.getLog(FileStorageImpl.class);
+    // the inode fetches each listing thread may have waiting
+    private static final int LIST_QUEUE_PER_THREAD = 8;
     private CfsLibrary cfsLib;
-    private long clientID;
+    private CfsClientPool clients;
     private CfsOwnerHelper owner;
+    private StorageConfig config;
+    private ExecutorService listExecutor;
+    private CfsInodeCache inodeCache;
+    private CfsNativeExecutor nativeExecutor;
+    private CfsCallScheduler scheduler;
+    private final CfsCallMetrics metrics = new CfsCallMetrics();
+    private volatile boolean inodeOps = true;
     private long defaultBlockSize = 128 * 1024 * 1024;
     private int defaultDirPermission = 0644;
 
@@ -42,16 +62,41 @@ public class FileStorageImpl implements FileStorage {
     private final static int ATTR_MTIME = 1 << 3;
     private final static int ATTR_ATIME = 1 << 4;
     private final static int ATTR_SIZE = 1 << 5;
-    private final static int batchSize = 100;
     private final static int timeFactor = 1000 * 1000 * 1000;
+    private final static int extentBatchSize = 64;
+    // marks that no inode addressed call was made, never returned by libsdk
+    private final static int CFS_NO_INODE = Integer.MIN_VALUE;
 
     public FileStorageImpl(CfsLibrary cfsLib, long cid) {
+        this(cfsLib, cid, new StorageConfig());
+    }
+
+    public FileStorageImpl(CfsLibrary cfsLib, long cid, StorageConfig config) {
+        this(cfsLib, new long[]{cid}, config);
+    }
+
+    /*
+     * All the clients must be started on the same volume.
+     */
+    public FileStorageImpl(CfsLibrary cfsLib, long[] cids, StorageConfig config) {
         this.cfsLib = cfsLib;
-        this.clientID = cid;
+        this.clients = new CfsClientPool(cids, config.getClientRoute());
+        this.config = config;
+        this.listExecutor = newListExecutor(config.getListThreads());
+        this.nativeExecutor = CfsNativeExecutor.create(config.getNativeOffloadThreads(),
+                config.getNativeOffloadQueue(), config.getCallDeadlinesMs(), config.getCallInterruptible());
+        if (config.getSchedulerEnabled()) {
+            this.scheduler = new CfsCallScheduler(config.getSchedulerTotalLimit(),
+                    config.getSchedulerLimits(), config.getSchedulerQueues());
+        }
+        if (config.getInodeCacheSize() > 0 && config.getInodeCacheTtlMs() > 0) {
+            this.inodeCache = new CfsInodeCache(config.getInodeCacheSize(), config.getInodeCacheTtlMs());
+        }
     }
 
     public void init() throws Exception {
-        owner = new CfsOwnerHelper();
+        owner = new CfsOwnerHelper(config.getOwnerRefreshSeconds(), config.getOwnerMissCacheSize(),
+                config.getOwnerMappingClass());
         owner.init();
     }
 
@@ -62,8 +107,20 @@ public class FileStorageImpl implements FileStorage {
         if ((flags & FileStorage.O_APPEND) != 0) {
             flags = flags & ~(FileStorage.O_APPEND);
         }
-        int fd = open1(path, flags, mode, uid, gid);
-        long size = cfsLib.cfs_file_size(this.clientID, fd);
+        CfsClientPool.Client client = clients.pick(path);
+        int fd = open1(client, path, flags, mode, uid, gid);
+        long size;
+        try {
+            size = size(client, fd);
+        } catch (CfsException e) {
+            // a timed out or interrupted size call must not leak the fd
+            try {
+                close(client, fd);
+            } catch (CfsException ce) {
+                log.warn("Failed to close the fd:" + fd + " of " + path, ce);
+            }
+            throw e;
+        }
         long pos = 0L;
         if ((flagsTmp & FileStorage.O_APPEND) != 0) {
             pos = size;
@@ -71,13 +128,20 @@ public class FileStorageImpl implements FileStorage {
         if (log.isDebugEnabled()) {
             log.debug("Success to open:" + path + " size:" + size + " pos:" + pos);
         }
-        return new CfsFileImpl(cfsLib, fd, size, pos, this.clientID);
+        return new CfsFileImpl(cfsLib, fd, size, pos, client, nativeExecutor, scheduler, metrics, path);
     }
 
     @Override
-    public boolean mkdirs(String path, int mode, int uid, int gid) throws CfsException {
+    public boolean mkdirs(final String path, final int mode, final int uid, final int gid) throws CfsException {
         verifyPath(path);
-        int st = cfsLib.cfs_mkdirs(this.clientID, path, mode, uid, gid);
+        final CfsClientPool.Client client = clients.pick(path);
+        int st = (int) call(client, CfsCallScheduler.Lane.METADATA, CfsCallMetrics.Op.MKDIRS, path, -1,
+                new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                return cfsLib.cfs_mkdirs(client.getId(), path, mode, uid, gid);
+            }
+        });
         if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK &&
                 StatusCodes.get(st) != StatusCodes.CFS_STATUS_FILE_EXISTS) {
             throw new CfsException("Failed to mkdirs: " + path + " status code:" + st);
@@ -95,7 +159,7 @@ public class FileStorageImpl implements FileStorage {
         CfsLibrary.StatInfo stat = new CfsLibrary.StatInfo();
         stat.size = newLength;
         int valid = ATTR_SIZE;
-        int st = cfsLib.cfs_setattr_by_path(this.clientID, path, stat, valid);
+        int st = setAttr(path, stat, valid);
         if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK) {
             throw new CfsException("Failed to truncate: " + path + " status code: " + st);
         }
@@ -103,83 +167,279 @@ public class FileStorageImpl implements FileStorage {
 
     @Override
     public void close () throws CfsException {
-        cfsLib.cfs_close_client(this.clientID);
+        if (listExecutor != null) {
+            listExecutor.shutdown();
+        }
+        if (owner != null) {
+            owner.close();
+        }
+        nativeExecutor.close();
+        if (log.isDebugEnabled()) {
+            log.debug("Close the libsdk clients: " + clients);
+            if (scheduler != null) {
+                log.debug("Native calls: " + scheduler);
+            }
+            log.debug("Native call latencies: " + metrics);
+        }
+        for (int i = 0; i < clients.size(); i++) {
+            cfsLib.cfs_close_client(clients.get(i).getId());
+        }
     }
 
+    /*
+     * Closes an fd of open1(String, ...).
+     */
     public void close(int fd) throws CfsException {
+        close(clients.clientOf(fd), clients.fdOf(fd));
+    }
+
+    void close(final CfsClientPool.Client client, final int fd) throws CfsException {
         if (fd < 1) {
             throw new CfsException("Invalid arguments.");
         }
-        cfsLib.cfs_close(this.clientID, fd);
+        call(client, CfsCallScheduler.Lane.BACKGROUND, CfsCallMetrics.Op.CLOSE, null, fd,
+                new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                cfsLib.cfs_close(client.getId(), fd);
+                return 0L;
+            }
+        });
+    }
+
+    public CfsCallMetrics getCallMetrics() {
+        return metrics;
+    }
+
+    // lookups of the inode cache that found a live entry, 0 without the cache
+    public long getInodeCacheHits() {
+        return inodeCache == null ? 0L : inodeCache.getHits();
+    }
+
+    public long getInodeCacheMisses() {
+        return inodeCache == null ? 0L : inodeCache.getMisses();
+    }
+
+    public CfsClientPool getClientPool() {
+        return clients;
+    }
+
+    // null when the scheduling of the native calls is disabled
+    public CfsCallScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /*
+     * path is null for the calls on an fd, fd is -1 for the calls on a path.
+     */
+    private long call(CfsClientPool.Client client, CfsCallScheduler.Lane lane, CfsCallMetrics.Op op,
+                      String path, int fd, CfsNativeExecutor.NativeCall call) throws CfsException {
+        Object event = CfsFlightEvents.beginNativeCall();
+        CfsNativeExecutor.TimedCall timed = null;
+        if (event != null) {
+            timed = new CfsNativeExecutor.TimedCall(call);
+            call = timed;
+        }
+        if (scheduler != null) {
+            scheduler.acquire(lane);
+        }
+        client.begin();
+        long start = System.nanoTime();
+        try {
+            long res = nativeExecutor.run(lane, call);
+            metrics.record(op, System.nanoTime() - start, res);
+            CfsFlightEvents.commitNativeCall(event, op.name(), path, fd, 0L, res < 0,
+                    CfsNativeExecutor.TimedCall.nanos(timed));
+            return res;
+        } catch (CfsException e) {
+            metrics.recordError(op, System.nanoTime() - start, e);
+            CfsFlightEvents.commitNativeCall(event, op.name(), path, fd, 0L, true,
+                    CfsNativeExecutor.TimedCall.nanos(timed));
+            if (e instanceof CfsTimeoutException || e instanceof CfsInterruptedException) {
+                // the abandoned call may still fill the native buffers of this thread
+                CfsNativeBuffers.discard();
+            }
+            throw e;
+        } finally {
+            client.end();
+            if (scheduler != null) {
+                scheduler.release(lane);
+            }
+        }
     }
 
     @Override
-    public void rmdir (String path,boolean recursive) throws CfsException {
+    public void rmdir (final String path, final boolean recursive) throws CfsException {
         verifyPath(path);
-        int st = cfsLib.cfs_rmdir(this.clientID, path, recursive);
+        invalidate(path);
+        final CfsClientPool.Client client = clients.pick(path);
+        int st = (int) call(client, CfsCallScheduler.Lane.METADATA, CfsCallMetrics.Op.RMDIR, path, -1,
+                new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                return cfsLib.cfs_rmdir(client.getId(), path, recursive);
+            }
+        });
         if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK) {
             throw new CfsException("Failed to rmdir:" + path + " status code:" + st);
         }
+        // a stat or a listing racing the call may have cached the old inodes
+        invalidate(path);
     }
 
     @Override
     public void unlink (String path) throws CfsException {
         verifyPath(path);
-        int st = cfsLib.cfs_unlink(this.clientID, path);
+        invalidate(path);
+        int st = unlink(clients.pick(path), path);
         if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK) {
             throw new CfsException("Failed to unlink " + path + ", the status code is " + st);
         }
+        invalidate(path);
     }
 
     @Override
-    public void rename (String from, String to) throws CfsException {
+    public int tryUnlink(String path) throws CfsException {
+        verifyPath(path);
+        invalidate(path);
+        int st = unlink(clients.pick(path), path);
+        if (StatusCodes.get(st) == StatusCodes.CFS_STATUS_OK) {
+            invalidate(path);
+        }
+        return st;
+    }
+
+    private int unlink(final CfsClientPool.Client client, final String path) throws CfsException {
+        return (int) call(client, CfsCallScheduler.Lane.METADATA, CfsCallMetrics.Op.UNLINK, path, -1,
+                new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                return cfsLib.cfs_unlink(client.getId(), path);
+            }
+        });
+    }
+
+    @Override
+    public void rename (final String from, final String to) throws CfsException {
         verifyPath(from);
         verifyPath(to);
-        int st = cfsLib.cfs_rename(this.clientID, from, to);
+        invalidate(from);
+        invalidate(to);
+        final CfsClientPool.Client client = clients.pick(from);
+        int st = (int) call(client, CfsCallScheduler.Lane.METADATA, CfsCallMetrics.Op.RENAME, from, -1,
+                new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                return cfsLib.cfs_rename(client.getId(), from, to);
+            }
+        });
         if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK) {
             throw new CfsException("Failed to rename: " + from + " to:" + to + " status code:" + st);
         }
+        invalidate(from);
+        invalidate(to);
     }
 
     @Override
     public CfsStatInfo[] list (String path) throws CfsException {
+        return listCompact(path).toArray();
+    }
+
+    @Override
+    public CfsListing listCompact(String path) throws CfsException {
         int fd = 0;
-        ArrayList<CfsStatInfo> stats = new ArrayList<CfsStatInfo>();
+        CfsListPipeline pipeline = null;
+        CfsListing listing = null;
+        CfsClientPool.Client client = clients.pick(path);
         try {
-            fd = open1(path, O_RDONLY, defaultDirPermission, 0, 0);
-            long total = 0;
-            long num = 0;
-            while (true) {
-                num = list(fd, stats);
-                if (num <= 0) {
-                    break;
+            fd = open1(client, path, O_RDONLY, defaultDirPermission, 0, 0);
+            pipeline = newListPipeline(client, fd);
+            CfsListing batch;
+            while ((batch = pipeline.next()) != null) {
+                if (listing == null) {
+                    listing = batch;
+                } else {
+                    listing.addAll(batch);
                 }
-                total += num;
             }
-
-        } catch (CfsException ex) {
-            throw ex;
-        } catch (UnsupportedEncodingException e) {
-            throw new CfsException(e);
         } finally {
+            if (pipeline != null) {
+                pipeline.close();
+            }
             if (fd > 0) {
-                close(fd);
+                close(client, fd);
             }
         }
-        CfsStatInfo[] res = new CfsStatInfo[stats.size()];
-        stats.toArray(res);
-        return res;
+        if (listing == null) {
+            return new CfsListing(0);
+        }
+        listing.trim();
+        cacheChildren(path, listing);
+        return listing;
+    }
+
+    private void cacheChildren(String path, CfsListing listing) {
+        // large listings would only flush the cache
+        if (inodeCache == null || !inodeOps || listing.size() > inodeCache.capacity() / 4) {
+            return;
+        }
+        String prefix = path.endsWith("/") ? path : path + "/";
+        for (int i = 0; i < listing.size(); i++) {
+            inodeCache.put(prefix + listing.getName(i), listing.getIno(i));
+        }
+    }
+
+    @Override
+    public CfsDirStream openDir(String path) throws CfsException {
+        verifyPath(path);
+        return new CfsDirStream(this, path);
     }
 
     @Override
     public CfsStatInfo stat (String path) throws CfsException {
-        CfsLibrary.StatInfo info = getAttr(path);
-        if (info == null) {
+        CfsNativeBuffers buffers = CfsNativeBuffers.get();
+        if (!getAttr(path, buffers.stats(1))) {
             return null;
         }
-        return new CfsStatInfo(
-                info.mode, info.uid, info.gid, info.size,
-                info.ctime, info.mtime, info.atime);
+        CfsStatInfo info = buffers.decodeStat(0, null, 0, 0);
+        if (inodeCache != null) {
+            inodeCache.put(path, info.getIno());
+        }
+        return info;
+    }
+
+    @Override
+    public CfsExtent[] getExtents(final String path) throws CfsException {
+        verifyPath(path);
+        CfsNativeBuffers buffers = CfsNativeBuffers.get();
+        final CfsClientPool.Client client = clients.pick(path);
+        int capacity = extentBatchSize;
+        while (true) {
+            final int count = capacity;
+            final CfsLibrary.DirentArray.ByValue slice = buffers.extentSlice(count);
+            int num = (int) call(client, CfsCallScheduler.Lane.METADATA, CfsCallMetrics.Op.GET_EXTENTS, path, -1,
+                    new CfsNativeExecutor.NativeCall() {
+                @Override
+                public long call() {
+                    return cfsLib.cfs_get_extents(client.getId(), path, slice, count);
+                }
+            });
+            if (StatusCodes.get(num) == StatusCodes.CFS_STATUS_FILIE_NOT_FOUND) {
+                throw new CfsFileNotFoundException("Not found " + path);
+            }
+            if (num < 0) {
+                throw new CfsException("Failed to get extents: " + path + " status code: " + num);
+            }
+            if (num > capacity) {
+                capacity = num;
+                continue;
+            }
+            CfsExtent[] res = new CfsExtent[num];
+            for (int i = 0; i < num; i++) {
+                res[i] = buffers.decodeExtent(i);
+            }
+            return res;
+        }
     }
 
     @Override
@@ -215,7 +475,7 @@ public class FileStorageImpl implements FileStorage {
         CfsLibrary.StatInfo stat = new CfsLibrary.StatInfo();
         stat.mode = mode;
         int valid = ATTR_MODE;
-        int st = cfsLib.cfs_setattr_by_path(this.clientID, path, stat, valid);
+        int st = setAttr(path, stat, valid);
         if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK) {
             throw new CfsException("Failed to chmod: " + path + " status code: " + st);
         }
@@ -223,15 +483,12 @@ public class FileStorageImpl implements FileStorage {
 
     @Override
     public void chown (String path,int uid, int gid) throws CfsException {
-        System.out.println("path:"+path);
-        System.out.println("uid:"+uid);
-        System.out.println("gid:"+gid);
         verifyPath(path);
         CfsLibrary.StatInfo stat = new CfsLibrary.StatInfo();
         stat.uid = uid;
         stat.gid = gid;
         int valid = ATTR_GID | ATTR_UID;
-        int st = cfsLib.cfs_setattr_by_path(this.clientID, path, stat, valid);
+        int st = setAttr(path, stat, valid);
         if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK) {
             throw new CfsException("Failed to chown: " + path + " status code: " + st);
         }
@@ -261,7 +518,7 @@ public class FileStorageImpl implements FileStorage {
             stat.atime_nsec = (int) (atime % timeFactor);
             valid = valid | ATTR_ATIME;
         }
-        int st = cfsLib.cfs_setattr_by_path(this.clientID, path, stat, valid);
+        int st = setAttr(path, stat, valid);
         if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK) {
             throw new CfsException("Failed to settimes: " + path + " status code: " + st);
         }
@@ -292,9 +549,27 @@ public class FileStorageImpl implements FileStorage {
         return owner.getGroup(gid);
     }
 
-    private void setAttr (String path,int mode, int uid, int gid, long mtime, long atime)
-            throws CfsException {
-        throw new CfsException("Not implement setAttr.");
+    private int setAttr(final String path, final CfsLibrary.StatInfo stat, final int valid) throws CfsException {
+        final CfsClientPool.Client client = clients.pick(path);
+        return (int) call(client, CfsCallScheduler.Lane.METADATA, CfsCallMetrics.Op.SETATTR, path, -1,
+                new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                long ino = cachedIno(path);
+                if (ino > 0) {
+                    try {
+                        int st = cfsLib.cfs_setattr_by_inode(client.getId(), ino, stat, valid);
+                        if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_FILIE_NOT_FOUND) {
+                            return st;
+                        }
+                        inodeCache.invalidate(path);
+                    } catch (UnsatisfiedLinkError e) {
+                        disableInodeOps(e);
+                    }
+                }
+                return cfsLib.cfs_setattr_by_path(client.getId(), path, stat, valid);
+            }
+        });
     }
 
     @Override
@@ -310,108 +585,231 @@ public class FileStorageImpl implements FileStorage {
 
 
     public long size(int fd) throws CfsException {
-        long size = cfsLib.cfs_file_size(this.clientID, fd);
+        return size(clients.clientOf(fd), clients.fdOf(fd));
+    }
+
+    private long size(final CfsClientPool.Client client, final int fd) throws CfsException {
+        long size = call(client, CfsCallScheduler.Lane.METADATA, CfsCallMetrics.Op.FILE_SIZE, null, fd,
+                new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                return cfsLib.cfs_file_size(client.getId(), fd);
+            }
+        });
         if (size < 0) {
             throw new CfsException("Failed to get size of file:" + fd + " status code: " + size);
         }
         return size;
     }
 
-    //this open return a int
+    //this open return a int, valid for size(int) and close(int) only
     public int open1(String path, int flags, int mode, int uid, int gid) throws CfsException {
-        verifyPath(path);
+        CfsClientPool.Client client = clients.pick(path);
+        int fd = open1(client, path, flags, mode, uid, gid);
+        try {
+            return clients.toHandle(client, fd);
+        } catch (IllegalArgumentException e) {
+            close(client, fd);
+            throw new CfsException(e.getMessage());
+        }
+    }
 
-        int st = cfsLib.cfs_open(this.clientID, path, flags, mode, uid, gid);
+    int open1(final CfsClientPool.Client client, final String path, final int flags, final int mode,
+              final int uid, final int gid) throws CfsException {
+        verifyPath(path);
+        int st = (int) call(client, CfsCallScheduler.Lane.METADATA, CfsCallMetrics.Op.OPEN, path, -1,
+                new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                return open(client.getId(), path, flags, mode, uid, gid);
+            }
+        });
         if (st < 0) {
             throw new CfsException("Failed to open:" + path + " status code: " + st);
         }
+        return st;
+    }
 
+    private int open(long cid, String path, int flags, int mode, int uid, int gid) {
+        int st = CFS_NO_INODE;
+        long ino = (flags & O_CREAT) == 0 ? cachedIno(path) : 0L;
+        if (ino > 0) {
+            try {
+                st = cfsLib.cfs_open_by_inode(cid, ino, flags, mode, uid, gid);
+                if (StatusCodes.get(st) == StatusCodes.CFS_STATUS_FILIE_NOT_FOUND) {
+                    inodeCache.invalidate(path);
+                    st = CFS_NO_INODE;
+                }
+            } catch (UnsatisfiedLinkError e) {
+                disableInodeOps(e);
+                st = CFS_NO_INODE;
+            }
+        }
+        if (st == CFS_NO_INODE) {
+            st = cfsLib.cfs_open(cid, path, flags, mode, uid, gid);
+        }
         return st;
     }
 
     //get attr
-    public CfsLibrary.StatInfo getAttr(String path) throws CfsException {
+    private boolean getAttr(final String path, final Pointer info) throws CfsException {
         verifyPath(path);
-        CfsLibrary.StatInfo.ByReference info = new CfsLibrary.StatInfo.ByReference();
-        int st = cfsLib.cfs_getattr(this.clientID, path, info);
+        final CfsClientPool.Client client = clients.pick(path);
+        int st = (int) call(client, CfsCallScheduler.Lane.METADATA, CfsCallMetrics.Op.GETATTR, path, -1,
+                new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                return getAttr(client.getId(), path, info);
+            }
+        });
         if (StatusCodes.get(st) == StatusCodes.CFS_STATUS_FILIE_NOT_FOUND) {
-            log.info("Not found the path: " + path + " error code: " + st);
-            return null;
+            if (log.isDebugEnabled()) {
+                log.debug("Not found the path: " + path + " error code: " + st);
+            }
+            return false;
         }
         if (StatusCodes.get(st) != StatusCodes.CFS_STATUS_OK) {
             log.error("Not stat the path: " + path + " error code: " + st);
             throw new CfsException("Failed to stat.");
         }
-        return info;
+        return true;
+    }
+
+    private int getAttr(long cid, String path, Pointer info) {
+        int st = CFS_NO_INODE;
+        long ino = cachedIno(path);
+        if (ino > 0) {
+            try {
+                st = cfsLib.cfs_getattr_by_inode(cid, ino, info);
+                if (StatusCodes.get(st) == StatusCodes.CFS_STATUS_FILIE_NOT_FOUND) {
+                    inodeCache.invalidate(path);
+                    st = CFS_NO_INODE;
+                }
+            } catch (UnsatisfiedLinkError e) {
+                disableInodeOps(e);
+                st = CFS_NO_INODE;
+            }
+        }
+        if (st == CFS_NO_INODE) {
+            st = cfsLib.cfs_getattr(cid, path, info);
+        }
+        return st;
+    }
+
+    private long cachedIno(String path) {
+        if (inodeCache == null || !inodeOps) {
+            return 0L;
+        }
+        return inodeCache.get(path);
+    }
+
+    private void invalidate(String path) {
+        if (inodeCache != null) {
+            inodeCache.invalidate(path);
+        }
+    }
+
+    private void disableInodeOps(UnsatisfiedLinkError e) {
+        if (inodeOps) {
+            inodeOps = false;
+            inodeCache.clear();
+            log.warn("The libsdk does not export the inode operations, use the path operations only: " + e.getMessage());
+        }
     }
 
     //verify path
     private void verifyPath(String path) throws CfsException {
-        if (path == null || path.trim().length() == 0) {
+        if (path == null || path.isEmpty()) {
             throw new CfsNullArgumentException("path is invlaid.");
         }
 
-        if (path.startsWith("/") == false) {
+        if (path.charAt(0) != '/') {
             throw new CfsInvalidArgumentException(path);
         }
     }
 
-    public int list(int fd, ArrayList<CfsStatInfo> fileStats) throws CfsException, UnsupportedEncodingException {
-        CfsLibrary.Dirent dent = new CfsLibrary.Dirent();
-        CfsLibrary.Dirent[] dents = (CfsLibrary.Dirent[]) dent.toArray(batchSize);
-
-        Pointer arr = dents[0].getPointer();
-        CfsLibrary.DirentArray.ByValue slice = new CfsLibrary.DirentArray.ByValue();
-        slice.data = arr;
-        slice.len = batchSize;
-        slice.cap = batchSize;
-
-        int count = cfsLib.cfs_readdir(this.clientID, fd, slice, batchSize);
-        if (StatusCodes.get(count) == StatusCodes.CFS_STATUS_FILIE_NOT_FOUND) {
+    DirentBatch readdir(final CfsClientPool.Client client, final int fd, final int count) throws CfsException {
+        CfsNativeBuffers buffers = CfsNativeBuffers.get();
+        final CfsLibrary.DirentArray.ByValue slice = buffers.direntSlice(count);
+        int num = (int) call(client, CfsCallScheduler.Lane.DATA, CfsCallMetrics.Op.READDIR, null, fd,
+                new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                return cfsLib.cfs_readdir(client.getId(), fd, slice, count);
+            }
+        });
+        if (StatusCodes.get(num) == StatusCodes.CFS_STATUS_FILIE_NOT_FOUND) {
             throw new CfsFileNotFoundException("Not found " + fd);
         }
-        if (count < 0) {
-            throw new CfsException("Failed to count dir:" + fd + " status code: " + count);
-        }
-
-        if (count == 0) {
-            return count;
+        if (num < 0) {
+            throw new CfsException("Failed to count dir:" + fd + " status code: " + num);
         }
 
-        long[] iids = new long[count];
-        Map<Long, String> names = new HashMap<Long, String>(count);
-        for (int i = 0; i < count; i++) {
-            dents[i].read();
-            iids[i] = dents[i].ino;
-            names.put(dents[i].ino, new String(dents[i].name, 0, dents[i].nameLen, "utf-8"));
+        if (num == 0) {
+            return DirentBatch.empty();
         }
+        return buffers.decodeDirents(num);
+    }
 
-        CfsLibrary.StatInfo stat = new CfsLibrary.StatInfo();
-        CfsLibrary.StatInfo[] stats = (CfsLibrary.StatInfo[]) stat.toArray(count);
-        Pointer statsPtr = stats[0].getPointer();
-        CfsLibrary.DirentArray.ByValue statSlice = new CfsLibrary.DirentArray.ByValue();
-        statSlice.data = statsPtr;
-        statSlice.len = batchSize;
-        statSlice.cap = batchSize;
-        int num = cfsLib.cfs_batch_get_inodes(this.clientID, fd, iids, statSlice, count);
+    CfsListing getInodes(final CfsClientPool.Client client, final int fd, DirentBatch dents, int from, int to)
+            throws CfsException {
+        final int count = to - from;
+        final long[] iids = Arrays.copyOfRange(dents.inos, from, to);
+        CfsNativeBuffers buffers = CfsNativeBuffers.get();
+        final CfsLibrary.DirentArray.ByValue slice = buffers.statSlice(count);
+        int num = (int) call(client, CfsCallScheduler.Lane.DATA, CfsCallMetrics.Op.BATCH_GET_INODES, null, fd,
+                new CfsNativeExecutor.NativeCall() {
+            @Override
+            public long call() {
+                return cfsLib.cfs_batch_get_inodes(client.getId(), fd, iids, slice, count);
+            }
+        });
         if (num < 0) {
             throw new CfsException("Failed to get inodes,  the fd:" + fd + " status code: " + num);
         }
 
+        CfsListing listing = new CfsListing(num);
+        int hint = from;
         for (int i = 0; i < num; i++) {
-            stats[i].read();
-            CfsLibrary.StatInfo in = stats[i];
-            try {
-                CfsStatInfo info = new CfsStatInfo(
-                        in.mode, in.uid, in.gid, in.size,
-                        in.ctime, in.mtime, in.atime, names.get(in.ino));
-                fileStats.add(info);
-
-            } catch (Exception e) {
-                log.error(e.getMessage(), e);
+            long ino = buffers.statIno(i);
+            int idx = dents.indexOf(ino, hint, from, to);
+            if (idx < 0) {
+                log.warn("Not found the dirent of inode:" + ino + " fd:" + fd);
+                continue;
             }
+            hint = idx + 1;
+            buffers.decodeStat(i, listing, dents.names, dents.nameOffsets[idx], dents.nameLens[idx]);
         }
 
-        return num;
+        return listing;
+    }
+
+    CfsClientPool.Client pickClient(String path) {
+        return clients.pick(path);
+    }
+
+    CfsListPipeline newListPipeline(CfsClientPool.Client client, int fd) {
+        return new CfsListPipeline(this, listExecutor, client, fd, config.getListBatchSize(),
+                config.getListBatchMax(), config.getListInodeBatchSize(), config.getListBatchTargetMs());
+    }
+
+    private static ExecutorService newListExecutor(int threads) {
+        if (threads <= 0) {
+            return null;
+        }
+        // a full queue rejects, and CfsListPipeline fetches the inodes itself
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * LIST_QUEUE_PER_THREAD), new ThreadFactory() {
+            private final AtomicInteger seq = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "cfs-list-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
     }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.statistics;
+
+import java.util.Map;
+
+/*
+ * The statistics of a CfsIOStatisticsSource, shaped after the IOStatistics
+ * of Hadoop 3.3.1 which the Hadoop 3.3.0 we build against does not have.
+ * The keys follow the Hadoop statistic names, the durations are in
+ * milliseconds and the means are plain values rather than MeanStatistic.
+ * The maps are snapshots, sorted by key.
+ */
+public interface CfsIOStatistics {
+    Map<String, Long> counters();
+
+    Map<String, Long> minimums();
+
+    Map<String, Long> maximums();
+
+    Map<String, Double> meanStatistics();
+}
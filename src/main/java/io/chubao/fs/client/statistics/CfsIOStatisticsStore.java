@@ -0,0 +1,169 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.statistics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.chubao.fs.client.statistics.CfsStatisticNames.SUFFIX_FAILURES;
+import static io.chubao.fs.client.statistics.CfsStatisticNames.SUFFIX_MAX;
+import static io.chubao.fs.client.statistics.CfsStatisticNames.SUFFIX_MEAN;
+import static io.chubao.fs.client.statistics.CfsStatisticNames.SUFFIX_MIN;
+
+/*
+ * Thread safe CfsIOStatistics that the streams and the file system update.
+ * Counters and durations are created on first use, updates are lock free.
+ * A stream aggregates its store into the one of its file system on close.
+ */
+public class CfsIOStatisticsStore implements CfsIOStatistics {
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Duration> durations = new ConcurrentHashMap<>();
+
+    private static final class Duration {
+        final LongAdder nanos = new LongAdder();
+        final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        final AtomicLong max = new AtomicLong(0L);
+
+        void add(long sum, long lo, long hi) {
+            nanos.add(sum);
+            long m = min.get();
+            while (lo < m && !min.compareAndSet(m, lo)) {
+                m = min.get();
+            }
+            m = max.get();
+            while (hi > m && !max.compareAndSet(m, hi)) {
+                m = max.get();
+            }
+        }
+    }
+
+    public void incrementCounter(String key) {
+        incrementCounter(key, 1L);
+    }
+
+    public void incrementCounter(String key, long value) {
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            LongAdder created = new LongAdder();
+            counter = counters.putIfAbsent(key, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.add(value);
+    }
+
+    /*
+     * Records an operation started at startNanos, System.nanoTime(). A failed
+     * one is only counted under key plus SUFFIX_FAILURES.
+     */
+    public void addDuration(String key, long startNanos, boolean failed) {
+        if (failed) {
+            incrementCounter(key + SUFFIX_FAILURES);
+            return;
+        }
+        long nanos = Math.max(0L, System.nanoTime() - startNanos);
+        incrementCounter(key);
+        duration(key).add(nanos, nanos, nanos);
+    }
+
+    public long getCounter(String key) {
+        LongAdder counter = counters.get(key);
+        return counter == null ? 0L : counter.sum();
+    }
+
+    /*
+     * Adds the counters and durations of other into this store.
+     */
+    public void aggregate(CfsIOStatisticsStore other) {
+        for (Map.Entry<String, LongAdder> e : other.counters.entrySet()) {
+            long value = e.getValue().sum();
+            if (value != 0L) {
+                incrementCounter(e.getKey(), value);
+            }
+        }
+        for (Map.Entry<String, Duration> e : other.durations.entrySet()) {
+            Duration d = e.getValue();
+            if (d.max.get() == 0L && d.min.get() == Long.MAX_VALUE) {
+                continue;
+            }
+            duration(e.getKey()).add(d.nanos.sum(), d.min.get(), d.max.get());
+        }
+    }
+
+    @Override
+    public Map<String, Long> counters() {
+        Map<String, Long> res = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> e : counters.entrySet()) {
+            res.put(e.getKey(), e.getValue().sum());
+        }
+        return res;
+    }
+
+    @Override
+    public Map<String, Long> minimums() {
+        Map<String, Long> res = new TreeMap<>();
+        for (Map.Entry<String, Duration> e : durations.entrySet()) {
+            long min = e.getValue().min.get();
+            if (min != Long.MAX_VALUE) {
+                res.put(e.getKey() + SUFFIX_MIN, TimeUnit.NANOSECONDS.toMillis(min));
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public Map<String, Long> maximums() {
+        Map<String, Long> res = new TreeMap<>();
+        for (Map.Entry<String, Duration> e : durations.entrySet()) {
+            res.put(e.getKey() + SUFFIX_MAX, TimeUnit.NANOSECONDS.toMillis(e.getValue().max.get()));
+        }
+        return res;
+    }
+
+    @Override
+    public Map<String, Double> meanStatistics() {
+        Map<String, Double> res = new TreeMap<>();
+        for (Map.Entry<String, Duration> e : durations.entrySet()) {
+            long samples = getCounter(e.getKey());
+            if (samples > 0L) {
+                res.put(e.getKey() + SUFFIX_MEAN, e.getValue().nanos.sum() / 1e6 / samples);
+            }
+        }
+        return res;
+    }
+
+    private Duration duration(String key) {
+        Duration d = durations.get(key);
+        if (d == null) {
+            Duration created = new Duration();
+            d = durations.putIfAbsent(key, created);
+            if (d == null) {
+                d = created;
+            }
+        }
+        return d;
+    }
+
+    @Override
+    public String toString() {
+        return "counters=" + counters() + "; minimums=" + minimums() + "; maximums=" + maximums()
+                + "; means=" + meanStatistics();
+    }
+}
@@ -0,0 +1,65 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.statistics;
+
+/*
+ * Statistic names, the same strings as Hadoop's StreamStatisticNames and
+ * StoreStatisticNames where those define one. A duration key counts the
+ * successful operations, its failures go to the key plus SUFFIX_FAILURES.
+ */
+public final class CfsStatisticNames {
+    public static final String STREAM_READ_BYTES = "stream_read_bytes";
+    // a duration
+    public static final String STREAM_READ_OPERATIONS = "stream_read_operations";
+    // reads that returned fewer bytes than asked for
+    public static final String STREAM_READ_OPERATIONS_INCOMPLETE = "stream_read_operations_incomplete";
+    public static final String STREAM_READ_EXCEPTIONS = "stream_read_exceptions";
+    public static final String STREAM_READ_SEEK_OPERATIONS = "stream_read_seek_operations";
+    public static final String STREAM_READ_SEEK_FORWARD_OPERATIONS = "stream_read_seek_forward_operations";
+    public static final String STREAM_READ_SEEK_BACKWARD_OPERATIONS = "stream_read_seek_backward_operations";
+    public static final String STREAM_READ_SEEK_BYTES_SKIPPED = "stream_read_seek_bytes_skipped";
+    public static final String STREAM_READ_SEEK_BYTES_BACKWARDS = "stream_read_seek_bytes_backwards";
+    public static final String STREAM_READ_CLOSE_OPERATIONS = "stream_read_close_operations";
+
+    public static final String STREAM_WRITE_BYTES = "stream_write_bytes";
+    // a duration
+    public static final String STREAM_WRITE_OPERATIONS = "stream_write_operations";
+    public static final String STREAM_WRITE_EXCEPTIONS = "stream_write_exceptions";
+    // a duration
+    public static final String OP_HFLUSH = "op_hflush";
+
+    // durations of the file system operations
+    public static final String OP_OPEN = "op_open";
+    public static final String OP_CREATE = "op_create";
+    public static final String OP_CREATE_NON_RECURSIVE = "op_create_non_recursive";
+    public static final String OP_APPEND = "op_append";
+    public static final String OP_GET_FILE_STATUS = "op_get_file_status";
+    public static final String OP_LIST_STATUS = "op_list_status";
+    public static final String OP_RENAME = "op_rename";
+    public static final String OP_DELETE = "op_delete";
+    public static final String OP_MKDIRS = "op_mkdirs";
+    public static final String OP_SET_TIMES = "op_set_times";
+
+    // libsdk calls of the directory listings
+    public static final String NATIVE_READDIR_BATCHES = "native_readdir_batches";
+    public static final String NATIVE_BATCH_GET_INODES = "native_batch_get_inodes";
+
+    public static final String SUFFIX_MIN = ".min";
+    public static final String SUFFIX_MAX = ".max";
+    public static final String SUFFIX_MEAN = ".mean";
+    public static final String SUFFIX_FAILURES = ".failures";
+
+    private CfsStatisticNames() {
+    }
+}
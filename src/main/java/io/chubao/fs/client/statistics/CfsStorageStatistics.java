@@ -0,0 +1,135 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.statistics;
+
+import io.chubao.fs.client.sdk.client.CfsCallMetrics;
+import org.apache.hadoop.fs.StorageStatistics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Per-operation counts of the ChubaoFileSystem instances of the process,
+ * shared through GlobalStorageStatistics under NAME. The counters are
+ * LongAdders, striped so that concurrent tasks do not contend on them. The
+ * native listing calls are read from CfsCallMetrics, reset only moves their
+ * baseline.
+ */
+public class CfsStorageStatistics extends StorageStatistics {
+    public static final String NAME = "ChubaoFileSystemStorageStatistics";
+    private static final Statistic[] STATISTICS = Statistic.values();
+    private static final Map<String, Statistic> BY_SYMBOL = new HashMap<>();
+
+    static {
+        for (Statistic s : STATISTICS) {
+            BY_SYMBOL.put(s.getSymbol(), s);
+        }
+    }
+
+    public enum Statistic {
+        OP_OPEN(CfsStatisticNames.OP_OPEN),
+        OP_CREATE(CfsStatisticNames.OP_CREATE),
+        OP_CREATE_NON_RECURSIVE(CfsStatisticNames.OP_CREATE_NON_RECURSIVE),
+        OP_APPEND(CfsStatisticNames.OP_APPEND),
+        OP_GET_FILE_STATUS(CfsStatisticNames.OP_GET_FILE_STATUS),
+        OP_LIST_STATUS(CfsStatisticNames.OP_LIST_STATUS),
+        OP_RENAME(CfsStatisticNames.OP_RENAME),
+        OP_DELETE(CfsStatisticNames.OP_DELETE),
+        OP_MKDIRS(CfsStatisticNames.OP_MKDIRS),
+        OP_SET_TIMES(CfsStatisticNames.OP_SET_TIMES),
+        NATIVE_READDIR_BATCHES(CfsStatisticNames.NATIVE_READDIR_BATCHES, CfsCallMetrics.Op.READDIR),
+        NATIVE_BATCH_GET_INODES(CfsStatisticNames.NATIVE_BATCH_GET_INODES, CfsCallMetrics.Op.BATCH_GET_INODES);
+
+        private final String symbol;
+        // set when the count comes from the native call metrics
+        private final CfsCallMetrics.Op op;
+
+        Statistic(String symbol) {
+            this(symbol, null);
+        }
+
+        Statistic(String symbol, CfsCallMetrics.Op op) {
+            this.symbol = symbol;
+            this.op = op;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+    }
+
+    private final LongAdder[] counters = new LongAdder[STATISTICS.length];
+    // replaced as a whole by reset
+    private volatile long[] baselines = new long[STATISTICS.length];
+
+    public CfsStorageStatistics() {
+        super(NAME);
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    public void incrementCounter(Statistic stat) {
+        counters[stat.ordinal()].increment();
+    }
+
+    public long getLong(Statistic stat) {
+        if (stat.op != null) {
+            return CfsCallMetrics.getTotalCalls(stat.op) - baselines[stat.ordinal()];
+        }
+        return counters[stat.ordinal()].sum();
+    }
+
+    @Override
+    public String getScheme() {
+        return "cfs";
+    }
+
+    @Override
+    public Iterator<LongStatistic> getLongStatistics() {
+        List<LongStatistic> res = new ArrayList<>(STATISTICS.length);
+        for (Statistic s : STATISTICS) {
+            res.add(new LongStatistic(s.getSymbol(), getLong(s)));
+        }
+        return res.iterator();
+    }
+
+    @Override
+    public Long getLong(String key) {
+        Statistic stat = BY_SYMBOL.get(key);
+        return stat == null ? null : getLong(stat);
+    }
+
+    @Override
+    public boolean isTracked(String key) {
+        return BY_SYMBOL.containsKey(key);
+    }
+
+    @Override
+    public synchronized void reset() {
+        long[] res = new long[STATISTICS.length];
+        for (Statistic s : STATISTICS) {
+            if (s.op != null) {
+                res[s.ordinal()] = CfsCallMetrics.getTotalCalls(s.op);
+            } else {
+                counters[s.ordinal()].reset();
+            }
+        }
+        baselines = res;
+    }
+}
@@ -4,6 +4,12 @@ import com.google.common.base.Preconditions;
 import io.chubao.fs.client.sdk.client.CfsFile;
 import io.chubao.fs.client.sdk.exception.CfsEOFException;
 import io.chubao.fs.client.sdk.exception.CfsException;
+import io.chubao.fs.client.statistics.CfsIOStatistics;
+import io.chubao.fs.client.statistics.CfsIOStatisticsSource;
+import io.chubao.fs.client.statistics.CfsIOStatisticsStore;
+import io.chubao.fs.client.trace.CfsFlightEvents;
+import io.chubao.fs.client.trace.CfsTracer;
+import io.chubao.fs.client.util.IOExceptionHelper;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.*;
@@ -17,14 +23,49 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.EnumSet;
 
+import static io.chubao.fs.client.statistics.CfsStatisticNames.*;
+
 @Public
 @Evolving
-public class CfsDataInputStream extends InputStream  implements ByteBufferReadable,HasEnhancedByteBufferAccess,CanUnbuffer,Seekable, PositionedReadable{
+public class CfsDataInputStream extends InputStream  implements ByteBufferReadable,HasEnhancedByteBufferAccess,CanUnbuffer,Seekable, PositionedReadable,
+        CfsIOStatisticsSource {
     private static final Log log=LogFactory.getLog(CfsDataInputStream.class);
     private CfsFile cFile;
+    private final FileSystem.Statistics statistics;
+    private final CfsIOStatisticsStore ioStatistics = new CfsIOStatisticsStore();
+    // the store of the file system, takes the statistics of the stream on close
+    private final CfsIOStatisticsStore fsIOStatistics;
+    private boolean aggregated = false;
+    private final CfsTracer tracer;
+    private final Path path;
 
     public CfsDataInputStream(CfsFile cFile){
-        this.cFile=cFile;
+        this(cFile, null);
+    }
+
+    public CfsDataInputStream(CfsFile cFile, FileSystem.Statistics statistics) {
+        this(cFile, statistics, null);
+    }
+
+    public CfsDataInputStream(CfsFile cFile, FileSystem.Statistics statistics, CfsIOStatisticsStore fsIOStatistics) {
+        this(cFile, statistics, fsIOStatistics, CfsTracer.DISABLED, null);
+    }
+
+    public CfsDataInputStream(CfsFile cFile, FileSystem.Statistics statistics, CfsIOStatisticsStore fsIOStatistics,
+                              CfsTracer tracer, Path path) {
+        this.cFile = cFile;
+        this.statistics = statistics;
+        this.fsIOStatistics = fsIOStatistics;
+        this.tracer = tracer;
+        this.path = path;
+        if (CfsFlightEvents.isStreamEnabled()) {
+            CfsFlightEvents.stream(CfsFlightEvents.OPEN, path, cFile.getPosition(), cFile.getFileSize());
+        }
+    }
+
+    @Override
+    public CfsIOStatistics getIOStatistics() {
+        return ioStatistics;
     }
 
     @Override
@@ -49,10 +90,20 @@ public class CfsDataInputStream extends InputStream  implements ByteBufferReadab
             throw new EOFException("The pos: " + pos + " is more than file size: " + cFile.getFileSize());
         }
 
+        long diff = pos - cFile.getPosition();
+        ioStatistics.incrementCounter(STREAM_READ_SEEK_OPERATIONS);
+        if (diff > 0) {
+            ioStatistics.incrementCounter(STREAM_READ_SEEK_FORWARD_OPERATIONS);
+            ioStatistics.incrementCounter(STREAM_READ_SEEK_BYTES_SKIPPED, diff);
+        } else if (diff < 0) {
+            ioStatistics.incrementCounter(STREAM_READ_SEEK_BACKWARD_OPERATIONS);
+            ioStatistics.incrementCounter(STREAM_READ_SEEK_BYTES_BACKWARDS, -diff);
+        }
+        CfsFlightEvents.stream(CfsFlightEvents.SEEK, path, pos, diff);
         try {
             cFile.seek(pos);
         } catch (CfsException ex) {
-            throw new IOException();
+            throw IOExceptionHelper.wrap(ex);
         }
     }
 
@@ -70,7 +121,7 @@ public class CfsDataInputStream extends InputStream  implements ByteBufferReadab
     }
 
     @Override
-    public synchronized int read(final byte buf[], int off, int len) throws IOException {
+    public int read(final byte buf[], int off, int len) throws IOException {
         if (buf == null) {
             throw new NullPointerException();
         } else if (off < 0 || len < 0 || len > buf.length - off) {
@@ -79,13 +130,31 @@ public class CfsDataInputStream extends InputStream  implements ByteBufferReadab
             return 0;
         }
         long size =0;
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.startStream(STREAM_READ_OPERATIONS, path);
         try {
             size = (int)cFile.read(buf, off, len);
+            ioStatistics.addDuration(STREAM_READ_OPERATIONS, start, false);
+            tracer.end(span, Math.max(0L, size), false);
+            if (size > 0) {
+                ioStatistics.incrementCounter(STREAM_READ_BYTES, size);
+                if (statistics != null) {
+                    statistics.incrementBytesRead(size);
+                }
+            }
+            if (size < len) {
+                ioStatistics.incrementCounter(STREAM_READ_OPERATIONS_INCOMPLETE);
+            }
             return (int) size;
         } catch (CfsEOFException e) {
+           ioStatistics.addDuration(STREAM_READ_OPERATIONS, start, false);
+           tracer.end(span, 0L, false);
            return -1;
         } catch (CfsException ex) {
-            throw new IOException();
+            ioStatistics.addDuration(STREAM_READ_OPERATIONS, start, true);
+            tracer.end(span, 0L, true);
+            ioStatistics.incrementCounter(STREAM_READ_EXCEPTIONS);
+            throw IOExceptionHelper.wrap(ex);
         }
     }
 
@@ -118,10 +187,21 @@ public class CfsDataInputStream extends InputStream  implements ByteBufferReadab
 
     @Override
     public void close() throws IOException {
+        Object event = aggregated ? null : CfsFlightEvents.beginStream();
         try {
             cFile.close();
         } catch (CfsException ex) {
-            throw new IOException();
+            throw IOExceptionHelper.wrap(ex);
+        } finally {
+            if (!aggregated) {
+                aggregated = true;
+                ioStatistics.incrementCounter(STREAM_READ_CLOSE_OPERATIONS);
+                if (fsIOStatistics != null) {
+                    fsIOStatistics.aggregate(ioStatistics);
+                }
+                CfsFlightEvents.commitStream(event, CfsFlightEvents.CLOSE, path, cFile.getPosition(),
+                        ioStatistics.getCounter(STREAM_READ_BYTES));
+            }
         }
     }
 
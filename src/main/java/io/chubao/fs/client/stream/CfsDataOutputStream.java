@@ -2,42 +2,100 @@ package io.chubao.fs.client.stream;
 
 import io.chubao.fs.client.sdk.client.CfsFile;
 import io.chubao.fs.client.sdk.exception.CfsException;
+import io.chubao.fs.client.statistics.CfsIOStatistics;
+import io.chubao.fs.client.statistics.CfsIOStatisticsSource;
+import io.chubao.fs.client.statistics.CfsIOStatisticsStore;
+import io.chubao.fs.client.trace.CfsFlightEvents;
+import io.chubao.fs.client.trace.CfsTracer;
+import org.apache.hadoop.fs.Path;
+import io.chubao.fs.client.util.IOExceptionHelper;
 
 import java.io.IOException;
 import java.io.OutputStream;
 
-public class CfsDataOutputStream extends OutputStream {
+import static io.chubao.fs.client.statistics.CfsStatisticNames.*;
+
+public class CfsDataOutputStream extends OutputStream implements CfsIOStatisticsSource {
     private CfsFile cFile;
+    private final CfsIOStatisticsStore ioStatistics = new CfsIOStatisticsStore();
+    // the store of the file system, takes the statistics of the stream on close
+    private final CfsIOStatisticsStore fsIOStatistics;
+    private boolean aggregated = false;
+    private final CfsTracer tracer;
+    private final Path path;
 
     public CfsDataOutputStream(CfsFile file){
-        this.cFile=file;
+        this(file, null);
+    }
+
+    public CfsDataOutputStream(CfsFile file, CfsIOStatisticsStore fsIOStatistics) {
+        this(file, fsIOStatistics, CfsTracer.DISABLED, null);
+    }
+
+    public CfsDataOutputStream(CfsFile file, CfsIOStatisticsStore fsIOStatistics, CfsTracer tracer, Path path) {
+        this.cFile = file;
+        this.fsIOStatistics = fsIOStatistics;
+        this.tracer = tracer;
+        this.path = path;
+        if (CfsFlightEvents.isStreamEnabled()) {
+            CfsFlightEvents.stream(CfsFlightEvents.OPEN, path, file.getPosition(), file.getFileSize());
+        }
+    }
+
+    @Override
+    public CfsIOStatistics getIOStatistics() {
+        return ioStatistics;
     }
 
     @Override
     public void close() throws IOException {
+        Object event = aggregated ? null : CfsFlightEvents.beginStream();
         try {
             cFile.close();
             super.close();
         } catch (CfsException ex) {
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
+        } finally {
+            if (!aggregated) {
+                aggregated = true;
+                if (fsIOStatistics != null) {
+                    fsIOStatistics.aggregate(ioStatistics);
+                }
+                CfsFlightEvents.commitStream(event, CfsFlightEvents.CLOSE, path, cFile.getPosition(),
+                        ioStatistics.getCounter(STREAM_WRITE_BYTES));
+            }
         }
     }
 
     @Override
     public void flush() throws IOException {
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.start(OP_HFLUSH, path);
         try {
             cFile.flush();
+            ioStatistics.addDuration(OP_HFLUSH, start, false);
+            tracer.end(span, 0L, false);
         } catch (CfsException ex) {
-            throw new IOException(ex);
+            ioStatistics.addDuration(OP_HFLUSH, start, true);
+            tracer.end(span, 0L, true);
+            throw IOExceptionHelper.wrap(ex);
         }
     }
 
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.startStream(STREAM_WRITE_OPERATIONS, path);
         try {
             cFile.write(b, off, len);
+            ioStatistics.addDuration(STREAM_WRITE_OPERATIONS, start, false);
+            ioStatistics.incrementCounter(STREAM_WRITE_BYTES, len);
+            tracer.end(span, len, false);
         } catch (CfsException ex) {
-            throw new IOException(ex);
+            ioStatistics.addDuration(STREAM_WRITE_OPERATIONS, start, true);
+            tracer.end(span, 0L, true);
+            ioStatistics.incrementCounter(STREAM_WRITE_EXCEPTIONS);
+            throw IOExceptionHelper.wrap(ex);
         }
     }
 
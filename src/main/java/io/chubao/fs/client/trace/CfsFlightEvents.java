@@ -0,0 +1,290 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.trace;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Java Flight Recorder events of the native calls and of the stream life
+ * cycle. The client is built for Java 8, so the event types are defined at
+ * run time through jdk.jfr.EventFactory, and every method is a no-op on a
+ * JVM without jdk.jfr.
+ *
+ * Both events are disabled by default and are turned on in the recording
+ * settings, e.g. io.chubao.cfs.NativeCall#enabled=true in a .jfc file. A
+ * flag refreshed whenever a recording changes state tells whether an event
+ * is enabled, so a disabled event costs a volatile read and allocates
+ * nothing: begin returns null and commit ignores it.
+ *
+ * A native call event lasts from the admission of the call to its result.
+ * nativeTime is spent inside the CfsLibrary method, which includes the JNA
+ * argument marshalling and libsdk itself, dispatchTime is the rest: the lane
+ * queue and the hand off to the native executor.
+ */
+public final class CfsFlightEvents {
+    private static final Log log = LogFactory.getLog(CfsFlightEvents.class);
+
+    public static final String NATIVE_CALL = "io.chubao.cfs.NativeCall";
+    public static final String STREAM = "io.chubao.cfs.Stream";
+
+    // the stream actions
+    public static final String OPEN = "open";
+    public static final String SEEK = "seek";
+    public static final String CLOSE = "close";
+
+    private static final EventType nativeCall;
+    private static final EventType stream;
+
+    static {
+        EventType nc = null;
+        EventType st = null;
+        try {
+            Reflection r = new Reflection();
+            nc = new EventType(r, r.create(NATIVE_CALL, "CFS Native Call", "A call of the client into libsdk",
+                    r.field(String.class, "operation", "Operation", null),
+                    r.field(String.class, "path", "Path", null),
+                    r.field(int.class, "fd", "File Descriptor", null),
+                    r.field(long.class, "bytes", "Bytes", r.bytes),
+                    r.field(boolean.class, "failed", "Failed", null),
+                    r.field(long.class, "dispatchTime", "Dispatch Time", r.nanos),
+                    r.field(long.class, "nativeTime", "Native Time", r.nanos)));
+            st = new EventType(r, r.create(STREAM, "CFS Stream", "Open, seek or close of a CFS stream",
+                    r.field(String.class, "action", "Action", null),
+                    r.field(String.class, "path", "Path", null),
+                    r.field(long.class, "position", "Position", r.bytes),
+                    r.field(long.class, "bytes", "Bytes", r.bytes)));
+            r.listen(nc, st);
+        } catch (ClassNotFoundException e) {
+            log.debug("jdk.jfr is not available, the flight recorder events are disabled.");
+            nc = null;
+            st = null;
+        } catch (Throwable e) {
+            log.warn("Failed to define the flight recorder events.", e);
+            nc = null;
+            st = null;
+        }
+        nativeCall = nc;
+        stream = st;
+    }
+
+    private CfsFlightEvents() {
+    }
+
+    public static boolean isNativeCallEnabled() {
+        return nativeCall != null && nativeCall.enabled;
+    }
+
+    public static boolean isStreamEnabled() {
+        return stream != null && stream.enabled;
+    }
+
+    /*
+     * Returns null when the event is disabled.
+     */
+    public static Object beginNativeCall() {
+        return isNativeCallEnabled() ? nativeCall.begin() : null;
+    }
+
+    public static void commitNativeCall(Object event, String operation, String path, int fd, long bytes,
+                                        boolean failed, long nativeNanos) {
+        if (event == null) {
+            return;
+        }
+        nativeCall.end(event);
+        long dispatchNanos = Math.max(0L, nativeCall.elapsed(event) - nativeNanos);
+        nativeCall.commit(event, operation, path, fd, bytes, failed, dispatchNanos, nativeNanos);
+    }
+
+    public static Object beginStream() {
+        return isStreamEnabled() ? stream.begin() : null;
+    }
+
+    public static void commitStream(Object event, String action, Object path, long position, long bytes) {
+        if (event == null) {
+            return;
+        }
+        stream.end(event);
+        stream.commit(event, action, path == null ? null : path.toString(), position, bytes);
+    }
+
+    /*
+     * An instantaneous stream event.
+     */
+    public static void stream(String action, Object path, long position, long bytes) {
+        commitStream(beginStream(), action, path, position, bytes);
+    }
+
+    private static final class EventType {
+        private final Reflection r;
+        private final Object factory;
+        private final Object type;
+        private volatile boolean enabled = false;
+
+        EventType(Reflection r, Object factory) throws Exception {
+            this.r = r;
+            this.factory = factory;
+            this.type = r.getEventType.invoke(factory);
+        }
+
+        void refresh() {
+            try {
+                enabled = (Boolean) r.isEnabled.invoke(type);
+            } catch (Exception e) {
+                enabled = false;
+            }
+        }
+
+        Object begin() {
+            try {
+                Object event = r.newEvent.invoke(factory);
+                r.begin.invoke(event);
+                return new Started(event);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        void end(Object started) {
+            Started s = (Started) started;
+            s.endNanos = System.nanoTime();
+            try {
+                r.end.invoke(s.event);
+            } catch (Exception e) {
+                log.debug("Failed to end a flight recorder event.", e);
+            }
+        }
+
+        long elapsed(Object started) {
+            Started s = (Started) started;
+            return s.endNanos - s.startNanos;
+        }
+
+        void commit(Object started, Object... values) {
+            Object event = ((Started) started).event;
+            try {
+                if (!(Boolean) r.shouldCommit.invoke(event)) {
+                    return;
+                }
+                for (int i = 0; i < values.length; i++) {
+                    r.set.invoke(event, i, values[i]);
+                }
+                r.commit.invoke(event);
+            } catch (Exception e) {
+                log.debug("Failed to commit a flight recorder event.", e);
+            }
+        }
+    }
+
+    // a begun jdk.jfr.Event, with the start time to split the duration
+    private static final class Started {
+        final Object event;
+        final long startNanos = System.nanoTime();
+        long endNanos;
+
+        Started(Object event) {
+            this.event = event;
+        }
+    }
+
+    /*
+     * The jdk.jfr API, looked up once.
+     */
+    private static final class Reflection {
+        final Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+        final Constructor<?> annotationWithValue = annotationElement.getConstructor(Class.class, Object.class);
+        final Constructor<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor")
+                .getConstructor(Class.class, String.class, List.class);
+        final Method create = Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class);
+        final Method newEvent = Class.forName("jdk.jfr.EventFactory").getMethod("newEvent");
+        final Method getEventType = Class.forName("jdk.jfr.EventFactory").getMethod("getEventType");
+        final Method isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+        final Class<?> event = Class.forName("jdk.jfr.Event");
+        final Method begin = event.getMethod("begin");
+        final Method end = event.getMethod("end");
+        final Method shouldCommit = event.getMethod("shouldCommit");
+        final Method commit = event.getMethod("commit");
+        final Method set = event.getMethod("set", int.class, Object.class);
+        final Object bytes = annotation("jdk.jfr.DataAmount", "BYTES");
+        final Object nanos = annotation("jdk.jfr.Timespan", "NANOSECONDS");
+
+        Reflection() throws Exception {
+        }
+
+        Object annotation(String name, Object value) throws Exception {
+            return annotationWithValue.newInstance(Class.forName(name), value);
+        }
+
+        Object field(Class<?> type, String name, String label, Object unit) throws Exception {
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(annotation("jdk.jfr.Label", label));
+            if (unit != null) {
+                annotations.add(unit);
+            }
+            return valueDescriptor.newInstance(type, name, annotations);
+        }
+
+        Object create(String name, String label, String description, Object... fields) throws Exception {
+            String[] category = (String[]) Array.newInstance(String.class, 2);
+            category[0] = "CFS";
+            category[1] = "Client";
+            List<Object> annotations = Arrays.asList(
+                    annotation("jdk.jfr.Name", name),
+                    annotation("jdk.jfr.Label", label),
+                    annotation("jdk.jfr.Description", description),
+                    annotation("jdk.jfr.Category", category),
+                    annotation("jdk.jfr.Enabled", Boolean.FALSE));
+            return create.invoke(null, annotations, Arrays.asList(fields));
+        }
+
+        /*
+         * Refreshes the enabled flags whenever a recording starts, stops or
+         * changes, through a proxy of jdk.jfr.FlightRecorderListener.
+         */
+        void listen(final EventType... types) throws Exception {
+            Class<?> listener = Class.forName("jdk.jfr.FlightRecorderListener");
+            Object proxy = Proxy.newProxyInstance(listener.getClassLoader(), new Class<?>[]{listener},
+                    new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getDeclaringClass() == Object.class) {
+                        if ("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        } else if ("hashCode".equals(method.getName())) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return "CfsFlightEvents.Listener";
+                    }
+                    for (EventType type : types) {
+                        type.refresh();
+                    }
+                    return null;
+                }
+            });
+            Class.forName("jdk.jfr.FlightRecorder").getMethod("addListener", listener).invoke(null, proxy);
+            for (EventType type : types) {
+                type.refresh();
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.trace;
+
+/*
+ * Lets a tracing library follow the CFS operations. start runs on the
+ * calling thread before the operation, so the hook may make its own span
+ * current there, and whatever it returns is handed back to end, which runs
+ * on the same thread. A hook must not throw, errors are logged and ignored.
+ * Implementations need a public no-argument constructor, they are set by
+ * class name in cfs.trace.hooks.
+ */
+public interface CfsSpanHook {
+    Object start(String op, String path, String callerContext);
+
+    void end(Object state, CfsTraceRecord record);
+}
@@ -0,0 +1,79 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.trace;
+
+/*
+ * One traced operation, immutable once recorded.
+ */
+public class CfsTraceRecord {
+    private final String op;
+    private final String path;
+    private final long startMillis;
+    private final long durationNanos;
+    private final long bytes;
+    private final boolean failed;
+    private final String callerContext;
+    private final String thread;
+
+    public CfsTraceRecord(String op, String path, long startMillis, long durationNanos, long bytes, boolean failed,
+                          String callerContext, String thread) {
+        this.op = op;
+        this.path = path;
+        this.startMillis = startMillis;
+        this.durationNanos = durationNanos;
+        this.bytes = bytes;
+        this.failed = failed;
+        this.callerContext = callerContext;
+        this.thread = thread;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    // null when the caller set no Hadoop CallerContext
+    public String getCallerContext() {
+        return callerContext;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    @Override
+    public String toString() {
+        return op + " path:" + path + " durationUs:" + durationNanos / 1000L + " bytes:" + bytes
+                + " failed:" + failed + " caller:" + callerContext + " thread:" + thread + " start:" + startMillis;
+    }
+}
@@ -0,0 +1,195 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.trace;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.ipc.CallerContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Records the CFS operations into a lock free ring buffer of the latest
+ * records, and writes the ones slower than the threshold to the slow-op log,
+ * io.chubao.fs.client.trace.SlowOps, optionally sampled. The ring keeps the
+ * context around an incident, recent() returns it oldest first.
+ *
+ * start returns null when tracing is disabled, so a disabled tracer costs
+ * a flag check per operation and allocates nothing. The reads and writes of
+ * the streams are traced through startStream, apart from the other
+ * operations: they are the bulk of the calls, and a span and a record each
+ * would cost more than the calls that hit the client buffers.
+ */
+public class CfsTracer {
+    private static final Log log = LogFactory.getLog(CfsTracer.class);
+    private static final Log slowLog = LogFactory.getLog("io.chubao.fs.client.trace.SlowOps");
+
+    public static final CfsTracer DISABLED = new CfsTracer(false, false, 1, 0L, 0, new CfsSpanHook[0]);
+
+    private final boolean enabled;
+    private final boolean streams;
+    private final AtomicReferenceArray<CfsTraceRecord> ring;
+    private final int mask;
+    private final AtomicLong seq = new AtomicLong(0L);
+    private final long slowNanos;
+    private final int samplePercent;
+    private final CfsSpanHook[] hooks;
+
+    public static final class Span {
+        private final String op;
+        // stringified only when the span ends
+        private final Object path;
+        private final long startNanos;
+        private final long startMillis;
+        private final String callerContext;
+        private final Object[] hookStates;
+
+        private Span(String op, Object path, String callerContext, int hooks) {
+            this.op = op;
+            this.path = path;
+            this.startNanos = System.nanoTime();
+            this.startMillis = System.currentTimeMillis();
+            this.callerContext = callerContext;
+            this.hookStates = hooks == 0 ? null : new Object[hooks];
+        }
+    }
+
+    /*
+     * slowMs <= 0 logs every operation as slow, samplePercent is the share of
+     * the slow operations that are logged.
+     */
+    public CfsTracer(boolean enabled, boolean streams, int ringSize, long slowMs, int samplePercent,
+                     CfsSpanHook[] hooks) {
+        int capacity = 1;
+        while (capacity < ringSize) {
+            capacity <<= 1;
+        }
+        this.enabled = enabled;
+        this.streams = enabled && streams;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.slowNanos = Math.max(0L, slowMs) * 1000000L;
+        this.samplePercent = Math.max(0, Math.min(100, samplePercent));
+        this.hooks = hooks.clone();
+    }
+
+    /*
+     * The hooks are created from a comma separated list of class names, one
+     * that fails to load is logged and skipped.
+     */
+    public static CfsSpanHook[] newHooks(String classNames) {
+        List<CfsSpanHook> res = new ArrayList<>();
+        if (classNames == null) {
+            return new CfsSpanHook[0];
+        }
+        for (String name : classNames.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            try {
+                Class<?> clazz = Class.forName(name, true, Thread.currentThread().getContextClassLoader());
+                res.add((CfsSpanHook) clazz.newInstance());
+            } catch (Exception e) {
+                log.warn("Failed to create the span hook: " + name, e);
+            }
+        }
+        return res.toArray(new CfsSpanHook[0]);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /*
+     * Returns null when tracing is disabled.
+     */
+    public Span start(String op, Object path) {
+        if (!enabled) {
+            return null;
+        }
+        Span span = new Span(op, path, currentCallerContext(), hooks.length);
+        if (hooks.length > 0) {
+            String p = String.valueOf(path);
+            for (int i = 0; i < hooks.length; i++) {
+                try {
+                    span.hookStates[i] = hooks[i].start(op, p, span.callerContext);
+                } catch (Throwable e) {
+                    log.debug("Span hook failed to start " + op, e);
+                }
+            }
+        }
+        return span;
+    }
+
+    /*
+     * Returns null unless the stream reads and writes are traced.
+     */
+    public Span startStream(String op, Object path) {
+        if (!streams) {
+            return null;
+        }
+        return start(op, path);
+    }
+
+    public void end(Span span, long bytes, boolean failed) {
+        if (span == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - span.startNanos;
+        CfsTraceRecord record = new CfsTraceRecord(span.op, String.valueOf(span.path), span.startMillis, nanos,
+                bytes, failed, span.callerContext, Thread.currentThread().getName());
+        ring.set((int) (seq.getAndIncrement() & mask), record);
+        if (nanos >= slowNanos && sampled()) {
+            slowLog.warn("Slow operation: " + record);
+        }
+        for (int i = 0; i < hooks.length; i++) {
+            try {
+                hooks[i].end(span.hookStates[i], record);
+            } catch (Throwable e) {
+                log.debug("Span hook failed to end " + span.op, e);
+            }
+        }
+    }
+
+    /*
+     * The records in the ring, oldest first. Records written while copying
+     * may be missed or replace older ones.
+     */
+    public List<CfsTraceRecord> recent() {
+        long end = seq.get();
+        long begin = Math.max(0L, end - ring.length());
+        List<CfsTraceRecord> res = new ArrayList<>((int) (end - begin));
+        for (long i = begin; i < end; i++) {
+            CfsTraceRecord record = ring.get((int) (i & mask));
+            if (record != null) {
+                res.add(record);
+            }
+        }
+        return res;
+    }
+
+    private boolean sampled() {
+        return samplePercent >= 100 || (samplePercent > 0 && ThreadLocalRandom.current().nextInt(100) < samplePercent);
+    }
+
+    private static String currentCallerContext() {
+        CallerContext context = CallerContext.getCurrent();
+        return context == null ? null : context.getContext();
+    }
+}
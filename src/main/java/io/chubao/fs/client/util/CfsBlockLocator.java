@@ -0,0 +1,124 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.sdk.exception.CfsException;
+import io.chubao.fs.client.sdk.libsdk.CfsExtent;
+import io.chubao.fs.client.sdk.libsdk.FileStorage;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Builds BlockLocations from the extent to data partition mapping of a file.
+ * The locations of a whole file are cached by path and reused while the
+ * length and modification time of the file stay the same.
+ */
+public class CfsBlockLocator {
+  private static final Log log = LogFactory.getLog(CfsBlockLocator.class);
+
+  private final FileStorage storage;
+  private final Map<String, Located> cache;
+  private volatile boolean supported = true;
+
+  private static final class Located {
+    final long len;
+    final long mtime;
+    final BlockLocation[] locations;
+
+    Located(long len, long mtime, BlockLocation[] locations) {
+      this.len = len;
+      this.mtime = mtime;
+      this.locations = locations;
+    }
+  }
+
+  public CfsBlockLocator(FileStorage storage, final int cacheSize) {
+    this.storage = storage;
+    this.cache = new LinkedHashMap<String, Located>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Located> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /*
+   * Returns the locations overlapping [start, start + len), or null when the
+   * native library does not export cfs_get_extents.
+   */
+  public BlockLocation[] locate(String path, FileStatus status, long start, long len) throws CfsException {
+    if (!supported) {
+      return null;
+    }
+    BlockLocation[] all = getAll(path, status);
+    if (all == null) {
+      return null;
+    }
+    long end = start + len;
+    List<BlockLocation> res = new ArrayList<BlockLocation>();
+    for (BlockLocation loc : all) {
+      if (loc.getOffset() < end && loc.getOffset() + loc.getLength() > start) {
+        res.add(loc);
+      }
+    }
+    return res.toArray(new BlockLocation[res.size()]);
+  }
+
+  public void invalidate(String path) {
+    synchronized (cache) {
+      cache.remove(path);
+    }
+  }
+
+  private BlockLocation[] getAll(String path, FileStatus status) throws CfsException {
+    synchronized (cache) {
+      Located entry = cache.get(path);
+      if (entry != null && entry.len == status.getLen() && entry.mtime == status.getModificationTime()) {
+        return entry.locations;
+      }
+    }
+
+    CfsExtent[] extents;
+    try {
+      extents = storage.getExtents(path);
+    } catch (UnsatisfiedLinkError e) {
+      log.warn("The libsdk does not export cfs_get_extents, fall back to the default block locations.");
+      supported = false;
+      return null;
+    }
+
+    BlockLocation[] locations = new BlockLocation[extents.length];
+    for (int i = 0; i < extents.length; i++) {
+      CfsExtent extent = extents[i];
+      String[] names = extent.getHosts();
+      String[] hosts = new String[names.length];
+      for (int j = 0; j < names.length; j++) {
+        int idx = names[j].lastIndexOf(':');
+        hosts[j] = idx > 0 ? names[j].substring(0, idx) : names[j];
+      }
+      locations[i] = new BlockLocation(names, hosts, extent.getFileOffset(), extent.getSize());
+    }
+    synchronized (cache) {
+      cache.put(path, new Located(status.getLen(), status.getModificationTime(), locations));
+    }
+    return locations;
+  }
+}
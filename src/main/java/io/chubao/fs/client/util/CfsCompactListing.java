@@ -0,0 +1,95 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.sdk.exception.CfsException;
+import io.chubao.fs.client.sdk.libsdk.CfsListing;
+import io.chubao.fs.client.sdk.libsdk.CfsStatInfo;
+import io.chubao.fs.client.sdk.libsdk.FileStorage;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * A directory listing that keeps its entries in a CfsListing and builds each
+ * FileStatus on request. Permissions and owner names are shared between
+ * entries, and the replication and block size are read once per listing.
+ */
+public class CfsCompactListing {
+  private final FileStorage storage;
+  private final CfsListing listing;
+  private final String prefix;
+  private final int replication;
+  private final long blockSize;
+  private final ConcurrentMap<Integer, String> users = new ConcurrentHashMap<Integer, String>();
+  private final ConcurrentMap<Integer, String> groups = new ConcurrentHashMap<Integer, String>();
+
+  public CfsCompactListing(FileStorage storage, String uri, String path, CfsListing listing) {
+    this.storage = storage;
+    this.listing = listing;
+    String dir = (uri == null ? path : uri + path);
+    this.prefix = dir.endsWith("/") ? dir : dir + "/";
+    this.replication = storage.getReplicaNumber();
+    this.blockSize = storage.getBlockSize();
+  }
+
+  public int size() {
+    return listing.size();
+  }
+
+  public CfsListing getListing() {
+    return listing;
+  }
+
+  public FileStatus get(int i) throws CfsException {
+    return new FileStatus(listing.getSize(i),
+        listing.getType(i) == CfsStatInfo.Type.DIR,
+        replication,
+        blockSize,
+        listing.getMtime(i) * 1000,
+        listing.getAtime(i) * 1000,
+        FsPermissionHelper.get(listing.getMode(i)),
+        getUser(listing.getUid(i)),
+        getGroup(listing.getGid(i)),
+        new Path(prefix + listing.getName(i)));
+  }
+
+  public FileStatus[] toArray() throws CfsException {
+    FileStatus[] res = new FileStatus[listing.size()];
+    for (int i = 0; i < res.length; i++) {
+      res[i] = get(i);
+    }
+    return res;
+  }
+
+  private String getUser(int uid) throws CfsException {
+    String user = users.get(uid);
+    if (user == null) {
+      user = storage.getUser(uid);
+      users.put(uid, user);
+    }
+    return user;
+  }
+
+  private String getGroup(int gid) throws CfsException {
+    String group = groups.get(gid);
+    if (group == null) {
+      group = storage.getGroup(gid);
+      groups.put(gid, group);
+    }
+    return group;
+  }
+}
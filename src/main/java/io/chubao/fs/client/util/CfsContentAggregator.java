@@ -0,0 +1,100 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.sdk.libsdk.CfsStatInfo;
+import io.chubao.fs.client.sdk.libsdk.FileStorage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Counts the files, directories and bytes under a directory by listing every
+ * subdirectory as its own task on a shared pool. The calling thread waits for
+ * the tasks, reports progress at a fixed interval, and cancels the remaining
+ * work if it is interrupted.
+ */
+public class CfsContentAggregator extends CfsTreeWalk {
+  public interface ProgressListener {
+    void progress(long files, long dirs, long bytes);
+  }
+
+  private final FileStorage storage;
+  private final AtomicLong files = new AtomicLong(0L);
+  private final AtomicLong dirs = new AtomicLong(0L);
+  private final AtomicLong bytes = new AtomicLong(0L);
+  private final CountDownLatch finished = new CountDownLatch(1);
+
+  public CfsContentAggregator(FileStorage storage, CfsWalkPool pool) {
+    super(pool);
+    this.storage = storage;
+  }
+
+  /*
+   * Aggregates the tree under dir, which is counted as one directory. Returns
+   * {bytes, files, dirs}.
+   */
+  public long[] aggregate(String dir, ProgressListener listener, long intervalMs) throws IOException {
+    dirs.incrementAndGet();
+    begin(dir);
+    try {
+      while (!finished.await(intervalMs, TimeUnit.MILLISECONDS)) {
+        if (listener != null) {
+          listener.progress(files.get(), dirs.get(), bytes.get());
+        }
+      }
+    } catch (InterruptedException e) {
+      cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while summarizing " + dir);
+    }
+    if (getError() != null) {
+      throw getError();
+    }
+    if (listener != null) {
+      listener.progress(files.get(), dirs.get(), bytes.get());
+    }
+    return new long[]{bytes.get(), files.get(), dirs.get()};
+  }
+
+  @Override
+  void visit(String dir) throws Exception {
+    CfsStatInfo[] infos = storage.list(dir);
+    String prefix = dir.endsWith("/") ? dir : dir + "/";
+    long len = 0L;
+    long fileNum = 0L;
+    for (CfsStatInfo info : infos) {
+      if (isCancelled()) {
+        return;
+      }
+      if (info.getType() == CfsStatInfo.Type.DIR) {
+        dirs.incrementAndGet();
+        schedule(prefix + info.getName());
+      } else {
+        fileNum++;
+        len += info.getSize();
+      }
+    }
+    files.addAndGet(fileNum);
+    bytes.addAndGet(len);
+  }
+
+  @Override
+  void ended() {
+    finished.countDown();
+  }
+}
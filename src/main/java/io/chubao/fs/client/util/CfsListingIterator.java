@@ -0,0 +1,100 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.sdk.exception.CfsException;
+import io.chubao.fs.client.sdk.exception.CfsFileNotFoundException;
+import io.chubao.fs.client.sdk.libsdk.CfsDirStream;
+import io.chubao.fs.client.sdk.libsdk.FileStorage;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/*
+ * Converts the entries of a CfsDirStream into FileStatus lazily, so callers
+ * see the first batch of a directory before the rest has been read. The
+ * iterator stays in the open set, when given, until its stream releases the
+ * directory fd, so the owner can close the ones a caller abandoned.
+ */
+public class CfsListingIterator implements RemoteIterator<FileStatus>, Closeable {
+  private final FileStorage storage;
+  private final CfsDirStream stream;
+  private final String uri;
+  private final Set<CfsListingIterator> open;
+
+  public CfsListingIterator(FileStorage storage, CfsDirStream stream, String uri) {
+    this(storage, stream, uri, null);
+  }
+
+  public CfsListingIterator(FileStorage storage, CfsDirStream stream, String uri, Set<CfsListingIterator> open) {
+    this.storage = storage;
+    this.stream = stream;
+    this.uri = uri;
+    this.open = open;
+    if (open != null) {
+      open.add(this);
+    }
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    try {
+      boolean res = stream.hasNext();
+      if (stream.isReleased()) {
+        forget();
+      }
+      return res;
+    } catch (CfsFileNotFoundException e) {
+      forget();
+      throw new FileNotFoundException(e.getMessage());
+    } catch (CfsException e) {
+      forget();
+      throw IOExceptionHelper.wrap(e);
+    }
+  }
+
+  @Override
+  public FileStatus next() throws IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException("No more entries in " + stream.getPath());
+    }
+    try {
+      return FileStatusHelper.convert(storage, uri, stream.getPath(), stream.next());
+    } catch (CfsException e) {
+      close();
+      throw IOExceptionHelper.wrap(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    forget();
+    try {
+      stream.close();
+    } catch (CfsException e) {
+      throw IOExceptionHelper.wrap(e);
+    }
+  }
+
+  private void forget() {
+    if (open != null) {
+      open.remove(this);
+    }
+  }
+}
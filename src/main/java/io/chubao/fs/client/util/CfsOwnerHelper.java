@@ -3,133 +3,303 @@ package io.chubao.fs.client.util;
 import io.chubao.fs.client.sdk.exception.CfsException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.IdMappingServiceProvider;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+/*
+ * Resolves uids and gids from /etc/passwd and /etc/group. The parsed files
+ * are published as one immutable snapshot that lookups read without locking,
+ * and a background task swaps in a fresh snapshot periodically. Names and ids
+ * missing from the snapshot can be resolved through an optional Hadoop
+ * IdMappingServiceProvider; the outcome of those lookups, found or not, is
+ * kept in a bounded cache until the next refresh.
+ */
 public class CfsOwnerHelper {
     private static final Log log = LogFactory.getLog(CfsOwnerHelper.class);
+    private static ScheduledExecutorService refresher;
+
     private final String passwdPath = "/etc/passwd";
     private final String groupPath = "/etc/group";
     private final String separator = ":";
 
-    private Map<String, Integer> users;
-    private Map<Integer, String> uids;
-    private Map<String, Integer> groups;
-    private Map<Integer, String> gids;
-    private Map<String, Integer> userGroups;
+    private final long refreshSeconds;
+    private final int missCacheSize;
+    private final String mappingClass;
+    private IdMappingServiceProvider mapping;
+    private ScheduledFuture<?> refreshTask;
+
+    private volatile Snapshot snapshot = new Snapshot(IdNameMap.empty(), IdNameMap.empty(), IdNameMap.empty());
+    private final ConcurrentMap<String, Integer> uidMisses = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> gidMisses = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, String> userMisses = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, String> groupMisses = new ConcurrentHashMap<>();
 
     private enum Type {
         user,
         group
     }
 
+    private static final class Snapshot {
+        final IdNameMap users;
+        final IdNameMap groups;
+        // user name -> primary gid
+        final IdNameMap userGroups;
+
+        Snapshot(IdNameMap users, IdNameMap groups, IdNameMap userGroups) {
+            this.users = users;
+            this.groups = groups;
+            this.userGroups = userGroups;
+        }
+    }
+
+    public CfsOwnerHelper() {
+        this(0L, 1024, null);
+    }
+
+    public CfsOwnerHelper(long refreshSeconds, int missCacheSize, String mappingClass) {
+        this.refreshSeconds = refreshSeconds;
+        this.missCacheSize = Math.max(1, missCacheSize);
+        this.mappingClass = mappingClass;
+    }
+
     public void init() throws CfsException {
-        users = new HashMap<>();
-        groups = new HashMap<>();
-        uids = new HashMap<>();
-        gids = new HashMap<>();
-        userGroups = new HashMap<>();
-        load(Type.user);
-        load(Type.group);
+        reload();
+        if (mappingClass != null && !mappingClass.trim().isEmpty()) {
+            mapping = newMapping(mappingClass.trim());
+        }
+        if (refreshSeconds > 0) {
+            refreshTask = getRefresher().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        reload();
+                    } catch (Throwable e) {
+                        log.warn("Failed to refresh the owner mapping, keep the previous one.", e);
+                    }
+                }
+            }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public void close() {
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+            refreshTask = null;
+        }
+    }
+
+    /*
+     * Parses both files into a new snapshot and swaps it in.
+     */
+    public void reload() throws CfsException {
+        Table users = load(Type.user);
+        Table groups = load(Type.group);
+        snapshot = new Snapshot(
+                IdNameMap.of(users.ids, users.names, users.count),
+                IdNameMap.of(groups.ids, groups.names, groups.count),
+                IdNameMap.of(users.gids, users.names, users.count));
+        uidMisses.clear();
+        gidMisses.clear();
+        userMisses.clear();
+        groupMisses.clear();
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded " + users.count + " users and " + groups.count + " groups.");
+        }
     }
 
     public int getUid(String user) throws CfsException {
-        System.out.println("user:"+user);
-        Integer uid = users.get(user);
-        System.out.println("uid:"+uid);
-        if (uid == null) {
-            throw new RuntimeException("Not found the user: " + user + " in " + passwdPath);
+        int uid = snapshot.users.id(user);
+        if (uid != IdNameMap.MISSING) {
+            return uid;
+        }
+        Integer res = uidMisses.get(user);
+        if (res == null) {
+            res = IdNameMap.MISSING;
+            if (mapping != null) {
+                try {
+                    res = mapping.getUid(user);
+                } catch (IOException e) {
+                    res = IdNameMap.MISSING;
+                }
+            }
+            cacheMiss(uidMisses, user, res);
+        }
+        if (res == IdNameMap.MISSING) {
+            throw new CfsException("Not found the user: " + user + " in " + passwdPath);
         }
-        return uid;
+        return res;
     }
 
     public String getUser(int uid) {
-        String user = uids.get(Integer.valueOf(uid));
+        String user = snapshot.users.name(uid);
+        if (user != null) {
+            return user;
+        }
+        user = userMisses.get(uid);
         if (user == null) {
-            log.warn("Not found the uid: " + uid + " in " + passwdPath);
-            return String.valueOf(uid);
+            user = mapping == null ? null : mapping.getUserName(uid, null);
+            if (user == null) {
+                log.warn("Not found the uid: " + uid + " in " + passwdPath);
+                user = String.valueOf(uid);
+            }
+            cacheMiss(userMisses, uid, user);
         }
         return user;
     }
 
     public int getGid(String group) throws CfsException {
-        System.out.println("group:"+group);
-        Integer gid = users.get(group);
-        System.out.println("gid:"+gid);
-        if (gid == null) {
-            throw new RuntimeException("Not found the group: " + group + " in " + groupPath);
+        int gid = snapshot.groups.id(group);
+        if (gid != IdNameMap.MISSING) {
+            return gid;
         }
-        return gid;
+        Integer res = gidMisses.get(group);
+        if (res == null) {
+            res = IdNameMap.MISSING;
+            if (mapping != null) {
+                try {
+                    res = mapping.getGid(group);
+                } catch (IOException e) {
+                    res = IdNameMap.MISSING;
+                }
+            }
+            cacheMiss(gidMisses, group, res);
+        }
+        if (res == IdNameMap.MISSING) {
+            throw new CfsException("Not found the group: " + group + " in " + groupPath);
+        }
+        return res;
     }
 
-
     public int getGidByUser(String user) throws CfsException {
-        Integer uid = userGroups.get(user);
-        if (uid == null) {
-            throw new RuntimeException("Not found the group: " + user + " in " + groupPath);
+        int gid = snapshot.userGroups.id(user);
+        if (gid == IdNameMap.MISSING) {
+            throw new CfsException("Not found the group of user: " + user + " in " + passwdPath);
         }
-        return uid;
+        return gid;
     }
 
     public String getGroup(int gid) {
-        String group = gids.get(Integer.valueOf(gid));
+        String group = snapshot.groups.name(gid);
+        if (group != null) {
+            return group;
+        }
+        group = groupMisses.get(gid);
         if (group == null) {
-            log.warn("Not found the uid: " + gid + " in " + groupPath);
-            return String.valueOf(gid);
+            group = mapping == null ? null : mapping.getGroupName(gid, null);
+            if (group == null) {
+                log.warn("Not found the gid: " + gid + " in " + groupPath);
+                group = String.valueOf(gid);
+            }
+            cacheMiss(groupMisses, gid, group);
         }
         return group;
     }
 
-    private void add(String line, Type type) throws Exception {
-        String[] fileds = line.split(separator);
-
-        if (type == Type.user) {
-            if (fileds.length < 4) {
-                throw new RuntimeException("[" + line + "] is invalid.");
-            }
-            users.put(fileds[0], Integer.valueOf(fileds[2]));
-            uids.put(Integer.valueOf(fileds[2]), fileds[0]);
-            userGroups.put(fileds[0], Integer.valueOf(fileds[3]));
+    private <K, V> void cacheMiss(ConcurrentMap<K, V> cache, K key, V value) {
+        if (cache.size() >= missCacheSize) {
+            cache.clear();
         }
+        cache.put(key, value);
+    }
 
-        if (type == Type.group) {
-            if (fileds.length < 3) {
-                throw new RuntimeException("[" + line + "] is invalid.");
+    private static final class Table {
+        int count = 0;
+        int[] ids = new int[0];
+        int[] gids = new int[0];
+        String[] names = new String[0];
+
+        void add(String name, int id, int gid) {
+            if (count == ids.length) {
+                ids = IdNameMap.grow(ids);
+                gids = IdNameMap.grow(gids);
+                names = IdNameMap.grow(names);
             }
-            groups.put(fileds[0], Integer.valueOf(fileds[2]));
-            gids.put(Integer.valueOf(fileds[2]), fileds[0]);
+            names[count] = name;
+            ids[count] = id;
+            gids[count] = gid;
+            count++;
         }
     }
 
-    /*
-    TODO: Build a schdular to load by period
-     */
-    private void load(Type type) throws CfsException {
+    private void add(String line, Type type, Table table) {
+        String[] fileds = line.split(separator);
         try {
-            String path = null;
-            if (type == Type.user) {
-                path = passwdPath;
-            } else if (type == Type.group) {
-                path = groupPath;
-            } else {
-                throw new RuntimeException("Not support the type:" + type);
+            if (type == Type.user && fileds.length >= 4) {
+                table.add(fileds[0], Integer.parseInt(fileds[2]), Integer.parseInt(fileds[3]));
+                return;
             }
-            File file = new File(path);
-            if (file.exists() == false) {
-                throw new RuntimeException("Not found the system passwd profile.");
+            if (type == Type.group && fileds.length >= 3) {
+                table.add(fileds[0], Integer.parseInt(fileds[2]), 0);
+                return;
             }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Skip the invalid line: [" + line + "]");
+        }
+    }
+
+    private Table load(Type type) throws CfsException {
+        String path = type == Type.user ? passwdPath : groupPath;
+        File file = new File(path);
+        if (file.exists() == false) {
+            throw new CfsException("Not found the system profile: " + path);
+        }
 
-            BufferedReader reader = new BufferedReader(new FileReader(file));
+        Table table = new Table();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
             String line;
             while ((line = reader.readLine()) != null) {
-                add(line, type);
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                add(line, type, table);
             }
-        } catch (Exception ex) {
+        } catch (IOException ex) {
             throw new CfsException(ex);
         }
+        return table;
+    }
+
+    private static IdMappingServiceProvider newMapping(String className) throws CfsException {
+        try {
+            Class<?> clazz = Class.forName(className);
+            try {
+                Constructor<?> ctor = clazz.getConstructor(Configuration.class);
+                return (IdMappingServiceProvider) ctor.newInstance(new Configuration());
+            } catch (NoSuchMethodException e) {
+                return (IdMappingServiceProvider) clazz.newInstance();
+            }
+        } catch (Exception ex) {
+            throw new CfsException("Failed to create the id mapping: " + className, ex);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getRefresher() {
+        if (refresher == null) {
+            refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "cfs-owner-refresh");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return refresher;
     }
 }
@@ -0,0 +1,74 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import org.apache.hadoop.fs.Path;
+
+import java.net.URI;
+
+/*
+ * Turns a Hadoop Path into the absolute path string passed to FileStorage.
+ * Path already keeps a normalized URI, so absolute paths resolve to the
+ * cached URI path without building a qualified Path or a new URI; only
+ * relative paths allocate, to join them with the cached working directory.
+ */
+public class CfsPathResolver {
+  private final String scheme;
+  private final String authority;
+  private final URI fsUri;
+  private volatile String workingDir = "/";
+
+  public CfsPathResolver(String scheme, URI fsUri) {
+    this.scheme = scheme;
+    this.fsUri = fsUri;
+    this.authority = fsUri.getAuthority();
+  }
+
+  public void setWorkingDirectory(Path dir) {
+    String res = resolve(dir);
+    workingDir = res.endsWith("/") ? res : res + "/";
+  }
+
+  public String resolve(Path path) {
+    URI pathURI = path.toUri();
+    String pathScheme = pathURI.getScheme();
+    if (pathScheme != null) {
+      if (!pathScheme.equalsIgnoreCase(scheme)) {
+        throw new IllegalArgumentException("Not support the scheme, from the path, " + path);
+      }
+      String pathAuthority = pathURI.getAuthority();
+      if (pathAuthority != null && !pathAuthority.equalsIgnoreCase(authority)) {
+        throw new IllegalArgumentException("Wrong FS: " + path + ", expected: " + fsUri);
+      }
+    }
+
+    String res = pathURI.getPath();
+    if (res == null) {
+      throw new IllegalArgumentException(path + " is invalid.");
+    }
+    if (res.isEmpty() || ".".equals(res)) {
+      // the working directory itself, as Path normalizes "." and "a/.."
+      String dir = workingDir;
+      return dir.length() > 1 ? dir.substring(0, dir.length() - 1) : dir;
+    }
+    if (res.charAt(0) != '/') {
+      res = workingDir + res;
+      if (res.contains("..")) {
+        // let Path normalize the parent references against the working dir
+        res = new Path(res).toUri().getPath();
+      }
+    }
+    return res;
+  }
+}
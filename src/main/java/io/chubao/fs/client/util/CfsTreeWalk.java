@@ -0,0 +1,128 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.sdk.exception.CfsFileNotFoundException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * The scheduling shared by the parallel tree walks. Every directory is
+ * visited by its own task on a CfsWalkPool, which schedules the
+ * subdirectories it finds. The walk ends exactly once: when the last task
+ * finishes, or when it is aborted, e.g. by the close of the pool. The first
+ * error cancels the remaining tasks and is kept for the caller; a directory
+ * removed while walking is skipped, as in a serial walk racing a delete.
+ */
+abstract class CfsTreeWalk {
+  private static final Log log = LogFactory.getLog(CfsTreeWalk.class);
+
+  private final CfsWalkPool pool;
+  private final AtomicInteger pending = new AtomicInteger(0);
+  private final AtomicBoolean ended = new AtomicBoolean(false);
+  private volatile IOException error;
+  private volatile boolean cancelled = false;
+
+  CfsTreeWalk(CfsWalkPool pool) {
+    this.pool = pool;
+  }
+
+  /*
+   * Lists one directory, calling schedule for its subdirectories.
+   */
+  abstract void visit(String dir) throws Exception;
+
+  /*
+   * Called once when the walk ends, getError tells whether it failed.
+   */
+  abstract void ended();
+
+  void begin(String root) {
+    pool.register(this);
+    schedule(root);
+  }
+
+  public void cancel() {
+    cancelled = true;
+  }
+
+  boolean isCancelled() {
+    return cancelled;
+  }
+
+  IOException getError() {
+    return error;
+  }
+
+  void abort(IOException e) {
+    fail(null, e);
+    end();
+  }
+
+  void schedule(final String dir) {
+    pending.incrementAndGet();
+    try {
+      pool.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            if (!cancelled) {
+              visit(dir);
+            }
+          } catch (CfsFileNotFoundException e) {
+            if (log.isDebugEnabled()) {
+              log.debug("Skip the vanished dir:" + dir);
+            }
+          } catch (Throwable e) {
+            fail(dir, e);
+          } finally {
+            finish();
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      fail(dir, new IOException("Rejected the walk of " + dir + ", the file system may be closed.", e));
+      finish();
+    }
+  }
+
+  private void finish() {
+    if (pending.decrementAndGet() == 0) {
+      end();
+    }
+  }
+
+  private void end() {
+    if (ended.compareAndSet(false, true)) {
+      pool.unregister(this);
+      ended();
+    }
+  }
+
+  private void fail(String dir, Throwable e) {
+    if (error == null) {
+      if (e instanceof IOException) {
+        error = (IOException) e;
+      } else {
+        error = new IOException("Failed to walk " + dir, e);
+      }
+    }
+    cancelled = true;
+  }
+}
@@ -0,0 +1,201 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.sdk.libsdk.CfsStatInfo;
+import io.chubao.fs.client.sdk.libsdk.FileStorage;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Walks a directory tree on a shared pool and streams the files it finds.
+ * Every directory is listed by its own task, which hands its files to the
+ * consumer and schedules one task per subdirectory, so results arrive as
+ * soon as each directory finishes and in no particular order. At most
+ * MAX_BATCHES listed directories wait for the consumer, the tasks that
+ * find more wait for room as managed blockers, so the pool makes up for
+ * them. The tasks only hold the walk, not this iterator: the walk stops
+ * when the iterator is closed, when the pool is closed, or once an
+ * abandoned iterator has been collected.
+ */
+public class CfsTreeWalker implements RemoteIterator<LocatedFileStatus>, Closeable {
+  private static final List<LocatedFileStatus> END = Collections.emptyList();
+  private static final int MAX_BATCHES = 64;
+  private static final long POLL_MS = 100L;
+
+  public interface Locator {
+    LocatedFileStatus locate(FileStatus status) throws IOException;
+  }
+
+  private final Walk walk;
+  private List<LocatedFileStatus> current = END;
+  private int index = 0;
+  private boolean done = false;
+
+  public CfsTreeWalker(FileStorage storage, CfsWalkPool pool, String uri, Locator locator) {
+    this.walk = new Walk(storage, pool, uri, locator, new WeakReference<CfsTreeWalker>(this));
+  }
+
+  public CfsTreeWalker start(String root) {
+    walk.begin(root);
+    return this;
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    while (index >= current.size()) {
+      if (done) {
+        return false;
+      }
+      List<LocatedFileStatus> batch;
+      try {
+        batch = walk.results.poll(POLL_MS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        close();
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while walking the tree.");
+      }
+      if (batch == null) {
+        if (!walk.finished) {
+          continue;
+        }
+        // every batch was queued before the walk ended, END may not fit
+        batch = walk.results.poll();
+        if (batch == null) {
+          batch = END;
+        }
+      }
+      current = batch;
+      index = 0;
+      if (current == END) {
+        done = true;
+        if (walk.getError() != null) {
+          throw walk.getError();
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public LocatedFileStatus next() throws IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.get(index++);
+  }
+
+  /*
+   * Stops the walk, the files not read yet are dropped.
+   */
+  @Override
+  public void close() {
+    done = true;
+    current = END;
+    walk.cancel();
+    walk.results.clear();
+  }
+
+  private static class Walk extends CfsTreeWalk {
+    private final FileStorage storage;
+    private final String uri;
+    private final Locator locator;
+    private final WeakReference<CfsTreeWalker> consumer;
+    private final BlockingQueue<List<LocatedFileStatus>> results = new ArrayBlockingQueue<List<LocatedFileStatus>>(MAX_BATCHES);
+    private volatile boolean finished = false;
+
+    Walk(FileStorage storage, CfsWalkPool pool, String uri, Locator locator, WeakReference<CfsTreeWalker> consumer) {
+      super(pool);
+      this.storage = storage;
+      this.uri = uri;
+      this.locator = locator;
+      this.consumer = consumer;
+    }
+
+    @Override
+    void visit(String dir) throws Exception {
+      CfsStatInfo[] infos = storage.list(dir);
+      String prefix = dir.endsWith("/") ? dir : dir + "/";
+      List<LocatedFileStatus> files = new ArrayList<LocatedFileStatus>(infos.length);
+      for (CfsStatInfo info : infos) {
+        if (isCancelled()) {
+          return;
+        }
+        if (info.getType() == CfsStatInfo.Type.DIR) {
+          schedule(prefix + info.getName());
+        } else {
+          files.add(locator.locate(FileStatusHelper.convert(storage, uri, dir, info)));
+        }
+      }
+      if (!files.isEmpty()) {
+        ForkJoinPool.managedBlock(new Offer(files));
+      }
+    }
+
+    @Override
+    void ended() {
+      finished = true;
+      results.offer(END);
+    }
+
+    private boolean stopped() {
+      if (!isCancelled() && consumer.get() == null) {
+        cancel();
+      }
+      return isCancelled();
+    }
+
+    /*
+     * Waits for room for a batch, giving up once the walk is stopped.
+     */
+    private class Offer implements ForkJoinPool.ManagedBlocker {
+      private final List<LocatedFileStatus> files;
+      private boolean queued = false;
+
+      Offer(List<LocatedFileStatus> files) {
+        this.files = files;
+      }
+
+      @Override
+      public boolean block() throws InterruptedException {
+        if (!queued) {
+          queued = results.offer(files, POLL_MS, TimeUnit.MILLISECONDS);
+        }
+        return queued || stopped();
+      }
+
+      @Override
+      public boolean isReleasable() {
+        if (!queued) {
+          queued = results.offer(files);
+        }
+        return queued || stopped();
+      }
+    }
+  }
+}
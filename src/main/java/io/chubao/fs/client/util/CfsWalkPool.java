@@ -0,0 +1,60 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * The pool of the parallel tree walks of a file system. It keeps the walks
+ * that are still running, so close can fail them: the tasks it drops would
+ * otherwise leave them waiting for directories that are never listed.
+ */
+public class CfsWalkPool implements Executor {
+  private final ForkJoinPool pool;
+  private final Set<CfsTreeWalk> active = Collections.newSetFromMap(new ConcurrentHashMap<CfsTreeWalk, Boolean>());
+  private volatile boolean closed = false;
+
+  public CfsWalkPool(int threads) {
+    this.pool = new ForkJoinPool(Math.max(1, threads), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    pool.execute(task);
+  }
+
+  void register(CfsTreeWalk walk) {
+    active.add(walk);
+    if (closed) {
+      walk.abort(new IOException("The file system is closed."));
+    }
+  }
+
+  void unregister(CfsTreeWalk walk) {
+    active.remove(walk);
+  }
+
+  public void close() {
+    closed = true;
+    pool.shutdownNow();
+    for (CfsTreeWalk walk : active) {
+      walk.abort(new IOException("The file system is closed."));
+    }
+  }
+}
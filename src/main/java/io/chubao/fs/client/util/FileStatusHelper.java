@@ -20,7 +20,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.fs.permission.FsPermission;
 
 public class FileStatusHelper {
   private static final Log log = LogFactory.getLog(FileStatusHelper.class);
@@ -47,7 +46,7 @@ public class FileStatusHelper {
         storage.getBlockSize(),
         info.getMtime() * 1000,
         info.getAtime() * 1000,
-        new FsPermission((short) info.getMode()),
+        FsPermissionHelper.get(info.getMode()),
         storage.getUser(info.getUid()),
         storage.getGroup(info.getGid()),
         p);
@@ -61,7 +60,7 @@ public class FileStatusHelper {
         storage.getBlockSize(),
         info.getMtime(),
         info.getAtime(),
-        new FsPermission((short) info.getMode()),
+        FsPermissionHelper.get(info.getMode()),
         storage.getUser(info.getUid()),
         storage.getGroup(info.getGid()),
         path);
@@ -19,6 +19,22 @@ import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.fs.permission.FsPermission;
 
 public class FsPermissionHelper {
+  private static final FsPermission[] PERMISSIONS = new FsPermission[01000];
+
+  static {
+    for (int i = 0; i < PERMISSIONS.length; i++) {
+      PERMISSIONS[i] = new FsPermission((short) i);
+    }
+  }
+
+  /*
+   * Returns a shared instance for the permission bits of mode, callers must
+   * not modify it.
+   */
+  public static FsPermission get(int mode) {
+    return PERMISSIONS[mode & 0777];
+  }
+
   public static FsPermission getUMask(Configuration conf) {
     String maskStr = conf.get(CommonConfigurationKeys.FS_PERMISSIONS_UMASK_KEY);
     return new FsPermission(maskStr);
@@ -0,0 +1,34 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import io.chubao.fs.client.sdk.exception.CfsInterruptedException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+public class IOExceptionHelper {
+  /*
+   * Wraps a storage error for the Hadoop callers, an interrupted native call
+   * becomes an InterruptedIOException as Hadoop expects.
+   */
+  public static IOException wrap(Throwable e) {
+    if (e instanceof CfsInterruptedException) {
+      InterruptedIOException res = new InterruptedIOException(e.getMessage());
+      res.initCause(e);
+      return res;
+    }
+    return new IOException(e);
+  }
+}
@@ -0,0 +1,114 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+package io.chubao.fs.client.util;
+
+import java.util.Arrays;
+
+/*
+ * An immutable id <-> name map on open-addressed primitive arrays, so lookups
+ * neither box ids nor take locks. Later entries win on duplicate keys.
+ */
+public final class IdNameMap {
+  public static final int MISSING = Integer.MIN_VALUE;
+
+  private final int[] idKeys;
+  private final String[] idNames;
+  private final String[] nameKeys;
+  private final int[] nameIds;
+  private final int mask;
+  private final int size;
+
+  private IdNameMap(int capacity) {
+    int cap = 16;
+    while (cap < capacity * 2) {
+      cap <<= 1;
+    }
+    this.idKeys = new int[cap];
+    this.idNames = new String[cap];
+    this.nameKeys = new String[cap];
+    this.nameIds = new int[cap];
+    this.mask = cap - 1;
+    this.size = capacity;
+  }
+
+  public static IdNameMap of(int[] ids, String[] names, int count) {
+    IdNameMap map = new IdNameMap(count);
+    for (int i = 0; i < count; i++) {
+      map.put(ids[i], names[i]);
+    }
+    return map;
+  }
+
+  public static IdNameMap empty() {
+    return of(new int[0], new String[0], 0);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public String name(int id) {
+    int slot = mix(id) & mask;
+    while (idNames[slot] != null) {
+      if (idKeys[slot] == id) {
+        return idNames[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  public int id(String name) {
+    if (name == null) {
+      return MISSING;
+    }
+    int slot = mix(name.hashCode()) & mask;
+    while (nameKeys[slot] != null) {
+      if (nameKeys[slot].equals(name)) {
+        return nameIds[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return MISSING;
+  }
+
+  private void put(int id, String name) {
+    int slot = mix(id) & mask;
+    while (idNames[slot] != null && idKeys[slot] != id) {
+      slot = (slot + 1) & mask;
+    }
+    idKeys[slot] = id;
+    idNames[slot] = name;
+
+    slot = mix(name.hashCode()) & mask;
+    while (nameKeys[slot] != null && !nameKeys[slot].equals(name)) {
+      slot = (slot + 1) & mask;
+    }
+    nameKeys[slot] = name;
+    nameIds[slot] = id;
+  }
+
+  private static int mix(int h) {
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  static int[] grow(int[] arr) {
+    return Arrays.copyOf(arr, Math.max(16, arr.length * 2));
+  }
+
+  static String[] grow(String[] arr) {
+    return Arrays.copyOf(arr, Math.max(16, arr.length * 2));
+  }
+}
@@ -37,9 +37,16 @@ public class ChubaoAbstractFS extends AbstractFileSystem{
             throw new IOException("Incomplete ChubaoFS URI, no host: " + theUri);
         }
 
-        cfs = new ChubaoFileSystem();
-
-        cfs.initialize(theUri, conf);
+        // an instance of its own, which a close of the cached FileSystem by
+        // its users cannot break; its native clients are shared per volume
+        FileSystem fs = FileSystem.newInstance(theUri, conf);
+        if (fs instanceof ChubaoFileSystem) {
+            cfs = (ChubaoFileSystem) fs;
+        } else {
+            fs.close();
+            cfs = new ChubaoFileSystem();
+            cfs.initialize(theUri, conf);
+        }
 
         fsServer = new FsServerDefaults(
                 64 * 1024 * 1024,
@@ -52,19 +59,26 @@ public class ChubaoAbstractFS extends AbstractFileSystem{
                 org.apache.hadoop.util.DataChecksum.Type.NULL);
     }
 
+    /*
+     * FileContext has no close, so the instance releases its lease when this
+     * file system is collected, or at shutdown with the mounts left open.
+     */
     @Override
-    public int getUriDefaultPort() {
-        return CfsConfig.CFS_DEFAULT_PORT;
-    }
-
-    protected  void finalize() throws Throwable{
-        try{
-            cfs.close();
-        }finally{
+    protected void finalize() throws Throwable {
+        try {
+            if (cfs != null) {
+                cfs.close();
+            }
+        } finally {
             super.finalize();
         }
     }
 
+    @Override
+    public int getUriDefaultPort() {
+        return CfsConfig.CFS_DEFAULT_PORT;
+    }
+
     @Override
     public boolean truncate(Path f, long newLength) throws AccessControlException, FileNotFoundException, UnresolvedLinkException, IOException {
         return cfs.truncate(f, newLength);
@@ -0,0 +1,44 @@
+// Copyright 2020 The Chubao Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// permissions and limitations under the License.
+
+package org.apache.hadoop.hdfs;
+
+import org.apache.hadoop.fs.Path;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Deletes batches of files under a base path, following the contract of
+ * Hadoop's BulkDelete, which is not available in the Hadoop version we build
+ * against. Paths that do not exist are not failures, and directories are not
+ * deleted.
+ */
+public interface CfsBulkDelete extends Closeable {
+    /*
+     * The maximum number of paths accepted by one bulkDelete call.
+     */
+    int pageSize();
+
+    Path basePath();
+
+    /*
+     * Returns the paths that could not be deleted with the reason, an empty
+     * list when every path was deleted or did not exist.
+     */
+    List<Map.Entry<Path, String>> bulkDelete(Collection<Path> paths) throws IOException, IllegalArgumentException;
+}
@@ -20,7 +20,12 @@ import io.chubao.fs.client.sdk.libsdk.CfsStatInfo;
 import io.chubao.fs.client.sdk.client.*;
 import io.chubao.fs.client.sdk.exception.*;
 import io.chubao.fs.client.sdk.libsdk.*;
+import io.chubao.fs.client.statistics.CfsIOStatistics;
+import io.chubao.fs.client.statistics.CfsIOStatisticsSource;
+import io.chubao.fs.client.statistics.CfsIOStatisticsStore;
+import io.chubao.fs.client.statistics.CfsStorageStatistics;
 import io.chubao.fs.client.stream.*;
+import io.chubao.fs.client.trace.CfsTracer;
 import io.chubao.fs.client.util.*;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
@@ -32,32 +37,57 @@ import org.apache.hadoop.util.Progressable;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @InterfaceAudience.LimitedPrivate({"MapReduce","Hbase"})
 @InterfaceStability.Unstable
-public class ChubaoFileSystem extends FileSystem {
+public class ChubaoFileSystem extends FileSystem implements CfsIOStatisticsSource {
     private static final Log log = LogFactory.getLog(ChubaoFileSystem.class);
     private final String CFS_SCHEME_NAME = "cfs";
     private final String CFS_SITE_CONFIG = "cfs-site.xml";
+    private static final long SUMMARY_PROGRESS_INTERVAL_MS = 1000L;
 
     private URI uri;
     private CfsConfig cfg;
-    private CfsMount client;
+    private CfsMountRegistry.Lease lease;
     private FileStorage storage;
     private int uid;
     private int gid;
     private Path workingDir;
     private String userHomePrefix;
+    private CfsWalkPool walkPool;
+    private ExecutorService deletePool;
+    // the directory listings that may still hold an fd
+    private final Set<CfsListingIterator> openListings =
+            Collections.newSetFromMap(new ConcurrentHashMap<CfsListingIterator, Boolean>());
+    private CfsAsyncFileStorage asyncStorage;
+    private CfsBlockLocator blockLocator;
+    private CfsPathResolver pathResolver;
+    private volatile boolean closed = false;
+    private final CfsIOStatisticsStore ioStatistics = new CfsIOStatisticsStore();
+    private CfsStorageStatistics storageStatistics;
+    private CfsTracer tracer = CfsTracer.DISABLED;
 
     @Override
     public void initialize(URI uri, Configuration conf) throws IOException {
-        System.out.println("my chubaofs hadoop");
-        log.info("==> Initialize ChubaoFileSystem.");
+        if (log.isDebugEnabled()) {
+            log.debug("==> Initialize ChubaoFileSystem.");
+        }
         //get and check the Uri
         if (!uri.getScheme().equalsIgnoreCase(CFS_SCHEME_NAME)) {
             throw new IllegalArgumentException("Note support the scheme:" + uri.toString() + ",you may be use [cfs://]");
@@ -65,36 +95,51 @@ public class ChubaoFileSystem extends FileSystem {
         //initialize  uri
         this.uri = URI.create(uri.getScheme() + "://" + uri.getAuthority());
         super.initialize(uri, conf);
+        pathResolver = new CfsPathResolver(CFS_SCHEME_NAME, this.uri);
+        storageStatistics = (CfsStorageStatistics) GlobalStorageStatistics.INSTANCE.put(CfsStorageStatistics.NAME,
+                new GlobalStorageStatistics.StorageStatisticsProvider() {
+                    @Override
+                    public StorageStatistics provide() {
+                        return new CfsStorageStatistics();
+                    }
+                });
 
-        //get ConfDir from operation system or java system
+        //get ConfDir from operation system or java system, the cfs-site.xml is optional
+        //when the cfs.* keys are in the Hadoop configuration
         String hadoopConfDir = System.getenv("HADOOP_CONF_DIR");
         if (hadoopConfDir == null) {
             hadoopConfDir = System.getProperty("HADOOP_CONF_DIR");
         }
-        if (hadoopConfDir == null) {
-            throw new IllegalArgumentException("HADOOP_CONF_DIR env or property has not been set!");
-        }
         //initial  configFile dir
-        String configFile = hadoopConfDir + File.separator + CFS_SITE_CONFIG;
+        String configFile = hadoopConfDir == null ? null : hadoopConfDir + File.separator + CFS_SITE_CONFIG;
         String userName = System.getProperty("user.name");
         try {
             cfg = new CfsConfig();
             //load and then parse config
-            cfg.load(configFile);
-            //get CfsMount
-            client = new CfsMount(cfg.getCfsLibsdk());
-            //get config and set client
+            cfg.load(conf, configFile);
+            //share the started clients of the volume with the other instances
             StorageConfig sConf = getStorageConfig(cfg);
-            storage = client.openFileStorage(sConf,client);
+            lease = CfsMountRegistry.acquire(cfg.getCfsLibsdk(), sConf);
+            storage = lease.getStorage();
+            if (cfg.getTraceEnabled()) {
+                tracer = new CfsTracer(true, cfg.getTraceStreams(), cfg.getTraceRingSize(),
+                        cfg.getTraceSlowThresholdMs(), cfg.getTraceSlowSamplePercent(),
+                        CfsTracer.newHooks(cfg.getTraceHooks()));
+            }
 
             uid = storage.getUid(userName);
             gid = storage.getGidByUser(userName);
+            blockLocator = new CfsBlockLocator(storage, cfg.getBlockLocationCacheSize());
             userHomePrefix = cfg.getUserHomePrefix();
-            workingDir = getHomeDirectory();
+            setWorkingDirectory(getHomeDirectory());
             UserGroupInformation currentUser = UserGroupInformation.getCurrentUser();
             cfg.setCurrentUser(currentUser.getUserName());
         } catch (Exception e) {
             log.error(e.getMessage(), e);
+            if (lease != null) {
+                lease.close();
+                lease = null;
+            }
             throw new IOException("Failed to initialize ChubaoFileSystem", e);
         }
     }
@@ -112,6 +157,34 @@ public class ChubaoFileSystem extends FileSystem {
         if (logLevel != null) {
             config.setLogLevel(logLevel);
         }
+        config.setListBatchSize(cfg.getListBatchSize());
+        config.setListBatchMax(cfg.getListBatchMax());
+        config.setListBatchTargetMs(cfg.getListBatchTargetMs());
+        config.setListInodeBatchSize(cfg.getListInodeBatchSize());
+        config.setListThreads(cfg.getListThreads());
+        config.setOwnerRefreshSeconds(cfg.getOwnerRefreshSeconds());
+        config.setOwnerMissCacheSize(cfg.getOwnerMissCacheSize());
+        config.setOwnerMappingClass(cfg.getOwnerMappingClass());
+        config.setInodeCacheSize(cfg.getInodeCacheSize());
+        config.setInodeCacheTtlMs(cfg.getInodeCacheTtlMs());
+        config.setNativeOffloadThreads(cfg.getNativeOffloadThreads());
+        config.setNativeOffloadQueue(cfg.getNativeOffloadQueue());
+        config.setClientPoolSize(cfg.getClientPoolSize());
+        config.setClientRoute(cfg.getClientRoute());
+        config.setDirectMapping(cfg.getDirectMapping());
+        config.setPathCacheSize(cfg.getPathCacheSize());
+        config.setSchedulerEnabled(cfg.getSchedulerEnabled());
+        config.setSchedulerTotalLimit(cfg.getSchedulerTotalLimit());
+        config.setSchedulerLimits(cfg.getSchedulerMetadataLimit(), cfg.getSchedulerDataLimit(),
+                cfg.getSchedulerBackgroundLimit());
+        config.setSchedulerQueues(cfg.getSchedulerMetadataQueue(), cfg.getSchedulerDataQueue(),
+                cfg.getSchedulerBackgroundQueue());
+        config.setCallDeadlinesMs(cfg.getMetadataDeadlineMs(), cfg.getDataDeadlineMs(),
+                cfg.getBackgroundDeadlineMs());
+        config.setCallInterruptible(cfg.getCallInterruptible());
+        config.setMetricsEnabled(cfg.getMetricsEnabled());
+        config.setGangliaServers(cfg.getGangliaServers());
+        config.setGangliaPeriodSeconds(cfg.getGangliaPeriodSeconds());
 
         config.print();
         return config;
@@ -122,10 +195,72 @@ public class ChubaoFileSystem extends FileSystem {
         return this.uri;
     }
 
+    /*
+     * The durations of the file system operations and the statistics of the
+     * closed streams.
+     */
+    @Override
+    public CfsIOStatistics getIOStatistics() {
+        return ioStatistics;
+    }
+
+    @Override
+    public StorageStatistics getStorageStatistics() {
+        return storageStatistics;
+    }
+
+    private void track(CfsStorageStatistics.Statistic stat, long start, CfsTracer.Span span, boolean failed) {
+        storageStatistics.incrementCounter(stat);
+        ioStatistics.addDuration(stat.getSymbol(), start, failed);
+        tracer.end(span, 0L, failed);
+    }
+
+    /*
+     * The recent operations and the slow-op log of this file system.
+     */
+    public CfsTracer getTracer() {
+        return tracer;
+    }
+
     @Override
     public void close() throws IOException {
-        log.info("Close ChubaoFileSystem");
-        super.close();
+        if (log.isDebugEnabled()) {
+            log.debug("Close ChubaoFileSystem");
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (walkPool != null) {
+                walkPool.close();
+                walkPool = null;
+            }
+            if (deletePool != null) {
+                deletePool.shutdown();
+                deletePool = null;
+            }
+            if (asyncStorage != null) {
+                asyncStorage.close();
+                asyncStorage = null;
+            }
+        }
+        for (CfsListingIterator listing : openListings) {
+            try {
+                listing.close();
+            } catch (IOException e) {
+                log.warn("Failed to close a directory listing.", e);
+            }
+        }
+        try {
+            super.close();
+        } finally {
+            // the storage is closed with the last lease of the volume, so
+            // the calls after this one must not reach it
+            closed = true;
+            if (lease != null) {
+                lease.close();
+            }
+        }
     }
 
     @Override
@@ -145,21 +280,49 @@ public class ChubaoFileSystem extends FileSystem {
 
     @Override
     public FSDataInputStream open(Path path, int i) throws IOException {
+        checkOpen();
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.start(CfsStorageStatistics.Statistic.OP_OPEN.getSymbol(), path);
+        boolean failed = true;
+        try {
+            FSDataInputStream res = innerOpen(path, i);
+            failed = false;
+            return res;
+        } finally {
+            track(CfsStorageStatistics.Statistic.OP_OPEN, start, span, failed);
+        }
+    }
+
+    private FSDataInputStream innerOpen(Path path, int i) throws IOException {
         if (log.isDebugEnabled()) {
             log.debug("open:" + path.toString() + " buffsize:" + i);
         }
         statistics.incrementReadOps(1);
         try {
             CfsFile cFile = storage.open(parsePath(path), FileStorage.O_RDONLY, 0, uid, gid);
-            return new FSDataInputStream(new CfsDataInputStream(cFile));
+            return new FSDataInputStream(new CfsDataInputStream(cFile, statistics, ioStatistics, tracer, path));
         } catch (Exception ex) {
             log.error("Failed to open:" + path.toString());
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
         }
     }
 
     @Override
     public FSDataOutputStream create(Path path, FsPermission permission, boolean overwrite, int bufferSize, short replication, long blockSize, Progressable progress) throws IOException {
+        checkOpen();
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.start(CfsStorageStatistics.Statistic.OP_CREATE.getSymbol(), path);
+        boolean failed = true;
+        try {
+            FSDataOutputStream res = innerCreate(path, permission, overwrite, bufferSize, replication, blockSize, progress);
+            failed = false;
+            return res;
+        } finally {
+            track(CfsStorageStatistics.Statistic.OP_CREATE, start, span, failed);
+        }
+    }
+
+    private FSDataOutputStream innerCreate(Path path, FsPermission permission, boolean overwrite, int bufferSize, short replication, long blockSize, Progressable progress) throws IOException {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Create path: " + path.toString() + " permission: "
                     + Integer.toHexString((int) permission.toShort()) + " overwrite: " + overwrite + " bufferSize: " + bufferSize
@@ -193,13 +356,13 @@ public class ChubaoFileSystem extends FileSystem {
                 progress.progress();
             }
 
-            CfsDataOutputStream output = new CfsDataOutputStream(cfile);
+            CfsDataOutputStream output = new CfsDataOutputStream(cfile, ioStatistics, tracer, path);
             return new FSDataOutputStream(output, statistics);
         } catch (CfsFileNotFoundException e) {
             throw new FileNotFoundException(e.getMessage());
         } catch (Exception ex) {
             log.error(ex.getMessage(), ex);
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
         }
     }
 
@@ -212,6 +375,20 @@ public class ChubaoFileSystem extends FileSystem {
 
     @Override
     public FSDataOutputStream append(Path path, int i, Progressable progress) throws IOException {
+        checkOpen();
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.start(CfsStorageStatistics.Statistic.OP_APPEND.getSymbol(), path);
+        boolean failed = true;
+        try {
+            FSDataOutputStream res = innerAppend(path, i, progress);
+            failed = false;
+            return res;
+        } finally {
+            track(CfsStorageStatistics.Statistic.OP_APPEND, start, span, failed);
+        }
+    }
+
+    private FSDataOutputStream innerAppend(Path path, int i, Progressable progress) throws IOException {
         if (log.isDebugEnabled()) {
             log.debug("append:" + path.toString() + " buffsize:" + i);
         }
@@ -222,11 +399,11 @@ public class ChubaoFileSystem extends FileSystem {
             }
             int flags = FileStorage.O_WRONLY | FileStorage.O_APPEND;
             CfsFile cFile = storage.open(parsePath(path), flags, cfg.CFS_DEFAULT_FILE_PERMISSION, uid, gid);
-            CfsDataOutputStream output = new CfsDataOutputStream(cFile);
+            CfsDataOutputStream output = new CfsDataOutputStream(cFile, ioStatistics, tracer, path);
             return new FSDataOutputStream(output, statistics);
         } catch (Exception ex) {
             log.error("Failed to append:" + path.toString());
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
         }
     }
 
@@ -237,6 +414,7 @@ public class ChubaoFileSystem extends FileSystem {
 
     @Override
     public boolean truncate(Path f, long newLength) throws IOException {
+        checkOpen();
         if (log.isDebugEnabled()) {
             log.debug("truncate:" + f.toString() + " newlength:" + newLength);
         }
@@ -251,13 +429,27 @@ public class ChubaoFileSystem extends FileSystem {
             storage.truncate(parsePath(f), newLength);
         } catch (Exception ex) {
             log.error("Failed to truncate:" + f.toString());
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
         }
         return true;
     }
 
     @Override
     public boolean rename(Path src, Path dst) throws IOException {
+        checkOpen();
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.start(CfsStorageStatistics.Statistic.OP_RENAME.getSymbol(), src);
+        boolean failed = true;
+        try {
+            boolean res = innerRename(src, dst);
+            failed = false;
+            return res;
+        } finally {
+            track(CfsStorageStatistics.Statistic.OP_RENAME, start, span, failed);
+        }
+    }
+
+    private boolean innerRename(Path src, Path dst) throws IOException {
         if (log.isDebugEnabled()) {
             log.debug("rename:" + src.toString() + " to:" + dst.toString());
         }
@@ -292,7 +484,7 @@ public class ChubaoFileSystem extends FileSystem {
             }
         } catch (CfsException ex) {
             log.error("Failed to rename:" + src + " to:" + dst);
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
         }
 
         if (LOG.isDebugEnabled()) {
@@ -300,6 +492,8 @@ public class ChubaoFileSystem extends FileSystem {
         }
         try {
             storage.rename(from, to);
+            blockLocator.invalidate(from);
+            blockLocator.invalidate(to);
             return true;
         } catch (CfsException ex) {
             log.error("Failed to rename:" + src + " to:" + dst);
@@ -310,6 +504,20 @@ public class ChubaoFileSystem extends FileSystem {
 
     @Override
     public boolean delete(Path path, boolean recursive) throws IOException {
+        checkOpen();
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.start(CfsStorageStatistics.Statistic.OP_DELETE.getSymbol(), path);
+        boolean failed = true;
+        try {
+            boolean res = innerDelete(path, recursive);
+            failed = false;
+            return res;
+        } finally {
+            track(CfsStorageStatistics.Statistic.OP_DELETE, start, span, failed);
+        }
+    }
+
+    private boolean innerDelete(Path path, boolean recursive) throws IOException {
         if (log.isDebugEnabled()) {
             log.debug("delete:" + path.toString() + " recursive:" + recursive);
         }
@@ -328,18 +536,167 @@ public class ChubaoFileSystem extends FileSystem {
                 storage.rmdir(str, recursive);
             } else if (info.getType() == CfsStatInfo.Type.REG || info.getType() == CfsStatInfo.Type.LINK) {
                 storage.unlink(str);
+                blockLocator.invalidate(str);
             } else {
                 throw new IOException("Not support the type:" + info.getType());
             }
         } catch (Exception ex) {
             log.error("Failed to delete:" + path.toString());
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
         }
         return true;
     }
 
+    /*
+     * Returns a deleter for files under the base path, which unlinks each page
+     * of paths concurrently without a stat per path.
+     */
+    public CfsBulkDelete createBulkDelete(Path base) throws IOException {
+        checkOpen();
+        return new BulkDeleter(makeQualified(base));
+    }
+
+    /*
+     * The non-blocking view of the storage, its executor is created on first use.
+     */
+    public synchronized AsyncFileStorage getAsyncStorage() {
+        if (asyncStorage == null) {
+            asyncStorage = CfsAsyncFileStorage.create(storage, cfg.getAsyncThreads(), cfg.getAsyncVirtual());
+        }
+        return asyncStorage;
+    }
+
+    private synchronized ExecutorService getDeletePool() {
+        if (deletePool == null) {
+            deletePool = Executors.newFixedThreadPool(Math.max(1, cfg.getDeleteThreads()), new ThreadFactory() {
+                private final AtomicInteger seq = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "cfs-delete-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return deletePool;
+    }
+
+    private class BulkDeleter implements CfsBulkDelete {
+        private final Path base;
+        private final String basePrefix;
+
+        BulkDeleter(Path base) {
+            this.base = base;
+            String str = parsePath(base);
+            this.basePrefix = str.endsWith("/") ? str : str + "/";
+        }
+
+        @Override
+        public int pageSize() {
+            return Math.max(1, cfg.getDeletePageSize());
+        }
+
+        @Override
+        public Path basePath() {
+            return base;
+        }
+
+        @Override
+        public List<Map.Entry<Path, String>> bulkDelete(Collection<Path> paths) throws IOException, IllegalArgumentException {
+            if (paths.size() > pageSize()) {
+                throw new IllegalArgumentException("Too many paths: " + paths.size() + " page size: " + pageSize());
+            }
+            List<Path> targets = new ArrayList<Path>(paths.size());
+            List<String> strs = new ArrayList<String>(paths.size());
+            for (Path path : paths) {
+                String str = parsePath(path);
+                if (!str.startsWith(basePrefix)) {
+                    throw new IllegalArgumentException("Path " + path + " is not under " + base);
+                }
+                targets.add(path);
+                strs.add(str);
+            }
+
+            List<Future<String>> results = new ArrayList<Future<String>>(strs.size());
+            ExecutorService pool = getDeletePool();
+            for (int i = 0; i < strs.size(); i++) {
+                final Path path = targets.get(i);
+                final String str = strs.get(i);
+                results.add(pool.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return unlink(path, str);
+                    }
+                }));
+            }
+            statistics.incrementWriteOps(targets.size());
+
+            List<Map.Entry<Path, String>> failures = new ArrayList<Map.Entry<Path, String>>();
+            for (int i = 0; i < results.size(); i++) {
+                String reason;
+                try {
+                    reason = results.get(i).get();
+                } catch (InterruptedException e) {
+                    for (Future<String> f : results) {
+                        f.cancel(false);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while deleting under " + base);
+                } catch (ExecutionException e) {
+                    reason = String.valueOf(e.getCause());
+                }
+                if (reason != null) {
+                    failures.add(new AbstractMap.SimpleImmutableEntry<Path, String>(targets.get(i), reason));
+                }
+            }
+            return failures;
+        }
+
+        /*
+         * Counted and traced as a delete of the path.
+         */
+        private String unlink(Path path, String str) {
+            long start = System.nanoTime();
+            CfsTracer.Span span = tracer.start(CfsStorageStatistics.Statistic.OP_DELETE.getSymbol(), path);
+            boolean failed = true;
+            try {
+                int st = storage.tryUnlink(str);
+                StatusCodes code = StatusCodes.get(st);
+                if (code == StatusCodes.CFS_STATUS_OK || code == StatusCodes.CFS_STATUS_FILIE_NOT_FOUND) {
+                    blockLocator.invalidate(str);
+                    failed = false;
+                    return null;
+                }
+                return code.msg() + " status code: " + st;
+            } catch (CfsException ex) {
+                return ex.getMessage();
+            } finally {
+                track(CfsStorageStatistics.Statistic.OP_DELETE, start, span, failed);
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
     @Override
     public FileStatus[] listStatus(Path path) throws FileNotFoundException, IOException {
+        checkOpen();
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.start(CfsStorageStatistics.Statistic.OP_LIST_STATUS.getSymbol(), path);
+        boolean failed = true;
+        try {
+            FileStatus[] res = innerListStatus(path);
+            failed = false;
+            return res;
+        } finally {
+            track(CfsStorageStatistics.Statistic.OP_LIST_STATUS, start, span, failed);
+        }
+    }
+
+    private FileStatus[] innerListStatus(Path path) throws FileNotFoundException, IOException {
         if (log.isDebugEnabled()) {
             log.debug("list:" + path.toString());
         }
@@ -352,24 +709,257 @@ public class ChubaoFileSystem extends FileSystem {
                 return fStatus;
             }
 
-            String pathStr = parsePath(path);
-            CfsStatInfo[] infos = storage.list(pathStr);
-            fStatus = new FileStatus[infos.length];
-            for (int i = 0; i < infos.length; i++) {
-                fStatus[i] = FileStatusHelper.convert(storage, (uri == null ? null : uri.toString()), pathStr, infos[i]);
-                log.info("==>" + fStatus[i]);
-            }
-            return fStatus;
+            return listCompact(path).toArray();
+        } catch (CfsFileNotFoundException e) {
+            throw new FileNotFoundException(e.getMessage());
+        } catch (CfsException ex) {
+            throw IOExceptionHelper.wrap(ex);
+        }
+    }
+
+    /*
+     * Lists a directory into a compact form that builds each FileStatus on
+     * request, for callers that hold very large listings.
+     */
+    public CfsCompactListing listCompact(Path path) throws FileNotFoundException, IOException {
+        checkOpen();
+        if (log.isDebugEnabled()) {
+            log.debug("listCompact:" + path.toString());
+        }
+        String pathStr = parsePath(path);
+        try {
+            CfsListing listing = storage.listCompact(pathStr);
+            return new CfsCompactListing(storage, (uri == null ? null : uri.toString()), pathStr, listing);
         } catch (CfsFileNotFoundException e) {
             throw new FileNotFoundException(e.getMessage());
         } catch (CfsException ex) {
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
+        }
+    }
+
+    @Override
+    public RemoteIterator<FileStatus> listStatusIterator(Path path) throws FileNotFoundException, IOException {
+        checkOpen();
+        if (log.isDebugEnabled()) {
+            log.debug("listStatusIterator:" + path.toString());
+        }
+        FileStatus status = getFileStatus(path);
+        if (status.isDirectory() == false) {
+            return new SingleStatusIterator<FileStatus>(status);
+        }
+        try {
+            CfsDirStream stream = storage.openDir(parsePath(path));
+            return new CfsListingIterator(storage, stream, (uri == null ? null : uri.toString()), openListings);
+        } catch (CfsException ex) {
+            throw IOExceptionHelper.wrap(ex);
+        }
+    }
+
+    @Override
+    protected RemoteIterator<LocatedFileStatus> listLocatedStatus(final Path path, final PathFilter filter)
+            throws FileNotFoundException, IOException {
+        checkOpen();
+        if (log.isDebugEnabled()) {
+            log.debug("listLocatedStatus:" + path.toString());
+        }
+        final RemoteIterator<FileStatus> entries = listStatusIterator(path);
+        final AsyncFileStorage async = getAsyncStorage();
+        final int ahead = Math.max(1, cfg.getLocateAhead());
+        // the block locations of the next entries are looked up concurrently
+        return new RemoteIterator<LocatedFileStatus>() {
+            private final ArrayDeque<CompletableFuture<LocatedFileStatus>> pending =
+                    new ArrayDeque<CompletableFuture<LocatedFileStatus>>();
+
+            @Override
+            public boolean hasNext() throws IOException {
+                try {
+                    return fill();
+                } catch (IOException e) {
+                    closeQuietly(entries);
+                    throw e;
+                }
+            }
+
+            private boolean fill() throws IOException {
+                while (pending.size() < ahead && entries.hasNext()) {
+                    final FileStatus status = entries.next();
+                    if (!filter.accept(status.getPath())) {
+                        continue;
+                    }
+                    if (status.isFile()) {
+                        pending.add(async.submit(new Callable<LocatedFileStatus>() {
+                            @Override
+                            public LocatedFileStatus call() throws IOException {
+                                return toLocatedFileStatus(status);
+                            }
+                        }));
+                    } else {
+                        pending.add(CompletableFuture.completedFuture(new LocatedFileStatus(status, null)));
+                    }
+                }
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public LocatedFileStatus next() throws IOException {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more entries in " + path);
+                }
+                try {
+                    return join(pending.poll());
+                } catch (IOException e) {
+                    closeQuietly(entries);
+                    throw e;
+                }
+            }
+        };
+    }
+
+    private static void closeQuietly(RemoteIterator<?> it) {
+        if (it instanceof Closeable) {
+            try {
+                ((Closeable) it).close();
+            } catch (IOException e) {
+                log.debug("Failed to close the listing.", e);
+            }
+        }
+    }
+
+    @Override
+    public RemoteIterator<LocatedFileStatus> listFiles(Path path, boolean recursive)
+            throws FileNotFoundException, IOException {
+        checkOpen();
+        if (!recursive) {
+            return super.listFiles(path, false);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("listFiles:" + path.toString() + " recursive:" + recursive);
+        }
+        FileStatus status = getFileStatus(path);
+        if (status.isFile()) {
+            return new SingleStatusIterator<LocatedFileStatus>(toLocatedFileStatus(status));
+        }
+        // the walk pool keeps the walk until it ends and stops it on close
+        CfsTreeWalker walker = new CfsTreeWalker(storage, getWalkPool(), (uri == null ? null : uri.toString()),
+                new CfsTreeWalker.Locator() {
+                    @Override
+                    public LocatedFileStatus locate(FileStatus status) throws IOException {
+                        return toLocatedFileStatus(status);
+                    }
+                });
+        return walker.start(parsePath(path));
+    }
+
+    @Override
+    public ContentSummary getContentSummary(Path path) throws IOException {
+        checkOpen();
+        long[] summary = summarize(path);
+        return new ContentSummary.Builder()
+                .length(summary[0])
+                .fileCount(summary[1])
+                .directoryCount(summary[2])
+                .spaceConsumed(summary[0])
+                .build();
+    }
+
+    @Override
+    public QuotaUsage getQuotaUsage(Path path) throws IOException {
+        checkOpen();
+        long[] summary = summarize(path);
+        return new QuotaUsage.Builder()
+                .fileAndDirectoryCount(summary[1] + summary[2])
+                .quota(-1L)
+                .spaceConsumed(summary[0])
+                .spaceQuota(-1L)
+                .build();
+    }
+
+    @Override
+    public long getUsed(Path path) throws IOException {
+        checkOpen();
+        return summarize(path)[0];
+    }
+
+    /*
+     * Returns {bytes, files, dirs} under the path.
+     */
+    private long[] summarize(final Path path) throws IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("summarize:" + path.toString());
+        }
+        FileStatus status = getFileStatus(path);
+        if (status.isFile()) {
+            return new long[]{status.getLen(), 1L, 0L};
+        }
+        CfsContentAggregator aggregator = new CfsContentAggregator(storage, getWalkPool());
+        return aggregator.aggregate(parsePath(path), new CfsContentAggregator.ProgressListener() {
+            @Override
+            public void progress(long files, long dirs, long bytes) {
+                if (log.isDebugEnabled()) {
+                    log.debug("summarize:" + path.toString() + " files:" + files + " dirs:" + dirs + " bytes:" + bytes);
+                }
+            }
+        }, SUMMARY_PROGRESS_INTERVAL_MS);
+    }
+
+    private synchronized CfsWalkPool getWalkPool() {
+        if (walkPool == null) {
+            walkPool = new CfsWalkPool(cfg.getListRecursiveThreads());
+        }
+        return walkPool;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the storage.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw IOExceptionHelper.wrap(cause);
+        }
+    }
+
+    private LocatedFileStatus toLocatedFileStatus(FileStatus status) throws IOException {
+        BlockLocation[] locations = null;
+        if (status.isFile()) {
+            locations = getFileBlockLocations(status, 0, status.getLen());
+        }
+        return new LocatedFileStatus(status, locations);
+    }
+
+    private static class SingleStatusIterator<T extends FileStatus> implements RemoteIterator<T> {
+        private T status;
+
+        SingleStatusIterator(T status) {
+            this.status = status;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return status != null;
+        }
+
+        @Override
+        public T next() {
+            if (status == null) {
+                throw new NoSuchElementException();
+            }
+            T res = status;
+            status = null;
+            return res;
         }
     }
 
     @Override
     public void setWorkingDirectory(Path path) {
-        this.workingDir = fixRelativePart(path);
+        Path dir = fixRelativePart(path);
+        pathResolver.setWorkingDirectory(dir);
+        this.workingDir = dir;
     }
 
     @Override
@@ -379,6 +969,20 @@ public class ChubaoFileSystem extends FileSystem {
 
     @Override
     public boolean mkdirs(Path path, FsPermission fsPermission) throws IOException {
+        checkOpen();
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.start(CfsStorageStatistics.Statistic.OP_MKDIRS.getSymbol(), path);
+        boolean failed = true;
+        try {
+            boolean res = innerMkdirs(path, fsPermission);
+            failed = false;
+            return res;
+        } finally {
+            track(CfsStorageStatistics.Statistic.OP_MKDIRS, start, span, failed);
+        }
+    }
+
+    private boolean innerMkdirs(Path path, FsPermission fsPermission) throws IOException {
         if (LOG.isDebugEnabled()) {
             LOG.debug("mkdirs: " + path.toString() + " permission: " + fsPermission.toShort());
         }
@@ -389,12 +993,26 @@ public class ChubaoFileSystem extends FileSystem {
             return storage.mkdirs(parsePath(path), perm, uid, gid);
         } catch (Exception e) {
             log.error("Failed to mkdirs:" + path.toString());
-            throw new IOException(e);
+            throw IOExceptionHelper.wrap(e);
         }
     }
 
     @Override
     public FileStatus getFileStatus(Path path) throws IOException {
+        checkOpen();
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.start(CfsStorageStatistics.Statistic.OP_GET_FILE_STATUS.getSymbol(), path);
+        boolean failed = true;
+        try {
+            FileStatus res = innerGetFileStatus(path);
+            failed = false;
+            return res;
+        } finally {
+            track(CfsStorageStatistics.Statistic.OP_GET_FILE_STATUS, start, span, failed);
+        }
+    }
+
+    private FileStatus innerGetFileStatus(Path path) throws IOException {
         if (log.isDebugEnabled()) {
             log.debug("getFileStatus:" + path.toString());
         }
@@ -406,51 +1024,48 @@ public class ChubaoFileSystem extends FileSystem {
             }
             return FileStatusHelper.convert(storage, (uri == null ? null : uri.toString()), pathStr, info);
         } catch (CfsException ex) {
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
         }
     }
 
     //parse the Path is Cfs
-    private String parsePath(Path p) {
-    /*
-    if (log.isDebugEnabled()) {
-      log.debug("path:" + p.toString());
-    }
-     */
-        Path path = makeQualified(p);
-        URI pathURI = path.toUri();
-        if (pathURI == null) {
-            throw new IllegalArgumentException("Couldn't parse the path, " + path);
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Filesystem closed");
         }
+    }
 
-        String res = null;
-        String scheme = pathURI.getScheme();
-        if (scheme != null) {
-            if (scheme.equals(CFS_SCHEME_NAME) == false) {
-                throw new IllegalArgumentException("Not support the scheme, from the path, " + path);
-            }
+    private String parsePath(Path p) {
+        return pathResolver.resolve(p);
+    }
 
-            res = pathURI.getPath().trim();
-            if (res == null || res.isEmpty()) {
-                throw new IllegalArgumentException(path + " is invalid.");
-            }
-        } else {
-            res = pathURI.toString().trim();
-            if (res == null || res.isEmpty()) {
-                log.warn("Reset the path with working-dir: " + workingDir);
-                res = workingDir.toString();
-            } else if (path.isAbsolute() == false) {
-                res = new Path(workingDir.toString() + path.toString()).toString();
-            } else {
-                res = path.toString();
-            }
+    @Override
+    public BlockLocation[] getFileBlockLocations(FileStatus file, long start, long len) throws IOException {
+        checkOpen();
+        if (file == null) {
+            return null;
         }
-
-        if (res.startsWith("/") == false) {
-            throw new IllegalArgumentException(path + " is invalid.");
+        if (start < 0 || len < 0) {
+            throw new IllegalArgumentException("Invalid start or len parameter");
         }
-
-        return res;
+        if (file.getLen() <= start) {
+            return new BlockLocation[0];
+        }
+        if (file.isDirectory()) {
+            return super.getFileBlockLocations(file, start, len);
+        }
+        BlockLocation[] locations;
+        try {
+            locations = blockLocator.locate(parsePath(file.getPath()), file, start, len);
+        } catch (CfsFileNotFoundException e) {
+            throw new FileNotFoundException(e.getMessage());
+        } catch (CfsException ex) {
+            throw IOExceptionHelper.wrap(ex);
+        }
+        if (locations == null) {
+            return super.getFileBlockLocations(file, start, len);
+        }
+        return locations;
     }
 
     @Override
@@ -460,6 +1075,20 @@ public class ChubaoFileSystem extends FileSystem {
 
     @Override
     public FSDataOutputStream createNonRecursive(Path path, FsPermission permission, EnumSet<CreateFlag> flags, int bufferSize, short replication, long blockSize, Progressable progress) throws IOException {
+        checkOpen();
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.start(CfsStorageStatistics.Statistic.OP_CREATE_NON_RECURSIVE.getSymbol(), path);
+        boolean failed = true;
+        try {
+            FSDataOutputStream res = innerCreateNonRecursive(path, permission, flags, bufferSize, replication, blockSize, progress);
+            failed = false;
+            return res;
+        } finally {
+            track(CfsStorageStatistics.Statistic.OP_CREATE_NON_RECURSIVE, start, span, failed);
+        }
+    }
+
+    private FSDataOutputStream innerCreateNonRecursive(Path path, FsPermission permission, EnumSet<CreateFlag> flags, int bufferSize, short replication, long blockSize, Progressable progress) throws IOException {
         if (!flags.contains(CreateFlag.CREATE)) {
             throw new IOException("Not support the flags:" + flags.toString());
         }
@@ -469,7 +1098,7 @@ public class ChubaoFileSystem extends FileSystem {
         try {
             info = storage.stat(pathStr);
         } catch (CfsException e) {
-            throw new IOException(e);
+            throw IOExceptionHelper.wrap(e);
         }
 
         int fls = FileStorage.O_WRONLY;
@@ -493,14 +1122,15 @@ public class ChubaoFileSystem extends FileSystem {
             cfile = storage.open(pathStr, fls, cfg.CFS_DEFAULT_FILE_PERMISSION, uid, gid);
         } catch (CfsException ex) {
             log.error("Failed to create:" + path.toString());
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
         }
-        CfsDataOutputStream output = new CfsDataOutputStream(cfile);
+        CfsDataOutputStream output = new CfsDataOutputStream(cfile, ioStatistics, tracer, path);
         return new FSDataOutputStream(output, statistics);
     }
 
     @Override
     public void setPermission(Path path, FsPermission permission) throws IOException {
+        checkOpen();
         if (log.isDebugEnabled()) {
             log.debug("setPermission:" + path.toString() + " permission:" + permission);
         }
@@ -508,22 +1138,21 @@ public class ChubaoFileSystem extends FileSystem {
             storage.chmod(parsePath(path), permission.toShort());
         } catch (CfsException ex) {
             log.error(ex.getMessage(), ex);
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
         }
     }
 
     @Override
     public void setOwner(Path path, String username, String groupname) throws IOException {
+        checkOpen();
         if (log.isDebugEnabled()) {
             log.debug("setOwner:" + path.toString() + " username:" + username + " groupname:" + groupname);
         }
         try {
-            System.out.println("--------begin set owner---------");
-            System.out.println("username:"+username+"   groupname:"+groupname);
             storage.chown(parsePath(path), username, groupname);
         } catch (CfsException ex) {
             log.error(ex.getMessage(), ex);
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
         }
     }
 
@@ -541,6 +1170,19 @@ public class ChubaoFileSystem extends FileSystem {
 
     @Override
     public void setTimes(Path path, long mtime, long atime) throws IOException {
+        checkOpen();
+        long start = System.nanoTime();
+        CfsTracer.Span span = tracer.start(CfsStorageStatistics.Statistic.OP_SET_TIMES.getSymbol(), path);
+        boolean failed = true;
+        try {
+            innerSetTimes(path, mtime, atime);
+            failed = false;
+        } finally {
+            track(CfsStorageStatistics.Statistic.OP_SET_TIMES, start, span, failed);
+        }
+    }
+
+    private void innerSetTimes(Path path, long mtime, long atime) throws IOException {
         if (mtime < 0) {
             mtime = 0L;
         }
@@ -559,12 +1201,11 @@ public class ChubaoFileSystem extends FileSystem {
         if (log.isDebugEnabled()) {
             log.debug("setTimes:" + path.toString() + " mtime:" + mtime + " atime:" + atime);
         }
-        log.info("setTimes:" + path.toString() + " mtime:" + mtime + " atime:" + atime);
         try {
             storage.setTimes(parsePath(path), mtime, atime);
         } catch (CfsException ex) {
             log.error(ex.getMessage(), ex);
-            throw new IOException(ex);
+            throw IOExceptionHelper.wrap(ex);
         }
     }
 
@@ -625,42 +1266,4 @@ public class ChubaoFileSystem extends FileSystem {
         throw new IOException("Not implement removeXAttrs:  " + path.toString() + ".");
     }
 
-   private String validPath(Path path) {
-        log.info("path:" + path.toString());
-        URI pathURI = path.toUri();
-        log.info("URI.getPath:" + pathURI.getPath());
-        if (pathURI == null) {
-            throw new IllegalArgumentException("Couldn't parse the path, " + path);
-        }
-
-        String res = null;
-        String scheme = pathURI.getScheme();
-        if (scheme != null) {
-            if (scheme.equals(CFS_SCHEME_NAME) == false) {
-                throw new IllegalArgumentException("Not support the scheme, from the path, " + path);
-            }
-
-            res = pathURI.getPath().trim();
-            if (res == null || res.isEmpty()) {
-                throw new IllegalArgumentException(path + " is invalid.");
-            }
-        } else {
-            res = pathURI.toString().trim();
-            if (res == null || res.isEmpty()) {
-                log.warn("Reset the path with working-dir: " + workingDir);
-                res = workingDir.toString();
-            } else if (path.isAbsolute() == false) {
-                res = new Path(workingDir.toString() + path.toString()).toString();
-            } else {
-                res = path.toString();
-            }
-        }
-
-        if (res.startsWith("/") == false) {
-            throw new IllegalArgumentException(path + " is invalid.");
-        }
-
-        return res;
-    }
-
 }